@@ -0,0 +1,23 @@
+package com.example.demo1.audit;
+
+public final class AuditEvent {
+    private final long timestamp;
+    private final AuditEventType type;
+    private final String subject;
+    private final String detail;
+
+    public AuditEvent(long timestamp, AuditEventType type, String subject, String detail) {
+        this.timestamp = timestamp;
+        this.type = type;
+        this.subject = subject;
+        this.detail = detail;
+    }
+
+    public long getTimestamp() { return timestamp; }
+
+    public AuditEventType getType() { return type; }
+
+    public String getSubject() { return subject; }
+
+    public String getDetail() { return detail; }
+}
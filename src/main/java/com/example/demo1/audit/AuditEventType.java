@@ -0,0 +1,26 @@
+package com.example.demo1.audit;
+
+public enum AuditEventType {
+    REGISTRATION_SUCCEEDED(true),
+    REGISTRATION_FAILED(false),
+    LOGIN_SUCCEEDED(true),
+    LOGIN_FAILED(false),
+    ADMIN_LOGIN_SUCCEEDED(true),
+    ADMIN_LOGIN_FAILED(false),
+    USER_UPDATED(true),
+    ROLE_CHANGED(true),
+    USER_DELETED(true);
+
+    private final boolean success;
+
+    AuditEventType(boolean success) {
+        this.success = success;
+    }
+
+    /**
+     * Success events are high volume and subject to sampling.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+}
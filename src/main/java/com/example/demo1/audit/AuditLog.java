@@ -0,0 +1,171 @@
+package com.example.demo1.audit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured audit trail for user lifecycle and login events.
+ * Request threads only put an event into a lock-free ring buffer; a single
+ * background thread drains it into rolling segment files with batched fsync.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.directory:logs/audit}")
+    private String directory;
+
+    @Value("${audit.buffer-capacity:8192}")
+    private int bufferCapacity;
+
+    @Value("${audit.overflow-policy:DROP_NEWEST}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${audit.success-sample-rate:1.0}")
+    private double successSampleRate;
+
+    @Value("${audit.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${audit.max-segments:20}")
+    private int maxSegments;
+
+    @Value("${audit.fsync-interval-ms:1000}")
+    private long fsyncIntervalMs;
+
+    @Value("${audit.batch-size:512}")
+    private int batchSize;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+
+    private AuditRingBuffer<AuditEvent> ringBuffer;
+    private AuditSegmentWriter writer;
+    private Thread drainThread;
+    private volatile boolean running;
+    private volatile boolean drainIdle;
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        ringBuffer = new AuditRingBuffer<>(bufferCapacity);
+        writer = new AuditSegmentWriter(Paths.get(directory), segmentBytes, maxSegments, fsyncIntervalMs);
+        running = true;
+        drainThread = new Thread(this::drainLoop, "audit-writer");
+        drainThread.setDaemon(true);
+        drainThread.start();
+
+        if (meterRegistry != null) {
+            FunctionCounter.builder("audit.events.dropped", dropped, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("audit.events.sampled_out", sampledOut, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Record an event without blocking. Success events may be sampled out.
+     */
+    public void record(AuditEventType type, String subject, String detail) {
+        if (!running) {
+            return;
+        }
+        if (type.isSuccess() && successSampleRate < 1.0
+                && ThreadLocalRandom.current().nextDouble() >= successSampleRate) {
+            sampledOut.increment();
+            return;
+        }
+
+        AuditEvent event = new AuditEvent(System.currentTimeMillis(), type, subject, detail);
+        if (ringBuffer.offer(event)) {
+            wakeDrain();
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            ringBuffer.poll();
+            dropped.increment();
+            if (ringBuffer.offer(event)) {
+                return;
+            }
+        }
+        dropped.increment();
+    }
+
+    /**
+     * Only the producer that finds the drain thread parked on an empty ring pays for the unpark.
+     */
+    private void wakeDrain() {
+        if (drainIdle) {
+            drainIdle = false;
+            LockSupport.unpark(drainThread);
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainThread);
+        drainThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void drainLoop() {
+        while (running || ringBuffer.size() > 0) {
+            int drained = 0;
+            AuditEvent event;
+            try {
+                while (drained < batchSize && (event = ringBuffer.poll()) != null) {
+                    writer.append(event);
+                    drained++;
+                }
+                writer.flush(false);
+            } catch (IOException e) {
+                logger.error("Failed to write audit batch", e);
+            }
+            if (drained == 0 && running) {
+                // Publish idle before re-checking so a concurrent record() either sees the
+                // flag and unparks us, or its event is visible here and we skip the park.
+                // The timeout only bounds how late a pending time-based fsync can run.
+                drainIdle = true;
+                if (ringBuffer.size() == 0 && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMs)));
+                }
+                drainIdle = false;
+            }
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Failed to close audit log", e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo1.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Appends audit events as JSON lines to rolling segment files.
+ * Lines are collected in a direct buffer and written in batches; fsync runs at
+ * most once per interval. Not thread-safe: owned by the single drain thread.
+ */
+public class AuditSegmentWriter implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final int maxSegments;
+    private final long fsyncIntervalNanos;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final StringBuilder line = new StringBuilder(256);
+
+    private FileChannel channel;
+    private long segmentBytes;
+    private int segmentCounter;
+    private boolean unsynced;
+    private long lastFsyncNanos = System.nanoTime();
+
+    public AuditSegmentWriter(Path directory, long maxSegmentBytes, int maxSegments, long fsyncIntervalMs) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegments = maxSegments;
+        this.fsyncIntervalNanos = fsyncIntervalMs * 1_000_000L;
+        Files.createDirectories(directory);
+    }
+
+    public void append(AuditEvent event) throws IOException {
+        byte[] bytes = encode(event);
+        if (bytes.length > buffer.remaining()) {
+            flushBuffer();
+        }
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+            return;
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Write buffered lines and fsync if the interval has passed (or always when forced).
+     */
+    public void flush(boolean forceSync) throws IOException {
+        flushBuffer();
+        long now = System.nanoTime();
+        if (unsynced && (forceSync || now - lastFsyncNanos >= fsyncIntervalNanos)) {
+            channel.force(false);
+            unsynced = false;
+            lastFsyncNanos = now;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush(true);
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        ensureSegment(source.remaining());
+        while (source.hasRemaining()) {
+            segmentBytes += channel.write(source);
+        }
+        unsynced = true;
+    }
+
+    private void ensureSegment(int incomingBytes) throws IOException {
+        if (channel != null && (segmentBytes == 0 || segmentBytes + incomingBytes <= maxSegmentBytes)) {
+            return;
+        }
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+
+        String name = String.format("%s%013d-%04d%s", SEGMENT_PREFIX, System.currentTimeMillis(),
+                segmentCounter++ % 10_000, SEGMENT_SUFFIX);
+        channel = FileChannel.open(directory.resolve(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+        unsynced = false;
+        pruneOldSegments();
+    }
+
+    private void pruneOldSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        if (segments.size() <= maxSegments) {
+            return;
+        }
+        Collections.sort(segments);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private byte[] encode(AuditEvent event) {
+        line.setLength(0);
+        line.append("{\"ts\":").append(event.getTimestamp())
+                .append(",\"type\":\"").append(event.getType().name()).append('"');
+        if (event.getSubject() != null) {
+            line.append(",\"subject\":");
+            appendQuoted(event.getSubject());
+        }
+        if (event.getDetail() != null) {
+            line.append(",\"detail\":");
+            appendQuoted(event.getDetail());
+        }
+        line.append("}\n");
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendQuoted(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+}
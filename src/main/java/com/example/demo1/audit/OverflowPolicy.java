@@ -0,0 +1,12 @@
+package com.example.demo1.audit;
+
+/**
+ * What to do with an audit event when the ring buffer is full.
+ * Neither policy blocks the calling thread.
+ */
+public enum OverflowPolicy {
+    /** Discard the event being recorded. */
+    DROP_NEWEST,
+    /** Discard the oldest buffered event to make room. */
+    DROP_OLDEST
+}
@@ -0,0 +1,313 @@
+package com.example.demo1.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Broadcasts user cache invalidations to the other nodes of the cluster.
+ * Changes are applied to the local {@link UserCache} at once, then queued and
+ * sent in batches every {@code batch-interval-ms}; repeated changes of the same
+ * user within one window go out as a single message. Received messages are
+ * deduplicated by (origin, sequence), since both transports may deliver a
+ * message more than once.
+ */
+@Component
+public class InvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * none (single node), jdbc or udp
+     */
+    @Value("${cache.invalidation.transport:none}")
+    private String transportType;
+
+    @Value("${cache.invalidation.node-id:}")
+    private String nodeId;
+
+    @Value("${cache.invalidation.batch-interval-ms:20}")
+    private long batchIntervalMs;
+
+    @Value("${cache.invalidation.max-batch:256}")
+    private int maxBatch;
+
+    @Value("${cache.invalidation.dedup-window:65536}")
+    private int dedupWindow;
+
+    @Value("${cache.invalidation.jdbc.poll-interval-ms:200}")
+    private long jdbcPollIntervalMs;
+
+    @Value("${cache.invalidation.jdbc.retention-ms:600000}")
+    private long jdbcRetentionMs;
+
+    /**
+     * Local interface address to listen on; the wildcard address is refused
+     */
+    @Value("${cache.invalidation.udp.bind-address:}")
+    private String udpBindAddress;
+
+    @Value("${cache.invalidation.udp.port:47400}")
+    private int udpPort;
+
+    /**
+     * Comma-separated host:port list of the other nodes
+     */
+    @Value("${cache.invalidation.udp.peers:}")
+    private String udpPeers;
+
+    @Value("${cache.invalidation.udp.repeat:2}")
+    private int udpRepeat;
+
+    /**
+     * Shared by every node to sign datagrams; must differ from jwt.secret
+     */
+    @Value("${cache.invalidation.udp.secret:}")
+    private String udpSecret;
+
+    @Value("${jwt.secret:}")
+    private String jwtSecret;
+
+    // keyed by user id and email, so a burst of changes to one user is sent once
+    private final ConcurrentHashMap<String, InvalidationMessage> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private Map<String, Boolean> seen;
+
+    private InvalidationTransport transport;
+    private Thread publisherThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() throws IOException {
+        InvalidationTransport created = switch (transportType.trim().toLowerCase()) {
+            case "none", "" -> null;
+            case "jdbc" -> {
+                if (jdbcTemplate == null) {
+                    throw new IllegalStateException("cache.invalidation.transport=jdbc needs a DataSource");
+                }
+                yield new JdbcInvalidationTransport(jdbcTemplate, jdbcPollIntervalMs, jdbcRetentionMs);
+            }
+            case "udp" -> createUdpTransport();
+            default -> throw new IllegalStateException("Unknown cache.invalidation.transport: " + transportType);
+        };
+        if (created != null) {
+            start(created);
+        }
+    }
+
+    /**
+     * Start broadcasting over the transport; also used by tests to wire nodes by hand.
+     */
+    void start(InvalidationTransport transport) throws IOException {
+        if (!StringUtils.hasText(nodeId)) {
+            nodeId = UUID.randomUUID().toString().substring(0, 8);
+        }
+        seen = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupWindow;
+            }
+        };
+        this.transport = transport;
+        transport.start(this::receive);
+
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "invalidation-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+        logger.info("Cache invalidation bus started as node {} over {}", nodeId, transport.getClass().getSimpleName());
+
+        if (meterRegistry != null) {
+            Gauge.builder("cache.invalidation.pending", pending, ConcurrentHashMap::size).register(meterRegistry);
+            FunctionCounter.builder("cache.invalidation.sent", sent, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("cache.invalidation.received", received, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("cache.invalidation.duplicates", duplicates, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("cache.invalidation.failures", failures, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException, InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(publisherThread);
+        publisherThread.join(TimeUnit.SECONDS.toMillis(5));
+        transport.close();
+    }
+
+    /**
+     * Runs after the surrounding transaction commits, or at once outside a transaction,
+     * so peers never reload the row before the change is visible to them.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        publish(event.userId(), event.email());
+        if (event.previousEmail() != null && !event.previousEmail().equalsIgnoreCase(event.email())) {
+            publish(event.userId(), event.previousEmail());
+        }
+    }
+
+    public void publish(Long userId, String email) {
+        userCache.invalidate(userId, email);
+        if (!running) {
+            return;
+        }
+        long id = userId != null ? userId : -1;
+        pending.put(id + "|" + email, new InvalidationMessage(nodeId, sequence.incrementAndGet(), id, email));
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    void receive(List<InvalidationMessage> batch) {
+        for (InvalidationMessage message : batch) {
+            if (nodeId.equals(message.origin())) {
+                continue;
+            }
+            boolean duplicate;
+            synchronized (seen) {
+                duplicate = seen.put(message.origin() + ":" + message.sequence(), Boolean.TRUE) != null;
+            }
+            if (duplicate) {
+                duplicates.increment();
+                continue;
+            }
+            received.increment();
+            userCache.invalidate(message.userId() >= 0 ? message.userId() : null, message.email());
+            if (userDirectory.isLoaded() && message.userId() >= 0) {
+                // the directory is a full replica: reload the row rather than drop it
+                userDirectory.refresh(message.userId());
+            }
+            if (eventPublisher != null && message.userId() >= 0) {
+                eventPublisher.publishEvent(new RemoteUserChangedEvent(message.userId()));
+            }
+        }
+    }
+
+    /**
+     * Every cycle makes one pass over the pending map, so messages queued early
+     * are not starved by a stream of newer ones landing ahead of them.
+     */
+    private void publishLoop() {
+        while (running || !pending.isEmpty()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(batchIntervalMs));
+            List<InvalidationMessage> batch = new ArrayList<>();
+            Iterator<Map.Entry<String, InvalidationMessage>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, InvalidationMessage> entry = iterator.next();
+                if (pending.remove(entry.getKey(), entry.getValue())) {
+                    batch.add(entry.getValue());
+                }
+                if (batch.size() == maxBatch) {
+                    if (!send(batch)) {
+                        break;
+                    }
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty() && !send(batch) && !running) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false when the batch failed and was queued again
+     */
+    private boolean send(List<InvalidationMessage> batch) {
+        try {
+            transport.publish(batch);
+            sent.add(batch.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.warn("Failed to publish {} cache invalidations, will retry", batch.size(), e);
+            for (InvalidationMessage message : batch) {
+                pending.putIfAbsent(message.userId() + "|" + message.email(), message);
+            }
+            return false;
+        }
+    }
+
+    private UdpInvalidationTransport createUdpTransport() {
+        if (!StringUtils.hasText(udpBindAddress)) {
+            throw new IllegalStateException("cache.invalidation.udp.bind-address must be set");
+        }
+        if (!StringUtils.hasText(udpSecret)) {
+            throw new IllegalStateException("cache.invalidation.udp.secret must be set");
+        }
+        if (udpSecret.equals(jwtSecret)) {
+            throw new IllegalStateException("cache.invalidation.udp.secret must differ from jwt.secret");
+        }
+        try {
+            return new UdpInvalidationTransport(udpBindAddress.trim(), udpPort, parsePeers(udpPeers), udpRepeat,
+                    udpSecret.getBytes(StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid cache.invalidation.udp settings: " + e.getMessage(), e);
+        }
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String peer : StringUtils.commaDelimitedListToStringArray(peers)) {
+            peer = peer.trim();
+            if (peer.isEmpty()) {
+                continue;
+            }
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalStateException("Peer must be host:port: " + peer);
+            }
+            addresses.add(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo1.cache;
+
+/**
+ * One cache invalidation as sent between nodes. The sequence is assigned by the
+ * origin node and only increases, so (origin, sequence) identifies a message and
+ * lets receivers drop duplicates.
+ */
+public record InvalidationMessage(String origin, long sequence, long userId, String email) {}
@@ -0,0 +1,20 @@
+package com.example.demo1.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation batches between nodes. Delivery may be duplicated or, for
+ * lossy transports, incomplete; the user cache TTL bounds staleness in that case.
+ */
+public interface InvalidationTransport extends Closeable {
+
+    /**
+     * Start delivering batches published by other nodes to the receiver.
+     */
+    void start(Consumer<List<InvalidationMessage>> receiver) throws IOException;
+
+    void publish(List<InvalidationMessage> batch) throws IOException;
+}
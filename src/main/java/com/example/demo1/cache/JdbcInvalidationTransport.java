@@ -0,0 +1,164 @@
+package com.example.demo1.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Invalidations through a shared table that every node polls, for deployments
+ * with no broker: the database all nodes already share is the bus.
+ * Row ids may become visible out of order when inserts commit concurrently, so
+ * ids skipped by a poll are remembered as gaps and looked up again on later polls
+ * until they show up or, for inserts that rolled back, time out.
+ */
+public class JdbcInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcInvalidationTransport.class);
+
+    private static final String CREATE_SQL =
+            "CREATE TABLE IF NOT EXISTS user_invalidations ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "origin VARCHAR(64) NOT NULL, "
+                    + "seq BIGINT NOT NULL, "
+                    + "user_id BIGINT NOT NULL, "
+                    + "email VARCHAR(255), "
+                    + "created_at TIMESTAMP NOT NULL)";
+    private static final String INSERT_SQL =
+            "INSERT INTO user_invalidations (origin, seq, user_id, email, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String COLUMNS = "SELECT id, origin, seq, user_id, email FROM user_invalidations ";
+    private static final String POLL_SQL = COLUMNS + "WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String PURGE_SQL = "DELETE FROM user_invalidations WHERE created_at < ?";
+
+    private static final int POLL_LIMIT = 1000;
+    private static final int MAX_GAP_LOOKUPS = 500;
+    private static final long GAP_TIMEOUT_MS = 10_000;
+    private static final long PURGE_INTERVAL_MS = 60_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long pollIntervalMs;
+    private final long retentionMs;
+
+    private Consumer<List<InvalidationMessage>> receiver;
+    private Thread pollerThread;
+    private volatile boolean running;
+    private long lastId;
+    private long lastPurge;
+    // ids below lastId not seen yet, with the time they were skipped
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+
+    public JdbcInvalidationTransport(JdbcTemplate jdbcTemplate, long pollIntervalMs, long retentionMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollIntervalMs = pollIntervalMs;
+        this.retentionMs = retentionMs;
+    }
+
+    @Override
+    public void start(Consumer<List<InvalidationMessage>> receiver) {
+        this.receiver = receiver;
+        jdbcTemplate.execute(CREATE_SQL);
+        // earlier messages are of no use: this node's cache starts empty
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM user_invalidations", Long.class);
+        lastId = maxId != null ? maxId : 0;
+        lastPurge = System.currentTimeMillis();
+
+        running = true;
+        pollerThread = new Thread(this::pollLoop, "invalidation-poller");
+        pollerThread.setDaemon(true);
+        pollerThread.start();
+    }
+
+    @Override
+    public void publish(List<InvalidationMessage> batch) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (InvalidationMessage message : batch) {
+            rows.add(new Object[]{message.origin(), message.sequence(), message.userId(), message.email(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(pollerThread);
+        try {
+            pollerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                poll();
+                if (System.currentTimeMillis() - lastPurge > PURGE_INTERVAL_MS) {
+                    purge();
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to poll cache invalidations", e);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pollIntervalMs));
+        }
+    }
+
+    void poll() {
+        long now = System.currentTimeMillis();
+        List<InvalidationMessage> batch = new ArrayList<>();
+        if (!gaps.isEmpty()) {
+            gaps.values().removeIf(skippedAt -> now - skippedAt > GAP_TIMEOUT_MS);
+            List<Long> lookups = new ArrayList<>(gaps.keySet()).subList(0, Math.min(gaps.size(), MAX_GAP_LOOKUPS));
+            if (!lookups.isEmpty()) {
+                String sql = COLUMNS + "WHERE id IN (" + String.join(", ", Collections.nCopies(lookups.size(), "?")) + ")";
+                jdbcTemplate.query(sql, rs -> {
+                    gaps.remove(rs.getLong("id"));
+                    batch.add(readMessage(rs));
+                }, lookups.toArray());
+            }
+        }
+
+        int read;
+        do {
+            long from = lastId;
+            List<Long> ids = new ArrayList<>();
+            jdbcTemplate.query(POLL_SQL, rs -> {
+                ids.add(rs.getLong("id"));
+                batch.add(readMessage(rs));
+            }, from, POLL_LIMIT);
+            for (long id : ids) {
+                for (long missing = lastId + 1; missing < id; missing++) {
+                    gaps.put(missing, now);
+                }
+                lastId = id;
+            }
+            read = ids.size();
+        } while (read == POLL_LIMIT && running);
+
+        if (!batch.isEmpty()) {
+            receiver.accept(batch);
+        }
+    }
+
+    private static InvalidationMessage readMessage(ResultSet rs) throws SQLException {
+        return new InvalidationMessage(rs.getString("origin"), rs.getLong("seq"), rs.getLong("user_id"), rs.getString("email"));
+    }
+
+    private void purge() {
+        lastPurge = System.currentTimeMillis();
+        int purged = jdbcTemplate.update(PURGE_SQL, new Timestamp(lastPurge - retentionMs));
+        if (purged > 0) {
+            logger.debug("Purged {} old cache invalidations", purged);
+        }
+    }
+}
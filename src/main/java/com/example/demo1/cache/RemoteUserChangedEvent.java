@@ -0,0 +1,8 @@
+package com.example.demo1.cache;
+
+/**
+ * Published by the InvalidationBus for a user changed on another node. Only the id travels
+ * between nodes, so listeners read the current row themselves.
+ */
+public record RemoteUserChangedEvent(long userId) {
+}
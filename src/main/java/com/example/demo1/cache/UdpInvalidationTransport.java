@@ -0,0 +1,241 @@
+package com.example.demo1.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Invalidations as UDP datagrams sent straight to a fixed list of peers, for
+ * nodes on the same network. Delivery is best effort: each datagram is sent
+ * {@code repeat} times to ride out occasional loss, and the cache TTL bounds
+ * staleness when every copy is lost.
+ *
+ * <p>Datagram layout: magic (4), origin length (1) and UTF-8 origin, message
+ * count (2), then per message sequence (8), user id (8), email length (2) and
+ * UTF-8 email (length 0xFFFF for none), followed by an HMAC-SHA256 of all of
+ * the above under the cluster secret. Batches are split so that every
+ * datagram stays below a typical MTU.
+ *
+ * <p>The socket is bound to one configured interface, and a datagram is only
+ * accepted when it comes from a listed peer and carries a valid tag. Replays
+ * of a captured datagram are absorbed by the bus's (origin, sequence) dedup
+ * window and at worst cost a cache reload.
+ */
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(UdpInvalidationTransport.class);
+
+    private static final int MAGIC = 0x55494e31; // "UIN1"
+    static final int MAX_DATAGRAM_BYTES = 1200;
+    private static final int NO_EMAIL = 0xFFFF;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    static final int TAG_BYTES = 32;
+
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private final Set<InetSocketAddress> trustedSenders;
+    private final int repeat;
+    private final SecretKeySpec key;
+    // one per thread: the publisher signs, the receiver verifies
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    private DatagramChannel channel;
+    private Thread receiverThread;
+    private volatile boolean running;
+
+    public UdpInvalidationTransport(String bindHost, int port, List<InetSocketAddress> peers, int repeat, byte[] secret) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("A cluster secret is required");
+        }
+        this.bindAddress = new InetSocketAddress(bindHost, port);
+        if (bindAddress.isUnresolved() || bindAddress.getAddress().isAnyLocalAddress()) {
+            throw new IllegalArgumentException("Bind address must be a local interface, not " + bindHost);
+        }
+        this.peers = List.copyOf(peers);
+        this.trustedSenders = Set.copyOf(peers);
+        this.repeat = Math.max(1, repeat);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public void start(Consumer<List<InvalidationMessage>> receiver) throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(bindAddress);
+
+        running = true;
+        receiverThread = new Thread(() -> receiveLoop(receiver), "invalidation-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    public int getLocalPort() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public void publish(List<InvalidationMessage> batch) throws IOException {
+        for (ByteBuffer datagram : encode(batch)) {
+            for (int attempt = 0; attempt < repeat; attempt++) {
+                for (InetSocketAddress peer : peers) {
+                    channel.send(datagram.duplicate(), peer);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        channel.close();
+        try {
+            receiverThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void receiveLoop(Consumer<List<InvalidationMessage>> receiver) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+        while (running) {
+            try {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                if (sender == null) {
+                    continue;
+                }
+                if (!trustedSenders.contains(sender)) {
+                    logger.debug("Dropped invalidation datagram from unknown sender {}", sender);
+                    continue;
+                }
+                buffer.flip();
+                List<InvalidationMessage> batch = decode(buffer);
+                if (batch != null) {
+                    receiver.accept(batch);
+                } else {
+                    logger.debug("Dropped malformed or unsigned invalidation datagram from {}", sender);
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to receive cache invalidations", e);
+            }
+        }
+    }
+
+    /**
+     * Split the batch into signed datagrams of at most {@link #MAX_DATAGRAM_BYTES}.
+     */
+    List<ByteBuffer> encode(List<InvalidationMessage> batch) {
+        List<ByteBuffer> datagrams = new ArrayList<>();
+        ByteBuffer datagram = null;
+        int count = 0;
+        int countOffset = 0;
+        for (InvalidationMessage message : batch) {
+            byte[] email = message.email() != null ? message.email().getBytes(StandardCharsets.UTF_8) : null;
+            int size = 18 + (email != null ? email.length : 0);
+            if (datagram == null || datagram.remaining() < size || count == 0xFFFF) {
+                if (datagram != null) {
+                    datagrams.add(sign(datagram.putShort(countOffset, (short) count)));
+                }
+                byte[] origin = message.origin().getBytes(StandardCharsets.UTF_8);
+                datagram = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+                datagram.limit(MAX_DATAGRAM_BYTES - TAG_BYTES);
+                datagram.putInt(MAGIC).put((byte) origin.length).put(origin);
+                countOffset = datagram.position();
+                datagram.putShort((short) 0);
+                count = 0;
+                if (datagram.remaining() < size) {
+                    throw new IllegalArgumentException("Invalidation does not fit in a datagram: " + message.email());
+                }
+            }
+            datagram.putLong(message.sequence()).putLong(message.userId());
+            if (email == null) {
+                datagram.putShort((short) NO_EMAIL);
+            } else {
+                datagram.putShort((short) email.length).put(email);
+            }
+            count++;
+        }
+        if (datagram != null) {
+            datagrams.add(sign(datagram.putShort(countOffset, (short) count)));
+        }
+        return datagrams;
+    }
+
+    /**
+     * @return the messages, or null for a datagram that is not ours, is truncated or fails the tag check
+     */
+    List<InvalidationMessage> decode(ByteBuffer datagram) {
+        if (datagram.remaining() < TAG_BYTES) {
+            return null;
+        }
+        int bodyEnd = datagram.limit() - TAG_BYTES;
+        Mac mac = macs.get();
+        mac.update(datagram.duplicate().limit(bodyEnd));
+        byte[] tag = new byte[TAG_BYTES];
+        datagram.duplicate().position(bodyEnd).get(tag);
+        if (!MessageDigest.isEqual(mac.doFinal(), tag)) {
+            return null;
+        }
+        datagram.limit(bodyEnd);
+        try {
+            if (datagram.getInt() != MAGIC) {
+                return null;
+            }
+            byte[] origin = new byte[datagram.get() & 0xFF];
+            datagram.get(origin);
+            String originId = new String(origin, StandardCharsets.UTF_8);
+            int count = datagram.getShort() & 0xFFFF;
+            List<InvalidationMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long sequence = datagram.getLong();
+                long userId = datagram.getLong();
+                int emailLength = datagram.getShort() & 0xFFFF;
+                String email = null;
+                if (emailLength != NO_EMAIL) {
+                    byte[] bytes = new byte[emailLength];
+                    datagram.get(bytes);
+                    email = new String(bytes, StandardCharsets.UTF_8);
+                }
+                messages.add(new InvalidationMessage(originId, sequence, userId, email));
+            }
+            return messages;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private ByteBuffer sign(ByteBuffer datagram) {
+        Mac mac = macs.get();
+        mac.update(datagram.duplicate().flip());
+        datagram.limit(MAX_DATAGRAM_BYTES).put(mac.doFinal());
+        return datagram.flip();
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
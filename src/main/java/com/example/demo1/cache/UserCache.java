@@ -0,0 +1,345 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of users for the authentication path, indexed by id and email.
+ * Entries expire after a TTL and are dropped by {@link #invalidate(Long, String)},
+ * which the {@link InvalidationBus} calls for changes made on this or any other node.
+ * A load that raced an invalidation of the same user is not cached, so a slow
+ * read of the old row can never outlive the invalidation.
+ *
+ * <p>With snapshots enabled the cache is written to a {@link UserCacheSnapshot}
+ * periodically and on shutdown, and restored on startup. Restored entries are
+ * unverified and carry no password hash: the first hit on one reads the row
+ * version and hash, together with a batch of other unverified entries in the
+ * same query, drops those that changed and starts the TTL of the rest from
+ * there. Until then the TTL does not apply, as there is nothing it could bound;
+ * entries still unverified after one snapshot interval are pruned.
+ */
+@Component
+public class UserCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+    private static final int VERIFY_BATCH = 500;
+
+    private record Entry(User user, long loadedAtNanos, boolean verified) {}
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Off by default: with several nodes and no invalidation transport, a node keeps serving
+     * a changed password or role from its cache until the TTL runs out
+     */
+    @Value("${cache.user.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.invalidation.transport:none}")
+    private String transportType;
+
+    @Value("${cache.user.ttl-ms:30000}")
+    private long ttlMs;
+
+    @Value("${cache.user.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${cache.user.snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    @Value("${cache.user.snapshot.path:data/user-cache.snap}")
+    private String snapshotPath;
+
+    @Value("${cache.user.snapshot.interval-ms:300000}")
+    private long snapshotIntervalMs;
+
+    private final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> byEmail = new ConcurrentHashMap<>();
+    // generation at which a key was last invalidated, checked by loads that started earlier
+    private final ConcurrentHashMap<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    // restored entries whose row version has not been checked yet
+    private final Set<Long> unverified = ConcurrentHashMap.newKeySet();
+    private long pruneMark;
+
+    @PostConstruct
+    void init() {
+        if (meterRegistry != null) {
+            Gauge.builder("user.cache.size", byId, ConcurrentHashMap::size).register(meterRegistry);
+            FunctionCounter.builder("user.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("user.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("user.cache.snapshot.stale", stale, LongAdder::sum).register(meterRegistry);
+        }
+        if (enabled && (transportType == null || transportType.isBlank() || "none".equalsIgnoreCase(transportType.trim()))) {
+            logger.warn("User cache enabled without cache.invalidation.transport; only safe on a single node");
+        }
+        if (enabled && snapshotEnabled) {
+            restore(Paths.get(snapshotPath));
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (enabled && snapshotEnabled) {
+            snapshot(Paths.get(snapshotPath));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.user.snapshot.interval-ms:300000}",
+            initialDelayString = "${cache.user.snapshot.interval-ms:300000}")
+    public void scheduledSnapshot() {
+        if (enabled && snapshotEnabled) {
+            snapshot(Paths.get(snapshotPath));
+        }
+    }
+
+    /**
+     * Write the cached users to the file; failures are logged, the cache keeps working.
+     */
+    public void snapshot(Path file) {
+        long started = System.nanoTime();
+        List<User> users = new ArrayList<>(byId.size());
+        for (Entry entry : byId.values()) {
+            users.add(entry.user());
+        }
+        try {
+            int written = UserCacheSnapshot.write(file, users);
+            logger.info("Wrote {} cached users to {} in {} ms", written, file, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            logger.warn("Failed to write user cache snapshot {}", file, e);
+        }
+    }
+
+    /**
+     * Load a snapshot as unverified entries; a missing or unreadable file leaves the cache empty.
+     */
+    public void restore(Path file) {
+        List<User> users;
+        try {
+            users = UserCacheSnapshot.read(file);
+        } catch (IOException e) {
+            logger.warn("Ignoring user cache snapshot: {}", e.getMessage());
+            return;
+        }
+        long now = System.nanoTime();
+        for (User user : users) {
+            if (byId.size() >= maxEntries) {
+                break;
+            }
+            Entry entry = new Entry(user, now, false);
+            byId.put(user.getId(), entry);
+            byEmail.put(normalize(user.getEmail()), entry);
+            unverified.add(user.getId());
+        }
+        if (!users.isEmpty()) {
+            logger.info("Restored {} cached users from {}", byId.size(), file);
+        }
+    }
+
+    public Optional<User> getByEmail(String email, Function<String, Optional<User>> loader) {
+        String key = normalize(email);
+        return get(byEmail.get(key), () -> loader.apply(key));
+    }
+
+    public Optional<User> getById(Long id, Function<Long, Optional<User>> loader) {
+        return get(byId.get(id), () -> loader.apply(id));
+    }
+
+    public void invalidate(Long userId, String email) {
+        long invalidation = generation.incrementAndGet();
+        if (userId != null) {
+            unverified.remove(userId);
+            invalidatedAt.put(idKey(userId), invalidation);
+            Entry removed = byId.remove(userId);
+            if (removed != null) {
+                byEmail.remove(normalize(removed.user().getEmail()), removed);
+            }
+        }
+        if (email != null) {
+            String key = normalize(email);
+            invalidatedAt.put(emailKey(key), invalidation);
+            Entry removed = byEmail.remove(key);
+            if (removed != null) {
+                byId.remove(removed.user().getId(), removed);
+            }
+        }
+    }
+
+    public boolean contains(Long userId) {
+        return byId.containsKey(userId);
+    }
+
+    public void clear() {
+        unverified.clear();
+        invalidatedAt.clear();
+        byId.clear();
+        byEmail.clear();
+    }
+
+    /**
+     * Drop expired entries, restored entries nobody asked for, and invalidation marks
+     * older than any load still running.
+     */
+    @Scheduled(fixedDelayString = "${cache.user.prune-interval-ms:30000}")
+    public synchronized void prune() {
+        long now = System.nanoTime();
+        byId.values().removeIf(entry -> expired(entry, now));
+        byEmail.values().removeIf(entry -> expired(entry, now));
+
+        long mark = pruneMark;
+        invalidatedAt.values().removeIf(invalidation -> invalidation <= mark);
+        pruneMark = generation.get();
+    }
+
+    private Optional<User> get(Entry cached, Supplier<Optional<User>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        if (cached != null && (cached.verified() ? !expired(cached, System.nanoTime()) : verify(cached))) {
+            hits.increment();
+            return Optional.of(cached.user());
+        }
+
+        misses.increment();
+        long loadStarted = generation.get();
+        Optional<User> loaded = loader.get();
+        loaded.ifPresent(user -> store(user, loadStarted));
+        return loaded;
+    }
+
+    private void store(User user, long loadStarted) {
+        if (user.getId() == null || byId.size() >= maxEntries) {
+            return;
+        }
+        String email = normalize(user.getEmail());
+        if (invalidatedSince(user.getId(), email, loadStarted)) {
+            return;
+        }
+
+        Entry entry = new Entry(user, System.nanoTime(), true);
+        byId.put(user.getId(), entry);
+        byEmail.put(email, entry);
+        // an invalidation may have slipped in between the check and the puts
+        if (invalidatedSince(user.getId(), email, loadStarted)) {
+            byId.remove(user.getId(), entry);
+            byEmail.remove(email, entry);
+        }
+    }
+
+    /**
+     * Check the entry's row version and fill in its password hash, along with other
+     * unverified entries, in one query. False when the entry is stale, could not be checked, or is being checked by
+     * another thread; the caller then loads the row itself.
+     */
+    private boolean verify(Entry entry) {
+        Long id = entry.user().getId();
+        if (jdbcTemplate == null || !unverified.remove(id)) {
+            return false;
+        }
+        List<Long> batch = new ArrayList<>();
+        batch.add(id);
+        for (Iterator<Long> iterator = unverified.iterator(); iterator.hasNext() && batch.size() < VERIFY_BATCH; ) {
+            Long other = iterator.next();
+            if (unverified.remove(other)) {
+                batch.add(other);
+            }
+        }
+
+        Map<Long, Long> versions = new HashMap<>();
+        Map<Long, String> passwords = new HashMap<>();
+        try {
+            String sql = "SELECT id, version, password FROM users WHERE id IN ("
+                    + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+            jdbcTemplate.query(sql, rs -> {
+                versions.put(rs.getLong("id"), rs.getLong("version"));
+                passwords.put(rs.getLong("id"), rs.getString("password"));
+            }, batch.toArray());
+        } catch (DataAccessException e) {
+            unverified.addAll(batch);
+            logger.warn("Failed to verify restored cache entries", e);
+            return false;
+        }
+
+        boolean current = false;
+        for (Long checked : batch) {
+            Entry restored = byId.get(checked);
+            if (restored == null || restored.verified()) {
+                continue;
+            }
+            String email = normalize(restored.user().getEmail());
+            Long version = versions.get(checked);
+            if (version != null && version == restored.user().getVersion()) {
+                // nobody reads a restored user before it is verified, so it can be completed in place
+                restored.user().setPassword(passwords.get(checked));
+                Entry verified = new Entry(restored.user(), System.nanoTime(), true);
+                byId.replace(checked, restored, verified);
+                byEmail.replace(email, restored, verified);
+                current |= checked.equals(id);
+            } else {
+                stale.increment();
+                byId.remove(checked, restored);
+                byEmail.remove(email, restored);
+            }
+        }
+        return current;
+    }
+
+    private boolean expired(Entry entry, long now) {
+        long lifetimeMs = entry.verified() ? ttlMs : snapshotIntervalMs;
+        return now - entry.loadedAtNanos() > lifetimeMs * 1_000_000;
+    }
+
+    private boolean invalidatedSince(Long id, String email, long loadStarted) {
+        return invalidatedAt.getOrDefault(idKey(id), 0L) > loadStarted
+                || invalidatedAt.getOrDefault(emailKey(email), 0L) > loadStarted;
+    }
+
+    private static String idKey(Long id) {
+        return "id:" + id;
+    }
+
+    private static String emailKey(String normalizedEmail) {
+        return "email:" + normalizedEmail;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
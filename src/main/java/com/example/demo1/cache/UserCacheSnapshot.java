@@ -0,0 +1,188 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of cached users, written sequentially through a FileChannel
+ * and read back through a read-only mapping.
+ *
+ * <p>Header (40 bytes): magic (8), format version (4), entry count (4), written-at
+ * millis (8), payload length (8), CRC32C of the payload (4), reserved (4).
+ * Entry: id (8), row version (8), role ordinal (1), email and name lengths
+ * (2 each), then the UTF-8 email and name. Password hashes are left out: read
+ * users have none, and the cache fills it in when it verifies the entry.
+ * Snapshots are written to a temporary file and moved into place, so a crash
+ * mid-write leaves the previous snapshot intact.
+ */
+public final class UserCacheSnapshot {
+
+    private static final long MAGIC = 0x5543534e_41503031L; // "UCSNAP01"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 40;
+    private static final int ENTRY_HEADER_BYTES = 21;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+    private static final Role[] ROLES = Role.values();
+
+    private UserCacheSnapshot() {
+    }
+
+    /**
+     * @return number of users written
+     */
+    public static int write(Path file, Collection<User> users) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        long payloadBytes = 0;
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            restrictToOwner(temp);
+            channel.position(HEADER_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+            for (User user : users) {
+                if (user.getId() == null || user.getEmail() == null || user.getRole() == null) {
+                    continue;
+                }
+                byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+                byte[] name = user.getName() != null ? user.getName().getBytes(StandardCharsets.UTF_8) : new byte[0];
+                int size = ENTRY_HEADER_BYTES + email.length + name.length;
+                if (email.length > 0xFFFF || name.length > 0xFFFF || size > buffer.capacity()) {
+                    continue;
+                }
+                if (buffer.remaining() < size) {
+                    payloadBytes += flush(channel, buffer, crc);
+                }
+                buffer.putLong(user.getId())
+                        .putLong(user.getVersion())
+                        .put((byte) user.getRole().ordinal())
+                        .putShort((short) email.length)
+                        .putShort((short) name.length)
+                        .put(email)
+                        .put(name);
+                count++;
+            }
+            payloadBytes += flush(channel, buffer, crc);
+
+            buffer.clear();
+            buffer.putLong(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(count)
+                    .putLong(System.currentTimeMillis())
+                    .putLong(payloadBytes)
+                    .putInt((int) crc.getValue())
+                    .putInt(0)
+                    .flip();
+            channel.write(buffer, 0);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Users in the snapshot, without password hashes; empty when there is none.
+     *
+     * @throws IOException when the file is truncated, corrupt or of another format version
+     */
+    public static List<User> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getLong(0) != MAGIC) {
+                throw new IOException("Snapshot " + file + " has no snapshot header");
+            }
+            if (mapped.getInt(8) != FORMAT_VERSION) {
+                throw new IOException("Snapshot " + file + " has format version " + mapped.getInt(8));
+            }
+            int count = mapped.getInt(12);
+            long payloadBytes = mapped.getLong(24);
+            if (payloadBytes != size - HEADER_BYTES || payloadBytes > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            ByteBuffer payload = mapped.slice(HEADER_BYTES, (int) payloadBytes);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != mapped.getInt(32)) {
+                throw new IOException("Snapshot " + file + " fails its checksum");
+            }
+
+            List<User> users = new ArrayList<>(Math.min(count, 1 << 20));
+            try {
+                for (int i = 0; i < count; i++) {
+                    long id = payload.getLong();
+                    long version = payload.getLong();
+                    int role = payload.get();
+                    int emailLength = payload.getShort() & 0xFFFF;
+                    int nameLength = payload.getShort() & 0xFFFF;
+                    String email = string(payload, emailLength);
+                    String name = string(payload, nameLength);
+                    if (role < 0 || role >= ROLES.length) {
+                        throw new IOException("Snapshot " + file + " has an unknown role " + role);
+                    }
+                    User user = new User(name, email, null, ROLES[role]);
+                    user.setId(id);
+                    user.setVersion(version);
+                    users.add(user);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Snapshot " + file + " holds fewer entries than its header says", e);
+            }
+            return users;
+        }
+    }
+
+    /**
+     * The snapshot still lists every cached email address.
+     */
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system; rely on the directory's permissions
+        }
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+        buffer.flip();
+        int bytes = buffer.remaining();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    private static String string(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo1.cache;
+
+public enum UserChangeType {
+    CREATED,
+    UPDATED,
+    ROLE_CHANGED,
+    DELETED
+}
@@ -0,0 +1,31 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.User;
+
+/**
+ * Published by UserService after a user was registered, updated, had its role changed or was deleted.
+ * previousEmail is set when the change replaced the email address; user is null for deletions.
+ */
+public record UserChangedEvent(Long userId, String email, String previousEmail, UserChangeType type, User user) {
+
+    public UserChangedEvent(Long userId, String email) {
+        this(userId, email, null, UserChangeType.UPDATED, null);
+    }
+
+    public static UserChangedEvent created(User user) {
+        return new UserChangedEvent(user.getId(), user.getEmail(), null, UserChangeType.CREATED, user);
+    }
+
+    public static UserChangedEvent updated(User user, String previousEmail, boolean roleChanged) {
+        return new UserChangedEvent(user.getId(), user.getEmail(), previousEmail,
+                roleChanged ? UserChangeType.ROLE_CHANGED : UserChangeType.UPDATED, user);
+    }
+
+    public static UserChangedEvent roleChanged(User user) {
+        return new UserChangedEvent(user.getId(), user.getEmail(), null, UserChangeType.ROLE_CHANGED, user);
+    }
+
+    public static UserChangedEvent deleted(Long userId) {
+        return new UserChangedEvent(userId, null, null, UserChangeType.DELETED, null);
+    }
+}
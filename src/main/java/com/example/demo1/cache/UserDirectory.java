@@ -0,0 +1,699 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Read-through replica of the users table kept outside the Java heap, for the
+ * authentication path. Records are packed into a direct buffer arena and found
+ * through two open-addressing indexes, by email hash and by id, whose 16-byte
+ * slots hold the key and a reference into the arena.
+ *
+ * <p>Record layout: id (8), row version (8), role ordinal (1), email, name and
+ * password lengths (2 each), then the UTF-8 email, name and password hash. Emails
+ * are stored trimmed and lower-cased. A write carrying an older version than the
+ * stored record is dropped, so a slow refresh cannot undo a newer change.
+ *
+ * <p>Changes made on other nodes only arrive through the invalidation bus, so the
+ * directory refuses to start without a cache.invalidation.transport.
+ *
+ * <p>Readers run under an optimistic StampedLock read and retry under the read
+ * lock when a writer interfered. {@link #findIdByEmail}, {@link #roleOrdinalOf}
+ * and {@link #isAdmin} do not allocate for ASCII emails. Updated records are
+ * appended and the old bytes left behind; the tables are rebuilt when the arena
+ * or an index fills up.
+ */
+@Component
+public class UserDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectory.class);
+
+    private static final String COLUMNS = "SELECT id, version, name, email, password, role FROM users ";
+    private static final String SCAN_SQL = COLUMNS + "WHERE id BETWEEN ? AND ?";
+    private static final String ROW_SQL = COLUMNS + "WHERE id = ?";
+    private static final Role[] ROLES = Role.values();
+
+    private static final int VERSION = 8;
+    private static final int ROLE = 16;
+    private static final int EMAIL_LENGTH = 17;
+    private static final int NAME_LENGTH = 19;
+    private static final int PASSWORD_LENGTH = 21;
+    private static final int HEADER_BYTES = 23;
+
+    private static final int SLOT_BYTES = 16;
+    private static final int SLOT_REF = 8;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final double MAX_LOAD = 0.5;
+    private static final int MIN_ARENA_BYTES = 1 << 16;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Arena and indexes. Slot refs are record offset + 1, so that 0 means empty.
+     */
+    private static final class Tables {
+        final ByteBuffer arena;
+        final ByteBuffer emailIndex;
+        final ByteBuffer idIndex;
+        final int slots;
+        final int slotMask;
+        int used;
+        int live;
+        int garbage;
+        int emailTombstones;
+        int idTombstones;
+
+        Tables(int arenaBytes, int slots) {
+            this.arena = ByteBuffer.allocateDirect(arenaBytes);
+            this.emailIndex = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+            this.idIndex = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+            this.slots = slots;
+            this.slotMask = slots - 1;
+        }
+
+        long bytes() {
+            return arena.capacity() + 2L * slots * SLOT_BYTES;
+        }
+    }
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.directory.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.invalidation.transport:none}")
+    private String transportType;
+
+    @Value("${user.directory.load-parallelism:0}")
+    private int loadParallelism;
+
+    @Value("${user.directory.load-range-size:50000}")
+    private long loadRangeSize;
+
+    private final StampedLock lock = new StampedLock();
+    // ids written while the initial scan ran, reloaded once it is in place
+    private final Set<Long> changedDuringLoad = ConcurrentHashMap.newKeySet();
+    private Tables tables = new Tables(MIN_ARENA_BYTES, 16);
+    private volatile boolean loaded;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * True once the initial load has finished; until then callers use the database.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Runs before the application runners, so the directory is complete before
+     * the readiness probe passes.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStarted() {
+        if (enabled) {
+            if (transportType == null || transportType.isBlank() || "none".equalsIgnoreCase(transportType.trim())) {
+                throw new IllegalStateException("user.directory.enabled needs a cache.invalidation.transport");
+            }
+            load();
+        }
+    }
+
+    /**
+     * Scan the users table in id ranges on parallel connections, then build the
+     * indexes over the concatenated records.
+     */
+    public void load() {
+        long started = System.nanoTime();
+        Long[] bounds = jdbcTemplate.queryForObject("SELECT MIN(id), MAX(id) FROM users",
+                (rs, rowNum) -> new Long[]{rs.getObject(1, Long.class), rs.getObject(2, Long.class)});
+
+        List<byte[]> chunks = new ArrayList<>();
+        if (bounds != null && bounds[0] != null) {
+            int threads = loadParallelism > 0 ? loadParallelism : Runtime.getRuntime().availableProcessors();
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "user-directory-load-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<CompletableFuture<byte[]>> ranges = new ArrayList<>();
+                for (long from = bounds[0]; from <= bounds[1]; from += loadRangeSize) {
+                    long start = from;
+                    long end = Math.min(bounds[1], from + loadRangeSize - 1);
+                    ranges.add(CompletableFuture.supplyAsync(() -> scan(start, end), executor));
+                }
+                for (CompletableFuture<byte[]> range : ranges) {
+                    chunks.add(range.join());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        long total = 0;
+        int count = 0;
+        for (byte[] chunk : chunks) {
+            total += chunk.length;
+            ByteBuffer records = ByteBuffer.wrap(chunk);
+            for (int offset = 0; offset < chunk.length; offset += recordLength(records, offset)) {
+                count++;
+            }
+        }
+        // a quarter of headroom for updates before the first rebuild
+        Tables built = new Tables(arenaSize(total, total + total / 4), slotsFor(count));
+        for (byte[] chunk : chunks) {
+            built.arena.put(built.used, chunk);
+            built.used += chunk.length;
+        }
+        for (int offset = 0; offset < built.used; offset += recordLength(built.arena, offset)) {
+            index(built, offset);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            tables = built;
+            loaded = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (Long id : changedDuringLoad) {
+            changedDuringLoad.remove(id);
+            refresh(id);
+        }
+
+        if (meterRegistry != null) {
+            Gauge.builder("user.directory.users", this, directory -> directory.tables.live).register(meterRegistry);
+            Gauge.builder("user.directory.bytes", this, directory -> directory.tables.bytes()).register(meterRegistry);
+        }
+        logger.info("User directory loaded {} users ({} KB off-heap) in {} ms", count,
+                built.bytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Id of the user with the email, or -1. Matching ignores case and surrounding whitespace.
+     */
+    public long findIdByEmail(CharSequence email) {
+        CharSequence key = asciiKey(email);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Tables t = tables;
+                int record = locateEmail(t, key);
+                long id = record < 0 ? -1 : t.arena.getLong(record);
+                if (lock.validate(stamp)) {
+                    return id;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // torn read of a record being written; retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            Tables t = tables;
+            int record = locateEmail(t, key);
+            return record < 0 ? -1 : t.arena.getLong(record);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Role ordinal of the user, or -1 when there is no such user.
+     */
+    public int roleOrdinalOf(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Tables t = tables;
+                int record = locateId(t, id);
+                int role = record < 0 ? -1 : t.arena.get(record + ROLE);
+                if (lock.validate(stamp)) {
+                    return role;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // torn read of a record being written; retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            Tables t = tables;
+            int record = locateId(t, id);
+            return record < 0 ? -1 : t.arena.get(record + ROLE);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isAdmin(long id) {
+        return roleOrdinalOf(id) == Role.ADMIN.ordinal();
+    }
+
+    /**
+     * A detached copy of the user; login statistics are not held by the directory.
+     */
+    public Optional<User> findById(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                User user = readUser(tables, id);
+                if (lock.validate(stamp)) {
+                    return Optional.ofNullable(user);
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // torn read of a record being written; retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return Optional.ofNullable(readUser(tables, id));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Optional<User> findByEmail(String email) {
+        long id = findIdByEmail(email);
+        if (id < 0) {
+            return Optional.empty();
+        }
+        // the email may have moved to another address between the two lookups
+        return findById(id).filter(user -> user.getEmail().equals(normalize(email)));
+    }
+
+    /**
+     * Apply a user just written to the database.
+     */
+    public void put(User user) {
+        if (!enabled || user.getId() == null) {
+            return;
+        }
+        byte[] record = encode(user.getId(), user.getVersion(), user.getName(), user.getEmail(), user.getPassword(),
+                user.getRole());
+        long stamp = lock.writeLock();
+        try {
+            if (!loaded) {
+                changedDuringLoad.add(user.getId());
+                return;
+            }
+            Tables t = tables;
+            int current = locateId(t, user.getId());
+            if (current >= 0 && t.arena.getLong(current + VERSION) > user.getVersion()) {
+                return;
+            }
+            if (t.used + record.length > t.arena.capacity()
+                    || t.live + Math.max(t.emailTombstones, t.idTombstones) + 2 > t.slots * MAX_LOAD) {
+                t = rebuild(t, record.length);
+                tables = t;
+            }
+            unlink(t, user.getId());
+            int duplicate = locateEmail(t, asciiKey(user.getEmail()));
+            if (duplicate >= 0) {
+                // another user's stale record still holds the address
+                unlink(t, t.arena.getLong(duplicate));
+            }
+            int offset = t.used;
+            t.arena.put(offset, record);
+            t.used += record.length;
+            index(t, offset);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(long id) {
+        if (!enabled) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (!loaded) {
+                changedDuringLoad.add(id);
+                return;
+            }
+            unlink(tables, id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Apply a change made through this node once its transaction has committed, so a
+     * rollback never leaves the directory ahead of the table.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.type() == UserChangeType.DELETED) {
+            if (event.userId() != null) {
+                remove(event.userId());
+            }
+        } else if (event.user() != null) {
+            put(event.user());
+        }
+    }
+
+    /**
+     * Reload one user from the database, after a change made on another node.
+     */
+    public void refresh(long id) {
+        if (!enabled) {
+            return;
+        }
+        List<User> rows = jdbcTemplate.query(ROW_SQL, (rs, rowNum) -> {
+            User user = new User(rs.getString("name"), rs.getString("email"), rs.getString("password"),
+                    Role.valueOf(rs.getString("role")));
+            user.setId(rs.getLong("id"));
+            user.setVersion(rs.getLong("version"));
+            return user;
+        }, id);
+        if (rows.isEmpty()) {
+            remove(id);
+        } else {
+            put(rows.get(0));
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return tables.live;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private byte[] scan(long from, long to) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        jdbcTemplate.query(SCAN_SQL, rs -> {
+            try {
+                writeRecord(out, rs.getLong("id"), rs.getLong("version"), rs.getString("name"), rs.getString("email"),
+                        rs.getString("password"), Role.valueOf(rs.getString("role")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, from, to);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Copy the live records into tables sized for them plus the next record.
+     */
+    private static Tables rebuild(Tables old, int extraBytes) {
+        long liveBytes = (long) old.used - old.garbage;
+        Tables rebuilt = new Tables(arenaSize(liveBytes + extraBytes, 2 * (liveBytes + extraBytes)), slotsFor(old.live + 1));
+        for (int slot = 0; slot < old.slots; slot++) {
+            int ref = old.idIndex.getInt(slot * SLOT_BYTES + SLOT_REF);
+            if (ref > 0) {
+                int length = recordLength(old.arena, ref - 1);
+                rebuilt.arena.put(rebuilt.used, old.arena, ref - 1, length);
+                index(rebuilt, rebuilt.used);
+                rebuilt.used += length;
+            }
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Add the record at offset to both indexes. Caller holds the write lock or owns the tables.
+     */
+    private static void index(Tables t, int offset) {
+        ByteBuffer arena = t.arena;
+        int ref = offset + 1;
+        long id = arena.getLong(offset);
+        int slot = (int) mix(id) & t.slotMask;
+        while (t.idIndex.getInt(slot * SLOT_BYTES + SLOT_REF) > 0) {
+            slot = (slot + 1) & t.slotMask;
+        }
+        if (t.idIndex.getInt(slot * SLOT_BYTES + SLOT_REF) == TOMBSTONE) {
+            t.idTombstones--;
+        }
+        t.idIndex.putLong(slot * SLOT_BYTES, id);
+        t.idIndex.putInt(slot * SLOT_BYTES + SLOT_REF, ref);
+
+        long hash = hashBytes(arena, offset + HEADER_BYTES, arena.getShort(offset + EMAIL_LENGTH) & 0xFFFF);
+        slot = (int) hash & t.slotMask;
+        while (t.emailIndex.getInt(slot * SLOT_BYTES + SLOT_REF) > 0) {
+            slot = (slot + 1) & t.slotMask;
+        }
+        if (t.emailIndex.getInt(slot * SLOT_BYTES + SLOT_REF) == TOMBSTONE) {
+            t.emailTombstones--;
+        }
+        t.emailIndex.putLong(slot * SLOT_BYTES, hash);
+        t.emailIndex.putInt(slot * SLOT_BYTES + SLOT_REF, ref);
+        t.live++;
+    }
+
+    /**
+     * Drop the user from both indexes, leaving its record bytes as garbage.
+     */
+    private static void unlink(Tables t, long id) {
+        int idSlot = locateIdSlot(t, id);
+        if (idSlot < 0) {
+            return;
+        }
+        int record = t.idIndex.getInt(idSlot + SLOT_REF) - 1;
+        t.idIndex.putInt(idSlot + SLOT_REF, TOMBSTONE);
+        t.idTombstones++;
+
+        long hash = hashBytes(t.arena, record + HEADER_BYTES, t.arena.getShort(record + EMAIL_LENGTH) & 0xFFFF);
+        int slot = (int) hash & t.slotMask;
+        for (int probes = 0; probes < t.slots; probes++) {
+            int ref = t.emailIndex.getInt(slot * SLOT_BYTES + SLOT_REF);
+            if (ref == EMPTY) {
+                break;
+            }
+            if (ref == record + 1) {
+                t.emailIndex.putInt(slot * SLOT_BYTES + SLOT_REF, TOMBSTONE);
+                t.emailTombstones++;
+                break;
+            }
+            slot = (slot + 1) & t.slotMask;
+        }
+        t.garbage += recordLength(t.arena, record);
+        t.live--;
+    }
+
+    private static int locateId(Tables t, long id) {
+        int slot = locateIdSlot(t, id);
+        return slot < 0 ? -1 : t.idIndex.getInt(slot + SLOT_REF) - 1;
+    }
+
+    /**
+     * Byte offset of the id's live slot, or -1. Probes at most one full round,
+     * so torn reads under an optimistic stamp cannot loop forever.
+     */
+    private static int locateIdSlot(Tables t, long id) {
+        int slot = (int) mix(id) & t.slotMask;
+        for (int probes = 0; probes < t.slots; probes++) {
+            int offset = slot * SLOT_BYTES;
+            int ref = t.idIndex.getInt(offset + SLOT_REF);
+            if (ref == EMPTY) {
+                return -1;
+            }
+            if (ref > 0 && t.idIndex.getLong(offset) == id) {
+                return offset;
+            }
+            slot = (slot + 1) & t.slotMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Record offset for the email, or -1. The key is compared char by char against
+     * the stored bytes, trimmed and ASCII lower-cased on the fly.
+     */
+    private static int locateEmail(Tables t, CharSequence key) {
+        int start = 0;
+        int end = key.length();
+        while (start < end && key.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && key.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (lower(key.charAt(i)) & 0xFF)) * FNV_PRIME;
+        }
+        hash = mix(hash);
+
+        ByteBuffer arena = t.arena;
+        int slot = (int) hash & t.slotMask;
+        for (int probes = 0; probes < t.slots; probes++) {
+            int offset = slot * SLOT_BYTES;
+            int ref = t.emailIndex.getInt(offset + SLOT_REF);
+            if (ref == EMPTY) {
+                return -1;
+            }
+            if (ref > 0 && t.emailIndex.getLong(offset) == hash) {
+                int record = ref - 1;
+                if (emailEquals(arena, record, key, start, end)) {
+                    return record;
+                }
+            }
+            slot = (slot + 1) & t.slotMask;
+        }
+        return -1;
+    }
+
+    private static boolean emailEquals(ByteBuffer arena, int record, CharSequence key, int start, int end) {
+        int length = arena.getShort(record + EMAIL_LENGTH) & 0xFFFF;
+        if (length != end - start) {
+            return false;
+        }
+        int base = record + HEADER_BYTES - start;
+        for (int i = start; i < end; i++) {
+            if (arena.get(base + i) != (byte) lower(key.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static User readUser(Tables t, long id) {
+        int record = locateId(t, id);
+        if (record < 0) {
+            return null;
+        }
+        ByteBuffer arena = t.arena;
+        int emailLength = arena.getShort(record + EMAIL_LENGTH) & 0xFFFF;
+        int nameLength = arena.getShort(record + NAME_LENGTH) & 0xFFFF;
+        int passwordLength = arena.getShort(record + PASSWORD_LENGTH) & 0xFFFF;
+        int offset = record + HEADER_BYTES;
+        String email = string(arena, offset, emailLength);
+        String name = string(arena, offset + emailLength, nameLength);
+        String password = string(arena, offset + emailLength + nameLength, passwordLength);
+
+        User user = new User(name, email, password, ROLES[arena.get(record + ROLE)]);
+        user.setId(id);
+        user.setVersion(arena.getLong(record + VERSION));
+        return user;
+    }
+
+    private static String string(ByteBuffer arena, int offset, int length) {
+        byte[] bytes = new byte[length];
+        arena.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int recordLength(ByteBuffer arena, int offset) {
+        return HEADER_BYTES + (arena.getShort(offset + EMAIL_LENGTH) & 0xFFFF)
+                + (arena.getShort(offset + NAME_LENGTH) & 0xFFFF)
+                + (arena.getShort(offset + PASSWORD_LENGTH) & 0xFFFF);
+    }
+
+    private static byte[] encode(long id, long version, String name, String email, String password, Role role) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            writeRecord(new DataOutputStream(bytes), id, version, name, email, password, role);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream out, long id, long version, String name, String email,
+                                    String password, Role role) throws IOException {
+        byte[] emailBytes = normalize(email).getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = (name != null ? name : "").getBytes(StandardCharsets.UTF_8);
+        byte[] passwordBytes = (password != null ? password : "").getBytes(StandardCharsets.UTF_8);
+        if (emailBytes.length > 0xFFFF || nameBytes.length > 0xFFFF || passwordBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("User " + id + " has a field too long for the directory");
+        }
+        out.writeLong(id);
+        out.writeLong(version);
+        out.writeByte(role.ordinal());
+        out.writeShort(emailBytes.length);
+        out.writeShort(nameBytes.length);
+        out.writeShort(passwordBytes.length);
+        out.write(emailBytes);
+        out.write(nameBytes);
+        out.write(passwordBytes);
+    }
+
+    /**
+     * The email itself when it is ASCII; otherwise its normalized UTF-8 bytes as
+     * one char per byte, so both kinds compare against the stored bytes the same way.
+     */
+    private static CharSequence asciiKey(CharSequence email) {
+        for (int i = 0; i < email.length(); i++) {
+            if (email.charAt(i) >= 0x80) {
+                return new String(normalize(email.toString()).getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            }
+        }
+        return email;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static long hashBytes(ByteBuffer arena, int offset, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (arena.get(offset + i) & 0xFF)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private static int slotsFor(int users) {
+        return Integer.highestOneBit(Math.max(16, users * 4 - 1) << 1);
+    }
+
+    private static int arenaSize(long needed, long wanted) {
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Users table is too large for the directory: " + needed + " bytes");
+        }
+        return (int) Math.max(MIN_ARENA_BYTES, Math.min(Integer.MAX_VALUE - 8, Math.max(needed, wanted)));
+    }
+}
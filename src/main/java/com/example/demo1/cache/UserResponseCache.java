@@ -0,0 +1,250 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.User;
+import com.example.demo1.shard.ShardedUserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Strong ETags and pre-serialized JSON for the admin user endpoints.
+ *
+ * <p>A user's ETag is derived from its row version and login count, the only
+ * columns that change with its representation; both are read with a primary key
+ * lookup, so a matching If-None-Match is answered without loading or serializing
+ * the user. The list ETag is a SHA-256 over (id, version, login count) of every
+ * row in id order, read from the primary key index; it costs a scan of three
+ * columns but no user loading or serialization, and two different lists cannot
+ * share a tag by accident. With sharding on, both are read from the shards instead.
+ *
+ * <p>Serialized users are kept in a bounded LRU keyed by id and checked against
+ * the ETag; the list keeps only its latest serialization.
+ */
+@Component
+public class UserResponseCache {
+
+    public record Tagged(String etag, byte[] json) {}
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private ShardedUserRepository shardedUsers;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.response.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.response.max-entries:1024}")
+    private int maxEntries;
+
+    private final LinkedHashMap<Long, Tagged> users = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tagged> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private volatile Tagged list;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    void registerMetrics() {
+        if (meterRegistry != null) {
+            FunctionCounter.builder("cache.response.hits", hits, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("cache.response.misses", misses, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Current ETag of the user, or null when there is no such user.
+     */
+    public String userETag(long id) {
+        if (shardedUsers != null) {
+            return shardedUsers.findById(id).map(this::etagOf).orElse(null);
+        }
+        List<String> tags = jdbcTemplate.query("SELECT version, login_count FROM users WHERE id = ?",
+                (rs, rowNum) -> userTag(id, rs.getLong(1), rs.getLong(2)), id);
+        return tags.isEmpty() ? null : tags.get(0);
+    }
+
+    public String etagOf(User user) {
+        return userTag(user.getId(), user.getVersion(), user.getLoginCount());
+    }
+
+    /**
+     * The row version in an If-Match header sent for the user, or null when none of its
+     * entity tags is a strong tag of this user. Login counts are ignored: logins do not
+     * touch the fields an update based on the tag would overwrite.
+     */
+    public static Long versionFromETag(long id, String ifMatch) {
+        String prefix = "\"u" + id + "-";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (!tag.startsWith(prefix) || !tag.endsWith("\"")) {
+                continue;
+            }
+            String[] parts = tag.substring(prefix.length(), tag.length() - 1).split("-");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                return Long.parseLong(parts[0]);
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return null;
+    }
+
+    public String listETag() {
+        MessageDigest digest = sha256();
+        ByteBuffer row = ByteBuffer.allocate(3 * Long.BYTES);
+        if (shardedUsers != null) {
+            List<long[]> rows = shardedUsers.findAllFingerprints();
+            for (long[] fingerprint : rows) {
+                digestRow(digest, row, fingerprint[0], fingerprint[1], fingerprint[2]);
+            }
+            return listTag(rows.size(), digest);
+        }
+        long[] count = {0};
+        jdbcTemplate.query("SELECT id, version, login_count FROM users ORDER BY id", rs -> {
+            digestRow(digest, row, rs.getLong(1), rs.getLong(2), rs.getLong(3));
+            count[0]++;
+        });
+        return listTag(count[0], digest);
+    }
+
+    /**
+     * The user as JSON with the ETag of exactly that state; empty when there is no such user.
+     *
+     * @param etag the ETag just read for the user, used to check the cached copy
+     */
+    public Optional<Tagged> getUser(long id, String etag, Supplier<Optional<User>> loader) {
+        if (enabled && etag != null) {
+            Tagged cached;
+            synchronized (users) {
+                cached = users.get(id);
+            }
+            if (cached != null && cached.etag().equals(etag)) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+        }
+        misses.increment();
+        Optional<User> user = loader.get();
+        if (user.isEmpty()) {
+            evict(id);
+            return Optional.empty();
+        }
+        // tag what was loaded; the row may have moved on since the ETag was read
+        User loaded = user.get();
+        Tagged tagged = new Tagged(etagOf(loaded), serialize(loaded));
+        if (enabled) {
+            synchronized (users) {
+                users.put(id, tagged);
+            }
+        }
+        return Optional.of(tagged);
+    }
+
+    public Tagged getList(String etag, Supplier<List<User>> loader) {
+        Tagged cached = list;
+        if (enabled && cached != null && cached.etag().equals(etag)) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        List<User> loaded = loader.get();
+        List<User> byId = new ArrayList<>(loaded);
+        byId.sort(Comparator.comparing(User::getId));
+        MessageDigest digest = sha256();
+        ByteBuffer row = ByteBuffer.allocate(3 * Long.BYTES);
+        for (User user : byId) {
+            digestRow(digest, row, user.getId(), user.getVersion(), user.getLoginCount());
+        }
+        Tagged tagged = new Tagged(listTag(loaded.size(), digest), serialize(loaded));
+        if (enabled) {
+            list = tagged;
+        }
+        return tagged;
+    }
+
+    public void evict(long id) {
+        synchronized (users) {
+            users.remove(id);
+        }
+    }
+
+    /**
+     * Deleted users would otherwise hold their slot until the LRU pushes them out.
+     * Runs after commit, so a rolled back delete leaves the cached copy alone.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.type() == UserChangeType.DELETED && event.userId() != null) {
+            evict(event.userId());
+        }
+    }
+
+    public int size() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize users", e);
+        }
+    }
+
+    private static String userTag(long id, long version, long loginCount) {
+        return "\"u" + id + "-" + version + "-" + loginCount + "\"";
+    }
+
+    private static void digestRow(MessageDigest digest, ByteBuffer row, long id, long version, long loginCount) {
+        row.clear();
+        row.putLong(id).putLong(version).putLong(loginCount);
+        digest.update(row.array());
+    }
+
+    private static String listTag(long count, MessageDigest digest) {
+        return "\"l" + count + "-" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
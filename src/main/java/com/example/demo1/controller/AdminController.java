@@ -1,13 +1,25 @@
 package com.example.demo1.controller;
 
 
+import com.example.demo1.cache.UserResponseCache;
 import com.example.demo1.model.User;
+import com.example.demo1.model.UserUpdateRequest;
+import com.example.demo1.model.ValidationResult;
+import com.example.demo1.service.LoginActivityTracker;
+import com.example.demo1.service.UserChangeStream;
 import com.example.demo1.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -18,17 +30,59 @@ public class AdminController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private LoginActivityTracker loginActivityTracker;
+
+    @Autowired
+    private UserChangeStream userChangeStream;
+
+    @Autowired
+    private UserResponseCache userResponseCache;
+
+    /**
+     * Answers a matching If-None-Match with 304 before any user is loaded or serialized
+     */
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<byte[]> getAllUsers(WebRequest webRequest) {
+        String etag = userResponseCache.listETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        UserResponseCache.Tagged users = userResponseCache.getList(etag, userService::getAllUsers);
+        return ResponseEntity.ok()
+                .eTag(users.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(users.json());
+    }
+
+    /**
+     * Server-Sent Events of user changes, resumed from the Last-Event-ID header on reconnect;
+     * a "reset" event means the client missed changes and should reload /users
+     */
+    @GetMapping(path = "/users/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamUsers(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = userChangeStream.subscribe(lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(503).header("Retry-After", "5").build();
+        }
+        return ResponseEntity.ok(emitter);
     }
 
     @GetMapping("/users/{id}")
-    public ResponseEntity<?> getUserById(@PathVariable Long id) {
-        Optional<User> user = userService.getUserById(id);
+    public ResponseEntity<?> getUserById(@PathVariable Long id, WebRequest webRequest) {
+        String etag = id != null && id > 0 ? userResponseCache.userETag(id) : null;
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        Optional<UserResponseCache.Tagged> user = etag != null
+                ? userResponseCache.getUser(id, etag, () -> userService.getUserById(id))
+                : Optional.empty();
         if (user.isPresent()) {
-            return ResponseEntity.ok(user.get());
+            return ResponseEntity.ok()
+                    .eTag(user.get().etag())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(user.get().json());
         } else {
             return ResponseEntity.status(404).body(
                     java.util.Map.of("success", false, "message", "User not found")
@@ -36,6 +90,92 @@ public class AdminController {
         }
     }
 
+    /**
+     * Partial update. With If-Match (the ETag of GET /users/{id}) it applies only while the user is
+     * still at that version and answers 412 otherwise; without it, concurrent edits are retried.
+     */
+    @PutMapping("/users/{id}")
+    public ResponseEntity<?> updateUser(@PathVariable Long id, @RequestBody UserUpdateRequest request,
+                                        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = id != null ? UserResponseCache.versionFromETag(id, ifMatch) : null;
+            if (expectedVersion == null) {
+                return ResponseEntity.status(412).body(
+                        java.util.Map.of("success", false, "message", "If-Match does not name a version of this user")
+                );
+            }
+        }
+
+        User updates = request.toUpdates();
+        List<ValidationResult.FieldError> errors = userService.validateUpdate(id, updates);
+        if (!errors.isEmpty()) {
+            return ResponseEntity.badRequest().body(ValidationResult.errorBody(errors));
+        }
+
+        try {
+            Optional<ValidationResult<User>> updated = userService.update(id, updates, expectedVersion);
+            if (updated.isEmpty()) {
+                return ResponseEntity.status(404).body(
+                        java.util.Map.of("success", false, "message", "User not found")
+                );
+            }
+            if (!updated.get().isValid()) {
+                return ResponseEntity.badRequest().body(updated.get().toErrorBody());
+            }
+            User user = updated.get().getValue();
+            return ResponseEntity.ok()
+                    .eTag(userResponseCache.etagOf(user))
+                    .body(user);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(412).body(
+                    java.util.Map.of("success", false, "message", "User was changed in the meantime; reload and retry")
+            );
+        }
+    }
+
+    /**
+     * Login statistics including logins that have not been flushed to the database yet
+     */
+    @GetMapping("/users/{id}/activity")
+    public ResponseEntity<?> getUserActivity(@PathVariable Long id) {
+        Optional<User> user = userService.getUserById(id);
+        if (user.isEmpty()) {
+            return ResponseEntity.status(404).body(
+                    java.util.Map.of("success", false, "message", "User not found")
+            );
+        }
+
+        Instant lastLoginAt = user.get().getLastLoginAt();
+        long loginCount = user.get().getLoginCount();
+        long[] pending = loginActivityTracker.pendingFor(id);
+        if (pending != null) {
+            loginCount += pending[0];
+            Instant pendingLogin = Instant.ofEpochMilli(pending[1]);
+            if (lastLoginAt == null || pendingLogin.isAfter(lastLoginAt)) {
+                lastLoginAt = pendingLogin;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", id);
+        response.put("lastLoginAt", lastLoginAt);
+        response.put("loginCount", loginCount);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/users/{id}/logout")
+    public ResponseEntity<?> forceLogout(@PathVariable Long id) {
+        if (userService.forceLogout(id)) {
+            return ResponseEntity.ok(
+                    java.util.Map.of("success", true, "message", "All sessions of the user were revoked")
+            );
+        }
+        return ResponseEntity.status(404).body(
+                java.util.Map.of("success", false, "message", "User not found")
+        );
+    }
+
     @DeleteMapping("/users/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable Long id) {
         try {
@@ -2,17 +2,35 @@ package com.example.demo1.controller;
 
 
 
+import com.example.demo1.audit.AuditEventType;
+import com.example.demo1.audit.AuditLog;
 import com.example.demo1.model.*;
+import com.example.demo1.security.LoginThrottle;
+import com.example.demo1.service.IdempotencyService;
+import com.example.demo1.service.LoginActivityTracker;
+import com.example.demo1.service.RefreshTokenService;
+import com.example.demo1.service.SessionService;
+import com.example.demo1.service.TokenIntrospectionService;
+import com.example.demo1.service.TokenRevocationService;
 import com.example.demo1.service.UserService;
+import com.example.demo1.service.UserValidator;
 import com.example.demo1.service.JwtService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -25,17 +43,61 @@ public class AuthController {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private LoginActivityTracker loginActivityTracker;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${introspect.max-batch-size:500}")
+    private int maxIntrospectBatchSize;
+
     @Value("${admin.email}")
     private String adminEmail;
 
     @Value("${admin.password}")
     private String adminPassword;
 
+    /**
+     * A retry with the same Idempotency-Key and body gets the first response instead of a second registration;
+     * the replay carries no tokens, the client logs in for those
+     */
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody User user) {
+    public ResponseEntity<?> registerUser(@RequestBody User user,
+                                          @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("register", idempotencyKey, () -> register(user),
+                user.getName(), user.getEmail(), user.getPassword());
+    }
+
+    private ResponseEntity<?> register(User user) {
         try {
-            User registeredUser = userService.registerUser(user);
-            String token = jwtService.generateToken(registeredUser.getEmail(), registeredUser.getRole().name());
+            ValidationResult<User> registration = userService.register(user);
+            if (!registration.isValid()) {
+                return ResponseEntity.badRequest().body(registration.toErrorBody());
+            }
+            User registeredUser = registration.getValue();
+            String token = jwtService.generateToken(registeredUser);
 
             // Create user response without password
             User userResponse = new User();
@@ -46,6 +108,7 @@ public class AuthController {
 
             AuthResponse response = new AuthResponse(true, token, registeredUser.getRole().name(),
                     userResponse, "User registered successfully");
+            response.setRefreshToken(refreshTokenService.issue(registeredUser));
             return ResponseEntity.ok(response);
 
         } catch (RuntimeException e) {
@@ -56,36 +119,70 @@ public class AuthController {
         }
     }
 
+    /**
+     * A retry with the same Idempotency-Key and credentials is answered from the first outcome without
+     * checking the password again: a failure is repeated, a success gets freshly minted tokens. The user's
+     * row version is part of the fingerprint, so after a password change the next attempt is checked again.
+     */
     @PostMapping("/login/user")
-    public ResponseEntity<?> loginUser(@Valid @RequestBody LoginRequest loginRequest) {
-        try {
-            var user = userService.findByEmail(loginRequest.getEmail())
-                    .orElse(null);
+    public ResponseEntity<?> loginUser(@RequestBody LoginRequest loginRequest, HttpServletRequest request,
+                                       @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        List<ValidationResult.FieldError> errors =
+                UserValidator.validateLogin(loginRequest.getEmail(), loginRequest.getPassword());
+        if (!errors.isEmpty()) {
+            return ResponseEntity.badRequest().body(ValidationResult.errorBody(errors));
+        }
+        if (idempotencyKey == null) {
+            return login(loginRequest, request);
+        }
+        String version = userService.findByEmail(loginRequest.getEmail())
+                .map(user -> Long.toString(user.getVersion()))
+                .orElse(null);
+        return idempotencyService.execute("login", idempotencyKey, () -> login(loginRequest, request),
+                this::repeatLogin, loginRequest.getEmail(), loginRequest.getPassword(), version);
+    }
 
+    /**
+     * A verified login retried under its Idempotency-Key: fresh tokens for the user, no password check
+     */
+    private ResponseEntity<?> repeatLogin(byte[] firstResponse) {
+        try {
+            long userId = objectMapper.readTree(firstResponse).path("user").path("id").asLong();
+            User user = userService.getUserById(userId).orElse(null);
             if (user == null) {
                 return ResponseEntity.badRequest().body(
                         Map.of("success", false, "message", "User doesn't exist")
                 );
             }
+            auditLog.record(AuditEventType.LOGIN_SUCCEEDED, user.getEmail(), "idempotent retry");
+            return loggedIn(user);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        }
+    }
 
-            if (!userService.validatePassword(loginRequest.getPassword(), user.getPassword())) {
+    private ResponseEntity<?> login(LoginRequest loginRequest, HttpServletRequest request) {
+        long retryAfter = loginThrottle.check(loginRequest.getEmail(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return tooManyAttempts(retryAfter);
+        }
+
+        try {
+            ValidationResult<User> verified = userService.verifyLogin(loginRequest.getEmail(), loginRequest.getPassword());
+            if (!verified.isValid()) {
+                boolean unknownUser = "email".equals(verified.getErrors().get(0).field());
+                auditLog.record(AuditEventType.LOGIN_FAILED, loginRequest.getEmail(),
+                        unknownUser ? "user not found" : "invalid credentials");
                 return ResponseEntity.badRequest().body(
-                        Map.of("success", false, "message", "Invalid credentials")
+                        Map.of("success", false, "message", verified.getMessage())
                 );
             }
 
-            String token = jwtService.generateToken(user.getEmail(), user.getRole().name());
-
-            // Create user response without password
-            User userResponse = new User();
-            userResponse.setId(user.getId());
-            userResponse.setName(user.getName());
-            userResponse.setEmail(user.getEmail());
-            userResponse.setRole(user.getRole());
-
-            AuthResponse response = new AuthResponse(true, token, user.getRole().name(),
-                    userResponse, "User login successful");
-            return ResponseEntity.ok(response);
+            User user = verified.getValue();
+            auditLog.record(AuditEventType.LOGIN_SUCCEEDED, user.getEmail(), null);
+            return loggedIn(user);
 
         } catch (Exception e) {
             return ResponseEntity.status(500).body(
@@ -94,15 +191,39 @@ public class AuthController {
         }
     }
 
+    private ResponseEntity<AuthResponse> loggedIn(User user) {
+        String token = jwtService.generateToken(user);
+        loginActivityTracker.recordLogin(user.getId());
+
+        // Create user response without password
+        User userResponse = new User();
+        userResponse.setId(user.getId());
+        userResponse.setName(user.getName());
+        userResponse.setEmail(user.getEmail());
+        userResponse.setRole(user.getRole());
+
+        AuthResponse response = new AuthResponse(true, token, user.getRole().name(),
+                userResponse, "User login successful");
+        response.setRefreshToken(refreshTokenService.issue(user));
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/login/admin")
-    public ResponseEntity<?> loginAdmin(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> loginAdmin(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        long retryAfter = loginThrottle.check(loginRequest.getEmail(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return tooManyAttempts(retryAfter);
+        }
+
         try {
             if (adminEmail.equals(loginRequest.getEmail()) && adminPassword.equals(loginRequest.getPassword())) {
                 String token = jwtService.generateToken(loginRequest.getEmail(), "ADMIN");
+                auditLog.record(AuditEventType.ADMIN_LOGIN_SUCCEEDED, loginRequest.getEmail(), null);
 
                 AuthResponse response = new AuthResponse(true, token, "ADMIN", null, "Admin login successful");
                 return ResponseEntity.ok(response);
             } else {
+                auditLog.record(AuditEventType.ADMIN_LOGIN_FAILED, loginRequest.getEmail(), null);
                 return ResponseEntity.badRequest().body(
                         Map.of("success", false, "message", "Invalid admin credentials")
                 );
@@ -113,4 +234,88 @@ public class AuthController {
             );
         }
     }
+
+    /**
+     * Renew the access token with a refresh token; never touches the password encoder
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshTokenRequest refreshRequest) {
+        Optional<RefreshTokenService.Rotation> rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+        if (rotation.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                    Map.of("success", false, "message", "Invalid refresh token")
+            );
+        }
+
+        User user = rotation.get().user();
+        String token = jwtService.generateToken(user);
+
+        // Create user response without password
+        User userResponse = new User();
+        userResponse.setId(user.getId());
+        userResponse.setName(user.getName());
+        userResponse.setEmail(user.getEmail());
+        userResponse.setRole(user.getRole());
+
+        AuthResponse response = new AuthResponse(true, token, user.getRole().name(),
+                userResponse, "Token refreshed");
+        response.setRefreshToken(rotation.get().refreshToken());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authHeader,
+                                    @RequestBody(required = false) RefreshTokenRequest refreshRequest) {
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null) {
+            refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        }
+
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", "Missing bearer token")
+            );
+        }
+
+        String token = authHeader.substring(7);
+        if (SessionService.isOpaque(token)) {
+            // sessions end by removal, they never need a revocation entry
+            sessionService.remove(token);
+            return ResponseEntity.ok(Map.of("success", true, "message", "Logged out successfully"));
+        }
+
+        try {
+            Claims claims = jwtService.parseClaims(token);
+            if (claims.getId() == null) {
+                return ResponseEntity.badRequest().body(
+                        Map.of("success", false, "message", "Token cannot be revoked")
+                );
+            }
+            tokenRevocationService.revokeToken(claims.getId(), claims.getExpiration());
+            return ResponseEntity.ok(Map.of("success", true, "message", "Logged out successfully"));
+        } catch (JwtException e) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", "Invalid token")
+            );
+        }
+    }
+
+    /**
+     * Batch token check for gateways, which call it with an admin token: one result per token, in request order
+     */
+    @PostMapping("/introspect")
+    public ResponseEntity<?> introspect(@Valid @RequestBody IntrospectRequest introspectRequest) {
+        List<String> tokens = introspectRequest.getTokens();
+        if (tokens.size() > maxIntrospectBatchSize) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", "At most " + maxIntrospectBatchSize + " tokens per request")
+            );
+        }
+        return ResponseEntity.ok(tokenIntrospectionService.introspect(tokens));
+    }
+
+    private ResponseEntity<?> tooManyAttempts(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("success", false, "message", "Too many login attempts, please retry later"));
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ package com.example.demo1.model;
 public class AuthResponse {
     private boolean success;
     private String token;
+    private String refreshToken;
     private String role;
     private User user;
     private String message;
@@ -26,6 +27,9 @@ public class AuthResponse {
     public String getToken() { return token; }
     public void setToken(String token) { this.token = token; }
 
+    public String getRefreshToken() { return refreshToken; }
+    public void setRefreshToken(String refreshToken) { this.refreshToken = refreshToken; }
+
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
 
@@ -0,0 +1,42 @@
+package com.example.demo1.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Stored response of an idempotent request, shared by the nodes when
+ * {@code idempotency.store=jdbc}. The id is an HMAC of the endpoint, key and
+ * request fingerprint; status 0 marks a claim by the node still running the
+ * request. Bodies are stored with credentials removed.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false)
+    private int status;
+
+    @Lob
+    private byte[] body;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    // Constructors
+    public IdempotencyKey() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public int getStatus() { return status; }
+    public void setStatus(int status) { this.status = status; }
+
+    public byte[] getBody() { return body; }
+    public void setBody(byte[] body) { this.body = body; }
+
+    public long getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(long expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,22 @@
+package com.example.demo1.model;
+
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class IntrospectRequest {
+    @NotEmpty(message = "At least one token is required")
+    private List<String> tokens;
+
+    // Constructors
+    public IntrospectRequest() {}
+
+    public IntrospectRequest(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    // Getters and Setters
+    public List<String> getTokens() { return tokens; }
+    public void setTokens(List<String> tokens) { this.tokens = tokens; }
+}
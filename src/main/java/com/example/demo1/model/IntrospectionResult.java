@@ -0,0 +1,56 @@
+package com.example.demo1.model;
+
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome for one token of a batch introspection. Inactive results only carry
+ * the reason, so a large batch of rejected tokens stays small on the wire.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionResult {
+    public static final String EXPIRED = "expired";
+    public static final String INVALID = "invalid";
+    public static final String REVOKED = "revoked";
+    public static final String UNKNOWN_USER = "unknown_user";
+
+    private boolean active;
+    private String sub;
+    private String role;
+    private Long exp;
+    private String reason;
+
+    // Constructors
+    public IntrospectionResult() {}
+
+    public static IntrospectionResult active(String sub, String role, long exp) {
+        IntrospectionResult result = new IntrospectionResult();
+        result.active = true;
+        result.sub = sub;
+        result.role = role;
+        result.exp = exp;
+        return result;
+    }
+
+    public static IntrospectionResult inactive(String reason) {
+        IntrospectionResult result = new IntrospectionResult();
+        result.reason = reason;
+        return result;
+    }
+
+    // Getters and Setters
+    public boolean isActive() { return active; }
+    public void setActive(boolean active) { this.active = active; }
+
+    public String getSub() { return sub; }
+    public void setSub(String sub) { this.sub = sub; }
+
+    public String getRole() { return role; }
+    public void setRole(String role) { this.role = role; }
+
+    public Long getExp() { return exp; }
+    public void setExp(Long exp) { this.exp = exp; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+}
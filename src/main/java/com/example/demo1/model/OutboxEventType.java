@@ -0,0 +1,7 @@
+package com.example.demo1.model;
+
+public enum OutboxEventType {
+    USER_REGISTERED,
+    USER_ROLE_CHANGED,
+    USER_DELETED
+}
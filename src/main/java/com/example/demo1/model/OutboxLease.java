@@ -0,0 +1,37 @@
+package com.example.demo1.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Lease on draining the outbox, so only one node delivers at a time and the
+ * events of one user keep their order across nodes. The holder renews it before
+ * every batch; a node that dies loses it once {@code expires_at} has passed.
+ */
+@Entity
+@Table(name = "outbox_lease")
+public class OutboxLease {
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    @Column(nullable = false, length = 64)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // Constructors
+    public OutboxLease() {}
+
+    // Getters and Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,50 @@
+package com.example.demo1.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A revoked access token ("jti:" key) or a per-user cut-off ("sub:" key) that
+ * invalidates every token of that subject issued at or before notBefore.
+ * Rows are only needed until the tokens they cover would have expired anyway.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"))
+public class RevokedToken {
+    @Id
+    @Column(name = "token_key", length = 320)
+    private String tokenKey;
+
+    @Column(name = "not_before")
+    private Instant notBefore;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    // Constructors
+    public RevokedToken() {}
+
+    public RevokedToken(String tokenKey, Instant notBefore, Instant expiresAt, Instant revokedAt) {
+        this.tokenKey = tokenKey;
+        this.notBefore = notBefore;
+        this.expiresAt = expiresAt;
+        this.revokedAt = revokedAt;
+    }
+
+    // Getters and Setters
+    public String getTokenKey() { return tokenKey; }
+    public void setTokenKey(String tokenKey) { this.tokenKey = tokenKey; }
+
+    public Instant getNotBefore() { return notBefore; }
+    public void setNotBefore(Instant notBefore) { this.notBefore = notBefore; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+
+    public Instant getRevokedAt() { return revokedAt; }
+    public void setRevokedAt(Instant revokedAt) { this.revokedAt = revokedAt; }
+}
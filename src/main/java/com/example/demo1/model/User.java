@@ -5,8 +5,10 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
+import java.time.Instant;
+
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_last_login_at", columnList = "last_login_at"))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -31,6 +33,19 @@ public class User {
     @Column(nullable = false)
     private Role role = Role.USER;
 
+    // Written only by LoginActivityTracker's batched updates, never by entity saves
+    @Column(name = "last_login_at", updatable = false)
+    private Instant lastLoginAt;
+
+    @Column(name = "login_count", nullable = false, updatable = false)
+    private long loginCount;
+
+    // Optimistic lock: every entity update checks and bumps it, so concurrent edits cannot overwrite
+    // each other; cached copies are checked against it too
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     // Constructors
     public User() {}
 
@@ -41,6 +56,18 @@ public class User {
         this.role = role;
     }
 
+    /**
+     * A detached copy with every field, for handing one loaded row to several callers
+     */
+    public static User copyOf(User source) {
+        User copy = new User(source.name, source.email, source.password, source.role);
+        copy.id = source.id;
+        copy.lastLoginAt = source.lastLoginAt;
+        copy.loginCount = source.loginCount;
+        copy.version = source.version;
+        return copy;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -56,4 +83,13 @@ public class User {
 
     public Role getRole() { return role; }
     public void setRole(Role role) { this.role = role; }
+
+    public Instant getLastLoginAt() { return lastLoginAt; }
+    public void setLastLoginAt(Instant lastLoginAt) { this.lastLoginAt = lastLoginAt; }
+
+    public long getLoginCount() { return loginCount; }
+    public void setLoginCount(long loginCount) { this.loginCount = loginCount; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
 }
@@ -0,0 +1,44 @@
+package com.example.demo1.model;
+
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Partial update of a user; fields left null are not changed.
+ */
+public class UserUpdateRequest {
+    @Size(min = 2, max = 50, message = "Name must be between 2 and 50 characters")
+    private String name;
+
+    @Email(message = "Please enter a valid email")
+    private String email;
+
+    @Size(min = 8, message = "Password must be at least 8 characters")
+    private String password;
+
+    private Role role;
+
+    // Constructors
+    public UserUpdateRequest() {}
+
+    // Getters and Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+
+    public Role getRole() { return role; }
+    public void setRole(Role role) { this.role = role; }
+
+    /**
+     * As the update shape UserService expects; unlike a new User, the role stays null when not given.
+     */
+    public User toUpdates() {
+        return new User(name, email, password, role);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo1.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of validating a request: the value, or every field error found in one pass.
+ * Rejections are returned rather than thrown, so bad input costs no stack trace.
+ */
+public final class ValidationResult<T> {
+
+    public record FieldError(String field, String message) {}
+
+    private final T value;
+    private final List<FieldError> errors;
+
+    private ValidationResult(T value, List<FieldError> errors) {
+        this.value = value;
+        this.errors = errors;
+    }
+
+    public static <T> ValidationResult<T> ok(T value) {
+        return new ValidationResult<>(value, List.of());
+    }
+
+    public static <T> ValidationResult<T> invalid(List<FieldError> errors) {
+        if (errors.isEmpty()) {
+            throw new IllegalArgumentException("A failed validation needs at least one error");
+        }
+        return new ValidationResult<>(null, List.copyOf(errors));
+    }
+
+    public static <T> ValidationResult<T> invalid(String field, String message) {
+        return new ValidationResult<>(null, List.of(new FieldError(field, message)));
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public List<FieldError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * The first error's message, or null when valid
+     */
+    public String getMessage() {
+        return errors.isEmpty() ? null : errors.get(0).message();
+    }
+
+    /**
+     * For callers that still expect an exception
+     */
+    public T orElseThrow() {
+        if (!isValid()) {
+            throw new IllegalArgumentException(getMessage());
+        }
+        return value;
+    }
+
+    /**
+     * Response body in the controllers' error shape, with the first message per field under "errors"
+     */
+    public Map<String, Object> toErrorBody() {
+        return errorBody(errors);
+    }
+
+    public static Map<String, Object> errorBody(List<FieldError> errors) {
+        Map<String, String> byField = new LinkedHashMap<>();
+        for (FieldError error : errors) {
+            if (error.field() != null) {
+                byField.putIfAbsent(error.field(), error.message());
+            }
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", false);
+        body.put("message", errors.isEmpty() ? null : errors.get(0).message());
+        body.put("errors", byField);
+        return body;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo1.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class OutboxConfig {
+
+    /**
+     * file (JSON lines at outbox.file.path) or memory; replaced by any other OutboxSink bean
+     */
+    @Bean
+    @ConditionalOnMissingBean(OutboxSink.class)
+    public OutboxSink outboxSink(@Value("${outbox.sink:file}") String type,
+                                 @Value("${outbox.file.path:data/outbox.jsonl}") String path) {
+        return switch (type.trim().toLowerCase()) {
+            case "file" -> new FileOutboxSink(Path.of(path));
+            case "memory" -> new InMemoryOutboxSink();
+            default -> throw new IllegalStateException("Unknown outbox.sink: " + type);
+        };
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.demo1.outbox;
+
+import com.example.demo1.model.OutboxEvent;
+import com.example.demo1.model.OutboxEventType;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers outbox events to the {@link OutboxSink} and purges delivered rows.
+ *
+ * <p>Each drain reads undelivered events in id order, {@code batch-size} at a
+ * time, and splits the batch into {@code parallelism} lanes by user id. Lanes are
+ * delivered concurrently, each one in id order, so the events of one user keep
+ * their order. A row is marked delivered only after the sink accepted its lane;
+ * a failed lane is read again on the next drain (at-least-once delivery).
+ *
+ * <p>With several nodes only the holder of the {@code outbox_lease} row drains, so
+ * two nodes never deliver the same batch or split one user's events between them.
+ * The lease is renewed before every batch and taken over once it has expired;
+ * a batch that takes longer than {@code lease-ms} may be delivered twice.
+ */
+@Component
+public class OutboxDrainer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDrainer.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, user_id, event_type, payload, created_at FROM user_outbox "
+                    + "WHERE delivered_at IS NULL ORDER BY id LIMIT ?";
+    private static final int MAX_IN_LIST = 500;
+    private static final String LEASE = "drain";
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OutboxSink sink;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${outbox.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${outbox.parallelism:4}")
+    private int parallelism;
+
+    @Value("${outbox.lease-ms:30000}")
+    private long leaseMs = 30000;
+
+    @Value("${outbox.retention-ms:86400000}")
+    private long retentionMs;
+
+    /**
+     * Width of the id range removed by one DELETE
+     */
+    @Value("${outbox.cleanup-chunk:10000}")
+    private long cleanupChunk;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+    private final String owner = UUID.randomUUID().toString();
+    private ExecutorService lanes;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("outbox.enabled=true needs a DataSource");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        lanes = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-lane-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (meterRegistry != null) {
+            FunctionCounter.builder("outbox.delivered", delivered, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("outbox.failures", failures, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("outbox.purged", purged, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (lanes != null) {
+            lanes.shutdown();
+            lanes.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void scheduledDrain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            drain();
+        } catch (DataAccessException e) {
+            logger.warn("Outbox drain failed, will retry", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:60000}")
+    public void scheduledPurge() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            purgeDelivered();
+        } catch (DataAccessException e) {
+            logger.warn("Outbox cleanup failed", e);
+        }
+    }
+
+    /**
+     * Deliver batches until the backlog is empty or a lane fails; nothing while another node holds the lease.
+     *
+     * @return number of events delivered
+     */
+    public int drain() {
+        int total = 0;
+        while (acquireLease()) {
+            List<OutboxEvent> batch = jdbcTemplate.query(SELECT_SQL, OutboxDrainer::mapRow, batchSize);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            int count = deliver(batch);
+            total += count;
+            if (batch.size() < batchSize || count < batch.size()) {
+                return total;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Take or renew the drain lease; false while another node holds an unexpired one.
+     */
+    private boolean acquireLease() {
+        Instant now = Instant.now();
+        Timestamp expiresAt = Timestamp.from(now.plusMillis(leaseMs));
+        int renewed = jdbcTemplate.update("UPDATE outbox_lease SET owner = ?, expires_at = ? "
+                + "WHERE name = ? AND (owner = ? OR expires_at < ?)", owner, expiresAt, LEASE, owner, Timestamp.from(now));
+        if (renewed > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO outbox_lease (name, owner, expires_at) VALUES (?, ?, ?)", LEASE, owner, expiresAt);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Delete delivered rows older than the retention window, in id ranges of
+     * {@code cleanup-chunk}. Ranges stop below the oldest undelivered event, so
+     * every DELETE is a plain primary key range scan over delivered rows.
+     *
+     * @return number of rows deleted
+     */
+    public int purgeDelivered() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minusMillis(retentionMs));
+        Long upper = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM user_outbox WHERE delivered_at IS NOT NULL AND created_at < ?", Long.class, cutoff);
+        if (upper == null) {
+            return 0;
+        }
+        Long firstPending = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM user_outbox WHERE delivered_at IS NULL", Long.class);
+        if (firstPending != null) {
+            upper = Math.min(upper, firstPending - 1);
+        }
+        Long lower = jdbcTemplate.queryForObject("SELECT MIN(id) FROM user_outbox", Long.class);
+        if (lower == null) {
+            return 0;
+        }
+
+        int deleted = 0;
+        for (long from = lower; from <= upper; from += cleanupChunk) {
+            long to = Math.min(from + cleanupChunk - 1, upper);
+            deleted += jdbcTemplate.update(
+                    "DELETE FROM user_outbox WHERE id BETWEEN ? AND ? AND delivered_at IS NOT NULL", from, to);
+        }
+        purged.add(deleted);
+        if (deleted > 0) {
+            logger.debug("Purged {} delivered outbox events", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * @return number of events the sink accepted
+     */
+    private int deliver(List<OutboxEvent> batch) {
+        List<List<OutboxEvent>> byLane = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (OutboxEvent event : batch) {
+            byLane.get(Math.floorMod(Long.hashCode(event.getUserId()), parallelism)).add(event);
+        }
+
+        List<CompletableFuture<List<Long>>> results = new ArrayList<>(parallelism);
+        for (List<OutboxEvent> lane : byLane) {
+            if (!lane.isEmpty()) {
+                results.add(CompletableFuture.supplyAsync(() -> deliverLane(lane), lanes));
+            }
+        }
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (CompletableFuture<List<Long>> result : results) {
+            ids.addAll(result.join());
+        }
+        // a crash before this update redelivers the batch, which at-least-once allows
+        markDelivered(ids);
+        delivered.add(ids.size());
+        return ids.size();
+    }
+
+    private List<Long> deliverLane(List<OutboxEvent> lane) {
+        try {
+            sink.deliver(lane);
+        } catch (Exception e) {
+            failures.increment();
+            logger.warn("Outbox sink rejected {} events starting at id {}, will retry", lane.size(), lane.get(0).getId(), e);
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(lane.size());
+        for (OutboxEvent event : lane) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    private void markDelivered(List<Long> ids) {
+        Timestamp now = Timestamp.from(Instant.now());
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IN_LIST, ids.size()));
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = now;
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+            }
+            jdbcTemplate.update("UPDATE user_outbox SET delivered_at = ? WHERE id IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")", args);
+        }
+    }
+
+    private static OutboxEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        OutboxEvent event = new OutboxEvent(rs.getLong("user_id"), OutboxEventType.valueOf(rs.getString("event_type")),
+                rs.getString("payload"), rs.getTimestamp("created_at").toInstant());
+        event.setId(rs.getLong("id"));
+        return event;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo1.outbox;
+
+import com.example.demo1.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of outbox events. Define a bean of this type to replace the
+ * configured file or in-memory sink.
+ *
+ * <p>Events of one user arrive in the order they were written, but an event
+ * may arrive again after a failure, so consumers should deduplicate by event id.
+ */
+@FunctionalInterface
+public interface OutboxSink {
+
+    /**
+     * Deliver the events, returning only once they are durably accepted; throwing
+     * leaves all of them undelivered, to be retried on the next drain.
+     */
+    void deliver(List<OutboxEvent> events) throws Exception;
+}
@@ -0,0 +1,72 @@
+package com.example.demo1.outbox;
+
+import com.example.demo1.model.OutboxEvent;
+import com.example.demo1.model.OutboxEventType;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Appends user lifecycle events to the outbox table. Must be called inside the
+ * transaction that changes the user, so the event is stored if and only if the
+ * change commits.
+ */
+@Component
+public class UserOutbox {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${outbox.enabled:false}")
+    private boolean enabled;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(OutboxEventType type, User user) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", user.getId());
+        payload.put("email", user.getEmail());
+        payload.put("role", user.getRole());
+        write(user.getId(), type, payload);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendDeleted(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        write(userId, OutboxEventType.USER_DELETED, Map.of("id", userId));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void write(Long userId, OutboxEventType type, Map<String, Object> payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+        // write the users row first: its lock then orders concurrent changes of one user,
+        // so a later change always gets a higher outbox id than an earlier one
+        outboxEventRepository.flush();
+        outboxEventRepository.save(new OutboxEvent(userId, type, json, Instant.now()));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo1.repository;
+
+import com.example.demo1.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+}
@@ -2,9 +2,22 @@ package com.example.demo1.repository;
 
 import com.example.demo1.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserStore {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+    List<User> findByEmailIn(Collection<String> emails);
+
+    // declared by both parents; redeclared so calls on a UserRepository are not ambiguous
+    Optional<User> findById(Long id);
+    boolean existsById(Long id);
+    List<User> findAllById(Iterable<Long> ids);
+    List<User> findAll();
+    long count();
+    <S extends User> S save(S user);
+    <S extends User> S saveAndFlush(S user);
+    void deleteById(Long id);
 }
@@ -0,0 +1,36 @@
+package com.example.demo1.repository;
+
+import com.example.demo1.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The user operations the application relies on. {@link UserRepository} provides them over the
+ * JPA users table and ShardedUserRepository over the shards; code that reads or writes users
+ * depends on this interface, so anything outside it cannot be called on either store.
+ */
+public interface UserStore {
+    Optional<User> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    List<User> findByEmailIn(Collection<String> emails);
+
+    Optional<User> findById(Long id);
+
+    boolean existsById(Long id);
+
+    List<User> findAllById(Iterable<Long> ids);
+
+    List<User> findAll();
+
+    long count();
+
+    <S extends User> S save(S user);
+
+    <S extends User> S saveAndFlush(S user);
+
+    void deleteById(Long id);
+}
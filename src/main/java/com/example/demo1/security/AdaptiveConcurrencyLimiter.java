@@ -0,0 +1,95 @@
+package com.example.demo1.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AIMD concurrency limit driven by observed latency.
+ * Every completed request is compared with a slowly moving latency baseline:
+ * a sample above baseline * tolerance (or a failed request) shrinks the limit
+ * multiplicatively, a fast sample while the limit is actually in use grows it by one.
+ * Low-priority requests may only use a share of the limit, so the remaining
+ * slots stay available for high-priority traffic under pressure.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final double lowPriorityShare;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile int limit;
+    private double baselineNanos = -1;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double tolerance, double backoffRatio, double lowPriorityShare) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit bounds: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.lowPriorityShare = lowPriorityShare;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Try to take a slot. Returns false without blocking when the limit is reached.
+     */
+    public boolean tryAcquire(boolean lowPriority) {
+        int currentLimit = limit;
+        int allowed = lowPriority ? Math.max(1, (int) (currentLimit * lowPriorityShare)) : currentLimit;
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release a slot taken by {@link #tryAcquire(boolean)} and feed the latency sample.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        onSample(latencyNanos, inFlightAtCompletion, failed);
+    }
+
+    private synchronized void onSample(long latencyNanos, int inFlightAtCompletion, boolean failed) {
+        if (baselineNanos < 0) {
+            baselineNanos = latencyNanos;
+        }
+
+        int currentLimit = limit;
+        if (failed || latencyNanos > baselineNanos * tolerance) {
+            limit = Math.max(minLimit, (int) (currentLimit * backoffRatio));
+        } else if (inFlightAtCompletion * 2 >= currentLimit) {
+            limit = Math.min(maxLimit, currentLimit + 1);
+        }
+
+        baselineNanos = baselineNanos * (1 - BASELINE_SMOOTHING) + latencyNanos * BASELINE_SMOOTHING;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.demo1.security;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable set of blocked email domains, matched against the domain of an address and every
+ * parent domain: blocking {@code mailinator.com} also blocks {@code eu.mailinator.com}.
+ *
+ * <p>Domains are keyed by a hash computed right to left, so one backwards pass over the address
+ * yields the hash of each suffix as it reaches a label boundary. The hashes sit in an open
+ * addressing table of longs with the domains alongside for an exact, case-insensitive compare.
+ * A lookup allocates nothing and probes at most one slot run per label.
+ */
+public final class BlockedDomainSet {
+
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    public static final BlockedDomainSet EMPTY = of(List.of());
+
+    private final long[] hashes;
+    private final String[] domains;
+    private final int mask;
+    private final int size;
+
+    private BlockedDomainSet(long[] hashes, String[] domains, int size) {
+        this.hashes = hashes;
+        this.domains = domains;
+        this.mask = hashes.length - 1;
+        this.size = size;
+    }
+
+    public static BlockedDomainSet of(Collection<String> entries) {
+        List<String> normalized = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            String domain = normalize(entry);
+            if (domain != null) {
+                normalized.add(domain);
+            }
+        }
+        // load factor at most 1/2 keeps probe runs short
+        int capacity = Integer.highestOneBit(Math.max(4, normalized.size() * 2 - 1)) << 1;
+        long[] hashes = new long[capacity];
+        String[] domains = new String[capacity];
+        int size = 0;
+        for (String domain : normalized) {
+            long hash = hash(domain, 0, domain.length());
+            int slot = (int) hash & (capacity - 1);
+            boolean duplicate = false;
+            while (hashes[slot] != 0) {
+                if (hashes[slot] == hash && domains[slot].equals(domain)) {
+                    duplicate = true;
+                    break;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (!duplicate) {
+                hashes[slot] = hash;
+                domains[slot] = domain;
+                size++;
+            }
+        }
+        return new BlockedDomainSet(hashes, domains, size);
+    }
+
+    /**
+     * One domain per line; blank lines and {@code #} comments are skipped.
+     */
+    public static BlockedDomainSet load(Path file) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                entries.add(comment >= 0 ? line.substring(0, comment) : line);
+            }
+        }
+        return of(entries);
+    }
+
+    /**
+     * Whether the domain of the address, or one of its parent domains, is blocked.
+     */
+    public boolean isBlocked(String email) {
+        if (email == null || size == 0) {
+            return false;
+        }
+        int end = email.length();
+        while (end > 0 && Character.isWhitespace(email.charAt(end - 1))) {
+            end--;
+        }
+        // the fully qualified form, mailinator.com., names the same domain
+        if (end > 0 && email.charAt(end - 1) == '.') {
+            end--;
+        }
+        return containsDomainOf(email, email.lastIndexOf('@', end - 1) + 1, end);
+    }
+
+    /**
+     * Whether {@code text[start, end)} or one of its parent domains is blocked.
+     */
+    public boolean containsDomainOf(String text, int start, int end) {
+        long h = SEED;
+        for (int i = end - 1; i >= start; i--) {
+            h = (h ^ lower(text.charAt(i))) * PRIME;
+            if (i == start || text.charAt(i - 1) == '.') {
+                if (contains(finish(h), text, i, end)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean contains(long hash, String text, int start, int end) {
+        int slot = (int) hash & mask;
+        long stored;
+        while ((stored = hashes[slot]) != 0) {
+            if (stored == hash) {
+                String domain = domains[slot];
+                if (domain.length() == end - start && text.regionMatches(true, start, domain, 0, end - start)) {
+                    return true;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Lower-cased with wildcards, a leading {@code @} or dot and a trailing dot removed; null if nothing is left.
+     */
+    static String normalize(String entry) {
+        if (entry == null) {
+            return null;
+        }
+        String domain = entry.trim().toLowerCase(Locale.ROOT);
+        if (domain.startsWith("*.")) {
+            domain = domain.substring(2);
+        }
+        while (domain.startsWith("@") || domain.startsWith(".")) {
+            domain = domain.substring(1);
+        }
+        if (domain.endsWith(".")) {
+            domain = domain.substring(0, domain.length() - 1);
+        }
+        return domain.isEmpty() || domain.indexOf('@') >= 0 || domain.indexOf(' ') >= 0 ? null : domain;
+    }
+
+    private static long hash(String domain, int start, int end) {
+        long h = SEED;
+        for (int i = end - 1; i >= start; i--) {
+            h = (h ^ lower(domain.charAt(i))) * PRIME;
+        }
+        return finish(h);
+    }
+
+    private static char lower(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    // FNV alone clusters in the low bits the table indexes with; 0 marks an empty slot
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.demo1.security;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Blocked Bloom filter over SHA-1 hashes of breached passwords, in a memory-mapped file.
+ * SHA-1 is what breach corpora such as Have I Been Pwned publish, so their hash lists
+ * can be loaded without ever seeing a plaintext password.
+ *
+ * <p>Every key sets all of its bits in one 64-byte block, so a probe touches a single
+ * cache line (and a single page) however large the file is. The file is mapped in
+ * regions of up to 1 GiB; a filter for hundreds of millions of entries is a few hundred
+ * MB of page cache and no heap. Blocks cost a little accuracy against a classic Bloom
+ * filter, which sizing offsets with 10% more bits; the builder reports the measured rate.
+ *
+ * <p>File layout: a 64-byte header (magic, version, hash count, block count, entry
+ * count, target false-positive rate), then the blocks.
+ */
+public class BreachedPasswordFilter implements Closeable {
+
+    private static final long MAGIC = 0x5057424c_4f4f4d31L; // "PWBLOOM1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int BLOCK_BYTES = 64;
+    private static final int BLOCK_BITS = BLOCK_BYTES * 8;
+    private static final long DEFAULT_REGION_BYTES = 1L << 30;
+    private static final int MAX_HASHES = 16;
+    private static final double BLOCKING_OVERHEAD = 1.1;
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    });
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int regionShift;
+    private final long regionMask;
+    private final long blockCount;
+    private final int hashCount;
+    private final double targetFalsePositiveRate;
+    private final boolean writable;
+    private long entryCount;
+
+    private BreachedPasswordFilter(FileChannel channel, MappedByteBuffer[] regions, int regionShift, long blockCount,
+                                   int hashCount, long entryCount, double targetFalsePositiveRate, boolean writable) {
+        this.channel = channel;
+        this.regions = regions;
+        this.regionShift = regionShift;
+        this.regionMask = (1L << regionShift) - 1;
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+        this.entryCount = entryCount;
+        this.targetFalsePositiveRate = targetFalsePositiveRate;
+        this.writable = writable;
+    }
+
+    /**
+     * Map an existing filter read-only.
+     */
+    public static BreachedPasswordFilter open(Path file) throws IOException {
+        return open(file, DEFAULT_REGION_BYTES);
+    }
+
+    static BreachedPasswordFilter open(Path file, long regionBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a breached password filter: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+                throw new IOException("Not a breached password filter: " + file);
+            }
+            int hashCount = header.getInt(12);
+            long blockCount = header.getLong(16);
+            long entryCount = header.getLong(24);
+            double targetRate = header.getDouble(32);
+            if (hashCount < 1 || hashCount > MAX_HASHES || blockCount < 1
+                    || channel.size() != HEADER_BYTES + blockCount * BLOCK_BYTES) {
+                throw new IOException("Breached password filter is truncated or corrupt: " + file);
+            }
+            MappedByteBuffer[] regions = map(channel, FileChannel.MapMode.READ_ONLY, blockCount, regionBytes);
+            return new BreachedPasswordFilter(channel, regions, Long.numberOfTrailingZeros(regionBytes),
+                    blockCount, hashCount, entryCount, targetRate, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create an empty filter sized for the expected entries, replacing the file.
+     */
+    public static BreachedPasswordFilter create(Path file, long expectedEntries, double falsePositiveRate) throws IOException {
+        return create(file, expectedEntries, falsePositiveRate, DEFAULT_REGION_BYTES);
+    }
+
+    static BreachedPasswordFilter create(Path file, long expectedEntries, double falsePositiveRate,
+                                         long regionBytes) throws IOException {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        long n = Math.max(1, expectedEntries);
+        double bitsPerEntry = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) * BLOCKING_OVERHEAD;
+        long blockCount = Math.max(1, (long) Math.ceil(n * bitsPerEntry / BLOCK_BITS));
+        int hashCount = (int) Math.max(1, Math.min(MAX_HASHES,
+                Math.round((double) blockCount * BLOCK_BITS / n * Math.log(2))));
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putInt(12, hashCount);
+            header.putLong(16, blockCount);
+            header.putLong(24, 0);
+            header.putDouble(32, falsePositiveRate);
+            // mapping past the end grows the file; the new bytes read as zero
+            MappedByteBuffer[] regions = map(channel, FileChannel.MapMode.READ_WRITE, blockCount, regionBytes);
+            return new BreachedPasswordFilter(channel, regions, Long.numberOfTrailingZeros(regionBytes),
+                    blockCount, hashCount, 0, falsePositiveRate, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public boolean mightContain(String password) {
+        return mightContainHash(sha1(password));
+    }
+
+    /**
+     * @param sha1 the 20-byte SHA-1 of the UTF-8 password
+     */
+    public boolean mightContainHash(byte[] sha1) {
+        long h1 = readLong(sha1, 0);
+        long h2 = readLong(sha1, 8);
+        long offset = Math.floorMod(h1, blockCount) * BLOCK_BYTES;
+        MappedByteBuffer region = regions[(int) (offset >>> regionShift)];
+        int block = (int) (offset & regionMask);
+        int a = (int) h2;
+        int b = (int) (h2 >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (a + i * b) & (BLOCK_BITS - 1);
+            if ((region.getLong(block + ((bit >>> 6) << 3)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void addHash(byte[] sha1) {
+        if (!writable) {
+            throw new IllegalStateException("Filter is open read-only");
+        }
+        long h1 = readLong(sha1, 0);
+        long h2 = readLong(sha1, 8);
+        long offset = Math.floorMod(h1, blockCount) * BLOCK_BYTES;
+        MappedByteBuffer region = regions[(int) (offset >>> regionShift)];
+        int block = (int) (offset & regionMask);
+        int a = (int) h2;
+        int b = (int) (h2 >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (a + i * b) & (BLOCK_BITS - 1);
+            int word = block + ((bit >>> 6) << 3);
+            region.putLong(word, region.getLong(word) | (1L << (bit & 63)));
+        }
+        entryCount++;
+    }
+
+    public void add(String password) {
+        addHash(sha1(password));
+    }
+
+    /**
+     * Record the entry count and flush everything to disk.
+     */
+    public void force() throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.putLong(24, entryCount);
+        header.force();
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * The false-positive rate a classic Bloom filter of this size would have at the current entry count.
+     */
+    public double expectedFalsePositiveRate() {
+        double bits = (double) blockCount * BLOCK_BITS;
+        return Math.pow(1 - Math.exp(-hashCount * (double) entryCount / bits), hashCount);
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public long getSizeBytes() {
+        return HEADER_BYTES + blockCount * BLOCK_BYTES;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public double getTargetFalsePositiveRate() {
+        return targetFalsePositiveRate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mappings stay valid until they are garbage collected
+        channel.close();
+    }
+
+    public static byte[] sha1(String password) {
+        MessageDigest digest = SHA1.get();
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long blockCount,
+                                          long regionBytes) throws IOException {
+        if (Long.bitCount(regionBytes) != 1 || regionBytes < BLOCK_BYTES || regionBytes > DEFAULT_REGION_BYTES) {
+            throw new IllegalArgumentException("Region size must be a power of two of at most 1 GiB: " + regionBytes);
+        }
+        long dataBytes = blockCount * BLOCK_BYTES;
+        int count = (int) ((dataBytes + regionBytes - 1) / regionBytes);
+        MappedByteBuffer[] regions = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i * regionBytes;
+            regions[i] = channel.map(mode, HEADER_BYTES + start, Math.min(regionBytes, dataBytes - start));
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return regions;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo1.security;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+
+/**
+ * Builds a {@link BreachedPasswordFilter} file offline and reports its false-positive rate.
+ *
+ * <p>Input is one entry per line: a SHA-1 hash in hex, optionally followed by
+ * {@code :count} as in the Have I Been Pwned downloads, or a plaintext password with
+ * {@code --plain}. Without {@code --expected} the input is read twice, once to count.
+ * The report probes random hashes, which are almost surely not in the input, so the
+ * share of hits is the false-positive rate. From the packaged application:
+ * <pre>
+ * java -cp demo1.jar -Dloader.main=com.example.demo1.security.BreachedPasswordFilterBuilder \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     pwned-passwords-sha1.txt data/breached-passwords.bin --fpr 0.001 --min-count 2
+ * </pre>
+ */
+public final class BreachedPasswordFilterBuilder {
+
+    public record Report(long entries, long skipped, long sizeBytes, int hashCount, double targetRate,
+                         double expectedRate, double measuredRate, double probeNanos) {
+
+        void print(PrintStream out) {
+            out.printf("entries:              %,d (%,d lines skipped)%n", entries, skipped);
+            out.printf("size:                 %,.1f MB (%.2f bits per entry, %d hashes)%n",
+                    sizeBytes / 1e6, entries == 0 ? 0.0 : sizeBytes * 8.0 / entries, hashCount);
+            out.printf("false-positive rate:  target %.6f, expected %.6f, measured %.6f%n",
+                    targetRate, expectedRate, measuredRate);
+            out.printf("probe:                %.0f ns average, hashing included%n", probeNanos);
+        }
+    }
+
+    private BreachedPasswordFilterBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BreachedPasswordFilterBuilder <input> <output> [--fpr 0.001] "
+                    + "[--expected n] [--min-count n] [--plain] [--probes 1000000]");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        double fpr = 0.001;
+        long expected = -1;
+        long minCount = 1;
+        boolean plain = false;
+        int probes = 1_000_000;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fpr" -> fpr = Double.parseDouble(args[++i]);
+                case "--expected" -> expected = Long.parseLong(args[++i]);
+                case "--min-count" -> minCount = Long.parseLong(args[++i]);
+                case "--plain" -> plain = true;
+                case "--probes" -> probes = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        long started = System.nanoTime();
+        Report report = build(input, output, fpr, expected, minCount, plain, probes);
+        report.print(System.out);
+        System.out.printf("built %s in %.1f s%n", output, (System.nanoTime() - started) / 1e9);
+    }
+
+    public static Report build(Path input, Path output, double falsePositiveRate, long expectedEntries,
+                               long minCount, boolean plain, int probes) throws IOException {
+        long expected = expectedEntries > 0 ? expectedEntries : countEntries(input, minCount, plain);
+        long skipped = 0;
+        // a running service may have the output mapped; it must never see a file being written
+        Path building = output.resolveSibling(output.getFileName() + ".building");
+        Report report;
+        try (BreachedPasswordFilter filter = BreachedPasswordFilter.create(building, expected, falsePositiveRate);
+             BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                byte[] hash = parse(line, minCount, plain);
+                if (hash == null) {
+                    skipped++;
+                    continue;
+                }
+                filter.addHash(hash);
+            }
+            filter.force();
+            report = report(filter, skipped, probes);
+        }
+        Files.move(building, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return report;
+    }
+
+    static Report report(BreachedPasswordFilter filter, long skipped, int probes) {
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] hash = new byte[20];
+        long hits = 0;
+        for (int i = 0; i < probes; i++) {
+            random.nextBytes(hash);
+            if (filter.mightContainHash(hash)) {
+                hits++;
+            }
+        }
+
+        // the full path as isPasswordStrong sees it, hashing included
+        int timed = Math.min(probes, 100_000);
+        long started = System.nanoTime();
+        for (int i = 0; i < timed; i++) {
+            filter.mightContain("probe-" + i);
+        }
+        double probeNanos = timed == 0 ? 0 : (System.nanoTime() - started) / (double) timed;
+
+        return new Report(filter.getEntryCount(), skipped, filter.getSizeBytes(), filter.getHashCount(),
+                filter.getTargetFalsePositiveRate(), filter.expectedFalsePositiveRate(),
+                probes == 0 ? 0 : hits / (double) probes, probeNanos);
+    }
+
+    private static long countEntries(Path input, long minCount, boolean plain) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (parse(line, minCount, plain) != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The SHA-1 of the line's entry, or null for blank, malformed or too rarely seen entries.
+     */
+    static byte[] parse(String line, long minCount, boolean plain) {
+        if (plain) {
+            return line.isEmpty() ? null : BreachedPasswordFilter.sha1(line);
+        }
+        String entry = line.trim();
+        int colon = entry.indexOf(':');
+        if (colon >= 0) {
+            try {
+                if (Long.parseLong(entry.substring(colon + 1).trim()) < minCount) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            entry = entry.substring(0, colon);
+        }
+        if (entry.length() != 40) {
+            return null;
+        }
+        try {
+            return HexFormat.of().parseHex(entry);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
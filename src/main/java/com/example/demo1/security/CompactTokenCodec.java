@@ -0,0 +1,179 @@
+package com.example.demo1.security;
+
+import com.example.demo1.model.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Compact access token profile: {@code c1.<payload>.<mac>}, both parts base64url.
+ * The payload is a CBOR array {@code [userId, roleOrdinal, iat, exp, jti]} with
+ * integers in their shortest encoding and the jti as a 16-byte string; the MAC
+ * is HMAC-SHA256 over {@code c1.<payload>}. A typical token is about 90 characters,
+ * a third of the equivalent JWT, and parsing needs no JSON.
+ * Decoded tokens are returned as {@link Claims} with the user id in the
+ * {@value #USER_ID_CLAIM} claim and no subject.
+ */
+public class CompactTokenCodec {
+
+    public static final String PREFIX = "c1.";
+    public static final String USER_ID_CLAIM = "uid";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+    private static final int ARRAY_OF_5 = 0x85;
+    private static final int BYTES_OF_16 = 0x50;
+    private static final Role[] ROLES = Role.values();
+
+    private final byte[] key;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    public CompactTokenCodec(byte[] key) {
+        this.key = key.clone();
+    }
+
+    public static boolean isCompact(String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    public String encode(long userId, Role role, long issuedAtSeconds, long expiresAtSeconds, UUID tokenId) {
+        ByteBuffer payload = ByteBuffer.allocate(64);
+        payload.put((byte) ARRAY_OF_5);
+        writeUnsigned(payload, userId);
+        writeUnsigned(payload, role.ordinal());
+        writeUnsigned(payload, issuedAtSeconds);
+        writeUnsigned(payload, expiresAtSeconds);
+        payload.put((byte) BYTES_OF_16);
+        payload.putLong(tokenId.getMostSignificantBits());
+        payload.putLong(tokenId.getLeastSignificantBits());
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String signed = PREFIX + encoder.encodeToString(Arrays.copyOf(payload.array(), payload.position()));
+        return signed + "." + encoder.encodeToString(mac(signed));
+    }
+
+    /**
+     * Verify and decode a compact token.
+     *
+     * @throws MalformedJwtException when the token is not a well-formed c1 token
+     * @throws SignatureException    when the MAC does not match
+     * @throws ExpiredJwtException   when the token has expired
+     */
+    public Claims decode(String token) {
+        int dot = token.lastIndexOf('.');
+        if (!isCompact(token) || dot <= PREFIX.length()) {
+            throw new MalformedJwtException("Not a compact token");
+        }
+
+        byte[] payload;
+        byte[] mac;
+        try {
+            payload = Base64.getUrlDecoder().decode(token.substring(PREFIX.length(), dot));
+            mac = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJwtException("Compact token is not valid base64url", e);
+        }
+        if (mac.length != MAC_BYTES || !MessageDigest.isEqual(mac, mac(token.substring(0, dot)))) {
+            throw new SignatureException("Compact token signature does not match");
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        Claims claims;
+        try {
+            if ((in.get() & 0xFF) != ARRAY_OF_5) {
+                throw new MalformedJwtException("Unexpected compact token layout");
+            }
+            long userId = readUnsigned(in);
+            long roleOrdinal = readUnsigned(in);
+            long issuedAt = readUnsigned(in);
+            long expiresAt = readUnsigned(in);
+            if ((in.get() & 0xFF) != BYTES_OF_16 || roleOrdinal >= ROLES.length) {
+                throw new MalformedJwtException("Unexpected compact token layout");
+            }
+            UUID tokenId = new UUID(in.getLong(), in.getLong());
+            if (in.hasRemaining()) {
+                throw new MalformedJwtException("Trailing bytes in compact token");
+            }
+
+            claims = Jwts.claims();
+            claims.put(USER_ID_CLAIM, userId);
+            claims.put("role", ROLES[(int) roleOrdinal].name());
+            claims.setIssuedAt(new Date(issuedAt * 1000));
+            claims.setExpiration(new Date(expiresAt * 1000));
+            claims.setId(tokenId.toString());
+        } catch (BufferUnderflowException e) {
+            throw new MalformedJwtException("Truncated compact token", e);
+        }
+
+        if (claims.getExpiration().getTime() <= System.currentTimeMillis()) {
+            throw new ExpiredJwtException(null, claims, "Compact token expired at " + claims.getExpiration());
+        }
+        return claims;
+    }
+
+    /**
+     * CBOR major type 0 (unsigned integer) in its shortest form.
+     */
+    private static void writeUnsigned(ByteBuffer out, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values are not supported: " + value);
+        }
+        if (value < 24) {
+            out.put((byte) value);
+        } else if (value < 0x100) {
+            out.put((byte) 0x18).put((byte) value);
+        } else if (value < 0x10000) {
+            out.put((byte) 0x19).putShort((short) value);
+        } else if (value < 0x100000000L) {
+            out.put((byte) 0x1a).putInt((int) value);
+        } else {
+            out.put((byte) 0x1b).putLong(value);
+        }
+    }
+
+    private static long readUnsigned(ByteBuffer in) {
+        int initial = in.get() & 0xFF;
+        if (initial < 24) {
+            return initial;
+        }
+        long value = switch (initial) {
+            case 0x18 -> in.get() & 0xFFL;
+            case 0x19 -> in.getShort() & 0xFFFFL;
+            case 0x1a -> in.getInt() & 0xFFFFFFFFL;
+            case 0x1b -> in.getLong();
+            default -> throw new MalformedJwtException("Unexpected CBOR item 0x" + Integer.toHexString(initial));
+        };
+        if (value < 0) {
+            throw new MalformedJwtException("Integer out of range in compact token");
+        }
+        return value;
+    }
+
+    private byte[] mac(String signed) {
+        return macs.get().doFinal(signed.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
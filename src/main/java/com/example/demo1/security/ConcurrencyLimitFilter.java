@@ -0,0 +1,135 @@
+package com.example.demo1.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sheds load per endpoint group. Runs after JwtAuthenticationFilter, so only requests whose
+ * token was verified count as high priority; a made-up Authorization header is anonymous,
+ * and anonymous requests (login and register, which spend bcrypt time) only get a share
+ * of the limit. Thrown exceptions and 5xx responses both count as failures.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    enum EndpointGroup {
+        AUTH, ADMIN, API
+    }
+
+    private static final String REJECTED_BODY = "{\"success\":false,\"message\":\"Server is busy, please retry\"}";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${concurrency.limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${concurrency.limit.initial:20}")
+    private int initialLimit;
+
+    @Value("${concurrency.limit.min:4}")
+    private int minLimit;
+
+    @Value("${concurrency.limit.max:200}")
+    private int maxLimit;
+
+    @Value("${concurrency.limit.latency-tolerance:2.0}")
+    private double tolerance;
+
+    @Value("${concurrency.limit.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${concurrency.limit.low-priority-share:0.7}")
+    private double lowPriorityShare;
+
+    @Value("${concurrency.limit.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    private final Map<EndpointGroup, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(EndpointGroup.class);
+
+    @PostConstruct
+    void registerLimiters() {
+        for (EndpointGroup group : EndpointGroup.values()) {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                    initialLimit, minLimit, maxLimit, tolerance, backoffRatio, lowPriorityShare);
+            limiters.put(group, limiter);
+
+            String tag = group.name().toLowerCase();
+            Gauge.builder("http.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("group", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("group", tag)
+                    .register(meterRegistry);
+            FunctionCounter.builder("http.concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejectedCount)
+                    .tag("group", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || "OPTIONS".equals(request.getMethod())
+                || request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        AdaptiveConcurrencyLimiter limiter = limiters.get(resolveGroup(request.getRequestURI()));
+        boolean lowPriority = !isAuthenticated(SecurityContextHolder.getContext().getAuthentication());
+
+        if (!limiter.tryAcquire(lowPriority)) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write(REJECTED_BODY);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    static boolean isAuthenticated(Authentication authentication) {
+        return authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken);
+    }
+
+    private EndpointGroup resolveGroup(String uri) {
+        if (uri.startsWith("/api/auth/")) {
+            return EndpointGroup.AUTH;
+        }
+        if (uri.startsWith("/api/admin/")) {
+            return EndpointGroup.ADMIN;
+        }
+        return EndpointGroup.API;
+    }
+}
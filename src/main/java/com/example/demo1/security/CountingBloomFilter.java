@@ -0,0 +1,97 @@
+package com.example.demo1.security;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Counting Bloom filter over strings with saturating 8-bit counters.
+ * Lookups are lock-free and allocation-free; adds and removes are serialized.
+ * A false positive only costs the caller a slower confirmation lookup.
+ */
+public class CountingBloomFilter {
+
+    private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final int SATURATED = 0xFF;
+
+    private final byte[] counters;
+    private final int hashCount;
+
+    public CountingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long size = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, size))];
+        this.hashCount = Math.max(1, (int) Math.round((double) counters.length / n * Math.log(2)));
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            if ((byte) COUNTERS.getAcquire(counters, index(h1, h2, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void add(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(h1, h2, i);
+            int count = counters[index] & 0xFF;
+            if (count < SATURATED) {
+                COUNTERS.setRelease(counters, index, (byte) (count + 1));
+            }
+        }
+    }
+
+    /**
+     * Remove a key previously added. Saturated counters are left alone,
+     * since their true count is no longer known.
+     */
+    public synchronized void remove(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(h1, h2, i);
+            int count = counters[index] & 0xFF;
+            if (count > 0 && count < SATURATED) {
+                COUNTERS.setRelease(counters, index, (byte) (count - 1));
+            }
+        }
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public int getCounterCount() {
+        return counters.length;
+    }
+
+    private int index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % counters.length;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the murmur3 mixer.
+     */
+    static long hash64(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.demo1.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifies ES256 access tokens against the keys published at /.well-known/jwks.json.
+ * Meant to be embedded in downstream services: keys are cached by kid and the
+ * key set is only fetched again, with a conditional request, when a token names
+ * an unknown kid or the cached set is older than the refresh interval.
+ * Has no Spring dependencies, so it can be constructed directly.
+ */
+public class JwksTokenVerifier {
+
+    private static final long FAILURE_BACKOFF_NANOS = Duration.ofSeconds(5).toNanos();
+
+    private record KeySet(Map<String, PublicKey> keys, String etag, long fetchedAtNanos) {}
+
+    private final URI jwksUri;
+    private final long refreshIntervalNanos;
+    private final long minRefreshGapNanos;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JwtParser parser;
+    private final ECParameterSpec p256;
+
+    private volatile KeySet keySet = new KeySet(Map.of(), null, 0);
+    private volatile long retryAtNanos;
+
+    public JwksTokenVerifier(URI jwksUri) {
+        this(jwksUri, Duration.ofMinutes(5), Duration.ofSeconds(10));
+    }
+
+    /**
+     * @param refreshInterval how long a fetched key set is used before it is revalidated
+     * @param minRefreshGap   lower bound between fetches triggered by unknown kids,
+     *                        so forged tokens cannot turn into a request flood
+     */
+    public JwksTokenVerifier(URI jwksUri, Duration refreshInterval, Duration minRefreshGap) {
+        this.jwksUri = jwksUri;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.minRefreshGapNanos = minRefreshGap.toNanos();
+        this.retryAtNanos = System.nanoTime();
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            this.p256 = parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("P-256 is not available", e);
+        }
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveKey(header.getKeyId());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Verify signature and expiry and return the claims.
+     *
+     * @throws io.jsonwebtoken.JwtException when the token is invalid
+     */
+    public Claims verify(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private PublicKey resolveKey(String kid) {
+        if (kid == null) {
+            throw new UnsupportedJwtException("Token has no kid, it cannot be verified with public keys");
+        }
+        KeySet current = keySet;
+        long now = System.nanoTime();
+        long age = now - current.fetchedAtNanos();
+        PublicKey key = current.keys().get(kid);
+        if (key != null && (age < refreshIntervalNanos || now - retryAtNanos < 0)) {
+            return key;
+        }
+        if (key == null && (current.fetchedAtNanos() != 0 && age < minRefreshGapNanos || now - retryAtNanos < 0)) {
+            throw new UnsupportedJwtException("Unknown signing key " + kid);
+        }
+
+        key = refresh(current).keys().get(kid);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown signing key " + kid);
+        }
+        return key;
+    }
+
+    private synchronized KeySet refresh(KeySet seen) {
+        if (keySet != seen) {
+            // another thread refreshed while this one was waiting
+            return keySet;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(jwksUri)
+                .timeout(Duration.ofSeconds(5))
+                .header("Accept", "application/jwk-set+json, application/json");
+        if (seen.etag() != null) {
+            request.header("If-None-Match", seen.etag());
+        }
+
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 304) {
+                keySet = new KeySet(seen.keys(), seen.etag(), System.nanoTime());
+            } else if (response.statusCode() == 200) {
+                keySet = new KeySet(parseKeys(response.body()),
+                        response.headers().firstValue("ETag").orElse(null), System.nanoTime());
+            } else {
+                backOff();
+                if (seen.keys().isEmpty()) {
+                    throw new IllegalStateException("JWKS request to " + jwksUri + " failed with " + response.statusCode());
+                }
+            }
+        } catch (IOException e) {
+            backOff();
+            if (seen.keys().isEmpty()) {
+                throw new UncheckedIOException("JWKS request to " + jwksUri + " failed", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching " + jwksUri, e);
+        }
+        return keySet;
+    }
+
+    /**
+     * Keep serving the cached keys after a failed fetch, but leave the endpoint alone for the
+     * failure backoff, so an unreachable JWKS does not put a blocking request into every verification
+     */
+    private void backOff() {
+        retryAtNanos = System.nanoTime() + Math.max(minRefreshGapNanos, FAILURE_BACKOFF_NANOS);
+    }
+
+    private Map<String, PublicKey> parseKeys(byte[] body) throws IOException {
+        Map<String, PublicKey> keys = new HashMap<>();
+        KeyFactory keyFactory;
+        try {
+            keyFactory = KeyFactory.getInstance("EC");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("EC keys are not supported", e);
+        }
+
+        for (JsonNode jwk : objectMapper.readTree(body).path("keys")) {
+            if (!"EC".equals(jwk.path("kty").asText()) || !"P-256".equals(jwk.path("crv").asText())) {
+                continue;
+            }
+            ECPoint point = new ECPoint(decodeCoordinate(jwk.path("x").asText()), decodeCoordinate(jwk.path("y").asText()));
+            try {
+                keys.put(jwk.path("kid").asText(), keyFactory.generatePublic(new ECPublicKeySpec(point, p256)));
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Invalid key " + jwk.path("kid").asText() + " in JWKS", e);
+            }
+        }
+        return Map.copyOf(keys);
+    }
+
+    private static BigInteger decodeCoordinate(String value) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode(value));
+    }
+}
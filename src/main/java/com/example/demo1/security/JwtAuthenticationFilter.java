@@ -3,6 +3,8 @@ package com.example.demo1.security;
 
 import com.example.demo1.service.JwtService;
 import com.example.demo1.service.CustomUserDetailsService;
+import com.example.demo1.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,13 +28,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -40,12 +44,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt);
+        Claims claims = jwtService.parseClaims(jwt);
 
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = loadUser(claims);
 
-            if (jwtService.validateToken(jwt, userDetails)) {
+            if (userDetails != null && jwtService.validateClaims(claims, userDetails)) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -54,4 +58,30 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * The user behind a non-revoked token, or null, also for unknown users. JWTs name the user by
+     * email, so revocation is checked before the lookup; compact tokens carry the user id and
+     * need the lookup to learn the email revocations are keyed by.
+     */
+    private UserDetails loadUser(Claims claims) {
+        String userEmail = claims.getSubject();
+        if (userEmail != null) {
+            if (tokenRevocationService.isRevoked(claims.getId(), userEmail, claims.getIssuedAt())) {
+                return null;
+            }
+            return userDetailsService.findByEmail(userEmail).orElse(null);
+        }
+
+        Long userId = JwtService.getUserId(claims);
+        if (userId == null) {
+            return null;
+        }
+        UserDetails userDetails = userDetailsService.findById(userId).orElse(null);
+        if (userDetails == null) {
+            return null;
+        }
+        return tokenRevocationService.isRevoked(claims.getId(), userDetails.getUsername(), claims.getIssuedAt())
+                ? null : userDetails;
+    }
 }
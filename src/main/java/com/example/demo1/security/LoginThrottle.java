@@ -0,0 +1,75 @@
+package com.example.demo1.security;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Per-IP and per-account login throttling, checked before any user lookup
+ * or password hashing so that credential stuffing cannot burn bcrypt time.
+ * A key that finds its table full is let through that table, so an email is
+ * then limited per IP only and an IP per account only.
+ */
+@Component
+public class LoginThrottle {
+
+    @Value("${login.throttle.enabled:true}")
+    private boolean enabled;
+
+    @Value("${login.throttle.email.capacity:5}")
+    private double emailCapacity;
+
+    @Value("${login.throttle.email.refill-per-minute:5}")
+    private double emailRefillPerMinute;
+
+    @Value("${login.throttle.ip.capacity:20}")
+    private double ipCapacity;
+
+    @Value("${login.throttle.ip.refill-per-minute:60}")
+    private double ipRefillPerMinute;
+
+    @Value("${login.throttle.max-keys:100000}")
+    private int maxKeys;
+
+    @Value("${login.throttle.stripes:64}")
+    private int stripes;
+
+    private TokenBucketTable emailBuckets;
+    private TokenBucketTable ipBuckets;
+
+    @PostConstruct
+    void createTables() {
+        emailBuckets = new TokenBucketTable(emailCapacity, emailRefillPerMinute / 60d, maxKeys, stripes);
+        ipBuckets = new TokenBucketTable(ipCapacity, ipRefillPerMinute / 60d, maxKeys, stripes);
+    }
+
+    /**
+     * Returns 0 when the attempt may proceed, otherwise the seconds the client should wait.
+     */
+    public long check(String email, String clientIp) {
+        if (!enabled) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        long waitNanos = clientIp != null ? allowUntracked(ipBuckets.tryConsume(clientIp, now)) : 0;
+        if (waitNanos == 0 && email != null) {
+            waitNanos = allowUntracked(emailBuckets.tryConsume(email.trim().toLowerCase(Locale.ROOT), now));
+        }
+        return waitNanos == 0 ? 0 : Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private static long allowUntracked(long waitNanos) {
+        return waitNanos == TokenBucketTable.UNTRACKED ? 0 : waitNanos;
+    }
+
+    @Scheduled(fixedDelayString = "${login.throttle.sweep-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        emailBuckets.evictIdle(now);
+        ipBuckets.evictIdle(now);
+    }
+}
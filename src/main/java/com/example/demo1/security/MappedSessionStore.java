@@ -0,0 +1,341 @@
+package com.example.demo1.security;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table of sessions in a memory-mapped file.
+ * The table is split into segments, each guarded by its own StampedLock: lookups
+ * run under an optimistic read and only fall back to a read lock when a writer
+ * interfered. Entries live outside the Java heap and survive restarts, since the
+ * file is reopened as-is when its header matches the configured geometry.
+ *
+ * <p>Slot layout (40 bytes): key high/low (16), user id (8), issued-at and
+ * expires-at in epoch seconds as unsigned ints (8), state (1), role ordinal (1).
+ * Removed entries leave tombstones; {@link #sweep(long)} rebuilds segments to
+ * drop tombstones and expired entries.
+ *
+ * <p>The file belongs to one process on one host; nothing is shared between nodes.
+ */
+public class MappedSessionStore implements Closeable {
+
+    public record Entry(long userId, int roleOrdinal, long issuedAtSeconds, long expiresAtSeconds) {}
+
+    private static final long MAGIC = 0x53455353_53544f31L; // "SESSSTO1"
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 40;
+    private static final int USER_ID = 16;
+    private static final int ISSUED_AT = 24;
+    private static final int EXPIRES_AT = 28;
+    private static final int STATE = 32;
+    private static final int ROLE = 33;
+
+    private static final byte EMPTY = 0;
+    private static final byte LIVE = 1;
+    private static final byte TOMBSTONE = 2;
+
+    /**
+     * Inserts beyond this share of used (live or tombstone) slots first compact the segment.
+     */
+    private static final double MAX_LOAD = 0.75;
+
+    private static final class Segment {
+        final MappedByteBuffer slots;
+        final StampedLock lock = new StampedLock();
+        int live;
+        int tombstones;
+
+        Segment(MappedByteBuffer slots) {
+            this.slots = slots;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Segment[] segments;
+    private final int slotsPerSegment;
+    private final int slotMask;
+
+    /**
+     * @param capacity total slots, rounded so that each segment holds a power of two
+     */
+    public MappedSessionStore(Path file, int capacity, int segmentCount) throws IOException {
+        int perSegment = Integer.highestOneBit(Math.max(16, capacity / segmentCount - 1) << 1);
+        this.slotsPerSegment = perSegment;
+        this.slotMask = perSegment - 1;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long segmentBytes = (long) perSegment * SLOT_BYTES;
+        long fileBytes = HEADER_BYTES + segmentBytes * segmentCount;
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        boolean reuse = channel.size() == fileBytes
+                && header.getLong(0) == MAGIC
+                && header.getInt(8) == SLOT_BYTES
+                && header.getInt(12) == segmentCount
+                && header.getInt(16) == perSegment;
+        if (!reuse) {
+            channel.truncate(HEADER_BYTES);
+        }
+
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES + segmentBytes * i, segmentBytes);
+            Segment segment = new Segment(slots);
+            if (reuse) {
+                countSlots(segment);
+            } else {
+                clear(segment);
+            }
+            segments[i] = segment;
+        }
+
+        if (!reuse) {
+            header.putLong(0, MAGIC);
+            header.putInt(8, SLOT_BYTES);
+            header.putInt(12, segmentCount);
+            header.putInt(16, perSegment);
+            header.force();
+        }
+    }
+
+    /**
+     * Insert a session; false when its segment is full even after compaction.
+     */
+    public boolean put(long keyHigh, long keyLow, long userId, int roleOrdinal,
+                       long issuedAtSeconds, long expiresAtSeconds, long nowSeconds) {
+        Segment segment = segmentFor(keyHigh);
+        long stamp = segment.lock.writeLock();
+        try {
+            if (segment.live + segment.tombstones + 1 > slotsPerSegment * MAX_LOAD) {
+                compact(segment, nowSeconds);
+                if (segment.live + 1 > slotsPerSegment * MAX_LOAD) {
+                    return false;
+                }
+            }
+            MappedByteBuffer slots = segment.slots;
+            int index = (int) keyLow & slotMask;
+            while (slots.get(index * SLOT_BYTES + STATE) == LIVE) {
+                index = (index + 1) & slotMask;
+            }
+            if (slots.get(index * SLOT_BYTES + STATE) == TOMBSTONE) {
+                segment.tombstones--;
+            }
+            writeSlot(slots, index * SLOT_BYTES, keyHigh, keyLow, userId, roleOrdinal, issuedAtSeconds, expiresAtSeconds);
+            segment.live++;
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The session under the key, expired or not; null when absent.
+     */
+    public Entry get(long keyHigh, long keyLow) {
+        Segment segment = segmentFor(keyHigh);
+        long stamp = segment.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Entry entry = find(segment, keyHigh, keyLow);
+            if (segment.lock.validate(stamp)) {
+                return entry;
+            }
+        }
+        stamp = segment.lock.readLock();
+        try {
+            return find(segment, keyHigh, keyLow);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean remove(long keyHigh, long keyLow) {
+        Segment segment = segmentFor(keyHigh);
+        long stamp = segment.lock.writeLock();
+        try {
+            int offset = locate(segment.slots, keyHigh, keyLow);
+            if (offset < 0) {
+                return false;
+            }
+            segment.slots.put(offset + STATE, TOMBSTONE);
+            segment.live--;
+            segment.tombstones++;
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drop expired entries and tombstones, one segment at a time.
+     *
+     * @return number of expired entries removed
+     */
+    public int sweep(long nowSeconds) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                removed += compact(segment, nowSeconds);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+        return removed;
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.live;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public long capacity() {
+        return (long) slotsPerSegment * segments.length;
+    }
+
+    /**
+     * Flush dirty pages to the file.
+     */
+    public void force() {
+        for (Segment segment : segments) {
+            segment.slots.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private Segment segmentFor(long keyHigh) {
+        return segments[(int) Long.remainderUnsigned(keyHigh, segments.length)];
+    }
+
+    private Entry find(Segment segment, long keyHigh, long keyLow) {
+        MappedByteBuffer slots = segment.slots;
+        int offset = locate(slots, keyHigh, keyLow);
+        if (offset < 0) {
+            return null;
+        }
+        return new Entry(slots.getLong(offset + USER_ID), slots.get(offset + ROLE),
+                Integer.toUnsignedLong(slots.getInt(offset + ISSUED_AT)),
+                Integer.toUnsignedLong(slots.getInt(offset + EXPIRES_AT)));
+    }
+
+    /**
+     * Offset of the live slot holding the key, or -1. Probes at most one full
+     * round, so torn reads under an optimistic stamp cannot loop forever.
+     */
+    private int locate(MappedByteBuffer slots, long keyHigh, long keyLow) {
+        int index = (int) keyLow & slotMask;
+        for (int probes = 0; probes < slotsPerSegment; probes++) {
+            int offset = index * SLOT_BYTES;
+            byte state = slots.get(offset + STATE);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == LIVE && slots.getLong(offset) == keyHigh && slots.getLong(offset + 8) == keyLow) {
+                return offset;
+            }
+            index = (index + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Rebuild the segment from its unexpired entries. Caller holds the write lock.
+     */
+    private int compact(Segment segment, long nowSeconds) {
+        MappedByteBuffer slots = segment.slots;
+        int expired = 0;
+        for (int index = 0; index < slotsPerSegment; index++) {
+            int offset = index * SLOT_BYTES;
+            if (slots.get(offset + STATE) == LIVE
+                    && Integer.toUnsignedLong(slots.getInt(offset + EXPIRES_AT)) <= nowSeconds) {
+                expired++;
+            }
+        }
+        if (expired == 0 && segment.tombstones == 0) {
+            return 0;
+        }
+
+        // copy the surviving entries out as {keyHigh, keyLow, userId, issuedAt << 32 | expiresAt, role}
+        int keep = segment.live - expired;
+        long[] entries = new long[keep * 5];
+        int count = 0;
+        for (int index = 0; index < slotsPerSegment && count < keep; index++) {
+            int offset = index * SLOT_BYTES;
+            long expiresAt = Integer.toUnsignedLong(slots.getInt(offset + EXPIRES_AT));
+            if (slots.get(offset + STATE) == LIVE && expiresAt > nowSeconds) {
+                int base = count++ * 5;
+                entries[base] = slots.getLong(offset);
+                entries[base + 1] = slots.getLong(offset + 8);
+                entries[base + 2] = slots.getLong(offset + USER_ID);
+                entries[base + 3] = Integer.toUnsignedLong(slots.getInt(offset + ISSUED_AT)) << 32 | expiresAt;
+                entries[base + 4] = slots.get(offset + ROLE);
+            }
+        }
+
+        clear(segment);
+        for (int i = 0; i < keep; i++) {
+            int base = i * 5;
+            int index = (int) entries[base + 1] & slotMask;
+            while (slots.get(index * SLOT_BYTES + STATE) == LIVE) {
+                index = (index + 1) & slotMask;
+            }
+            writeSlot(slots, index * SLOT_BYTES, entries[base], entries[base + 1], entries[base + 2],
+                    (int) entries[base + 4], entries[base + 3] >>> 32, entries[base + 3] & 0xFFFFFFFFL);
+        }
+        segment.live = keep;
+        return expired;
+    }
+
+    private static void writeSlot(MappedByteBuffer slots, int offset, long keyHigh, long keyLow, long userId,
+                                  int roleOrdinal, long issuedAtSeconds, long expiresAtSeconds) {
+        slots.putLong(offset, keyHigh);
+        slots.putLong(offset + 8, keyLow);
+        slots.putLong(offset + USER_ID, userId);
+        slots.putInt(offset + ISSUED_AT, (int) issuedAtSeconds);
+        slots.putInt(offset + EXPIRES_AT, (int) expiresAtSeconds);
+        slots.put(offset + ROLE, (byte) roleOrdinal);
+        slots.put(offset + STATE, LIVE);
+    }
+
+    private void clear(Segment segment) {
+        MappedByteBuffer slots = segment.slots;
+        for (int offset = 0; offset < slotsPerSegment * SLOT_BYTES; offset += 8) {
+            slots.putLong(offset, 0L);
+        }
+        segment.live = 0;
+        segment.tombstones = 0;
+    }
+
+    private void countSlots(Segment segment) {
+        for (int index = 0; index < slotsPerSegment; index++) {
+            byte state = segment.slots.get(index * SLOT_BYTES + STATE);
+            if (state == LIVE) {
+                segment.live++;
+            } else if (state == TOMBSTONE) {
+                segment.tombstones++;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.demo1.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * ES256 signing keys identified by kid.
+ * Keys are read from a directory of PEM files: {kid}.pub (X.509 public key)
+ * and optionally {kid}.key (PKCS#8 private key). The active key signs new
+ * tokens; keys without a private part are kept for verification only, which
+ * is how a rotated-out key stays valid until its tokens expire. The directory
+ * is re-read periodically, so rotation does not need a restart.
+ * Without keys a single node signs with a key of its own, lost on restart; a
+ * clustered node (any cache.invalidation.transport) refuses to start instead,
+ * since the other nodes could not verify its tokens.
+ */
+@Component
+public class SigningKeyRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(SigningKeyRing.class);
+
+    public record ActiveKey(String kid, PrivateKey privateKey) {}
+
+    private record Snapshot(ActiveKey active, Map<String, PublicKey> publicKeys, byte[] jwks, String etag) {}
+
+    @Value("${jwt.signing.algorithm:HS256}")
+    private String algorithm;
+
+    @Value("${jwt.signing.key-dir:}")
+    private String keyDirectory;
+
+    @Value("${jwt.signing.active-kid:}")
+    private String configuredActiveKid;
+
+    @Value("${cache.invalidation.transport:none}")
+    private String transportType = "none";
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    void init() {
+        if (isAsymmetric()) {
+            reload();
+        }
+    }
+
+    public boolean isAsymmetric() {
+        return "ES256".equalsIgnoreCase(algorithm);
+    }
+
+    /**
+     * The key new tokens are signed with; kid and key always come from the same reload.
+     */
+    public ActiveKey getActiveKey() {
+        return snapshot.active();
+    }
+
+    public PublicKey getPublicKey(String kid) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.publicKeys().get(kid);
+    }
+
+    /**
+     * Serialized JWK set; empty when asymmetric signing is disabled.
+     */
+    public byte[] getJwks() {
+        Snapshot current = snapshot;
+        return current == null ? "{\"keys\":[]}".getBytes(StandardCharsets.UTF_8) : current.jwks();
+    }
+
+    public String getJwksEtag() {
+        Snapshot current = snapshot;
+        return current == null ? "\"empty\"" : current.etag();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.signing.reload-interval-ms:300000}", initialDelayString = "${jwt.signing.reload-interval-ms:300000}")
+    public void reload() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        try {
+            Snapshot loaded = StringUtils.hasText(keyDirectory) ? load(Paths.get(keyDirectory)) : null;
+            if (loaded == null) {
+                if (snapshot == null) {
+                    if (!"none".equalsIgnoreCase(transportType)) {
+                        throw new IllegalStateException("ES256 signing on several nodes needs jwt.signing.key-dir "
+                                + "with the shared keys; a per-node key would be rejected by every other node");
+                    }
+                    logger.warn("No ES256 keys configured, generating an ephemeral key; tokens will not survive a restart");
+                    snapshot = ephemeral();
+                }
+                return;
+            }
+            snapshot = loaded;
+        } catch (IOException | GeneralSecurityException e) {
+            if (snapshot == null) {
+                throw new IllegalStateException("Failed to load JWT signing keys from " + keyDirectory, e);
+            }
+            logger.error("Failed to reload JWT signing keys, keeping the current set", e);
+        }
+    }
+
+    private Snapshot load(Path directory) throws IOException, GeneralSecurityException {
+        KeyFactory keyFactory = KeyFactory.getInstance("EC");
+        TreeMap<String, PublicKey> publicKeys = new TreeMap<>();
+        TreeMap<String, PrivateKey> privateKeys = new TreeMap<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{pub,key}")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String kid = name.substring(0, name.lastIndexOf('.'));
+                byte[] der = readPem(file);
+                if (name.endsWith(".pub")) {
+                    publicKeys.put(kid, keyFactory.generatePublic(new X509EncodedKeySpec(der)));
+                } else {
+                    privateKeys.put(kid, keyFactory.generatePrivate(new PKCS8EncodedKeySpec(der)));
+                }
+            }
+        }
+        if (privateKeys.isEmpty()) {
+            return null;
+        }
+
+        String activeKid = StringUtils.hasText(configuredActiveKid)
+                ? configuredActiveKid
+                : privateKeys.lastKey();
+        PrivateKey activeKey = privateKeys.get(activeKid);
+        if (activeKey == null || !publicKeys.containsKey(activeKid)) {
+            throw new GeneralSecurityException("Active key " + activeKid + " needs both a .key and a .pub file");
+        }
+        return snapshot(activeKid, activeKey, publicKeys);
+    }
+
+    private Snapshot ephemeral() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyPair keyPair = generator.generateKeyPair();
+            String kid = "ephemeral-" + UUID.randomUUID().toString().substring(0, 8);
+            Map<String, PublicKey> publicKeys = new TreeMap<>();
+            publicKeys.put(kid, keyPair.getPublic());
+            return snapshot(kid, keyPair.getPrivate(), publicKeys);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("EC key generation is not available", e);
+        }
+    }
+
+    private Snapshot snapshot(String activeKid, PrivateKey activeKey, Map<String, PublicKey> publicKeys)
+            throws GeneralSecurityException {
+        byte[] jwks = toJwks(publicKeys);
+        String etag = "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(jwks), 0, 16) + "\"";
+        return new Snapshot(new ActiveKey(activeKid, activeKey), Map.copyOf(publicKeys), jwks, etag);
+    }
+
+    private static byte[] toJwks(Map<String, PublicKey> publicKeys) {
+        StringBuilder json = new StringBuilder("{\"keys\":[");
+        boolean first = true;
+        for (Map.Entry<String, PublicKey> entry : publicKeys.entrySet()) {
+            ECPublicKey key = (ECPublicKey) entry.getValue();
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"kty\":\"EC\",\"crv\":\"P-256\",\"use\":\"sig\",\"alg\":\"ES256\",\"kid\":\"")
+                    .append(entry.getKey())
+                    .append("\",\"x\":\"").append(coordinate(key.getW().getAffineX()))
+                    .append("\",\"y\":\"").append(coordinate(key.getW().getAffineY()))
+                    .append("\"}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unsigned, left-padded 32-byte big-endian encoding required by RFC 7518.
+     */
+    private static String coordinate(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    private static byte[] readPem(Path file) throws IOException {
+        StringBuilder base64 = new StringBuilder();
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            if (!line.startsWith("-----")) {
+                base64.append(line.trim());
+            }
+        }
+        return Base64.getDecoder().decode(base64.toString());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo1.security;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Token buckets keyed by string, held in a fixed number of lock-striped,
+ * access-ordered maps. Each stripe is capped, so memory stays bounded no
+ * matter how many distinct keys are seen. Only buckets that have refilled
+ * completely are dropped to make room, since dropping any other would reset
+ * it; while a stripe is full of partly drained buckets, new keys are not
+ * tracked at all and {@link #tryConsume} reports {@link #UNTRACKED}, leaving
+ * the caller to fall back on a coarser limit. Flooding the table therefore
+ * neither frees the keys it pushes out nor locks out the keys that arrive
+ * after it.
+ */
+public class TokenBucketTable {
+
+    /**
+     * Returned by {@link #tryConsume} when the key's stripe is full of buckets still in use.
+     */
+    public static final long UNTRACKED = -1;
+
+    private static final class Bucket {
+        double tokens;
+        long lastRefillNanos;
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        private final int maxEntries;
+
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long idleNanos;
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity         burst size
+     * @param refillPerSecond  sustained rate
+     * @param maxEntries       upper bound on tracked keys
+     * @param stripeCount      number of independently locked stripes
+     */
+    public TokenBucketTable(double capacity, double refillPerSecond, int maxEntries, int stripeCount) {
+        if (capacity < 1 || refillPerSecond <= 0 || maxEntries < stripeCount || stripeCount < 1) {
+            throw new IllegalArgumentException("Invalid token bucket configuration");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        // once a bucket has been idle long enough to refill completely it carries no state
+        this.idleNanos = (long) (capacity / tokensPerNano);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxEntries / stripeCount);
+        }
+    }
+
+    /**
+     * Take one token for the key.
+     * Returns 0 when a token was available, {@link #UNTRACKED} when the key has no
+     * bucket and there is no room for one, otherwise the nanoseconds until a token will be.
+     */
+    public long tryConsume(String key, long nowNanos) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null && stripe.size() >= stripe.maxEntries) {
+                Iterator<Bucket> eldest = stripe.values().iterator();
+                if (nowNanos - eldest.next().lastRefillNanos >= idleNanos) {
+                    eldest.remove();
+                } else {
+                    return UNTRACKED;
+                }
+            }
+            if (bucket == null) {
+                bucket = new Bucket();
+                bucket.tokens = capacity;
+                bucket.lastRefillNanos = nowNanos;
+                stripe.put(key, bucket);
+            } else {
+                long elapsed = nowNanos - bucket.lastRefillNanos;
+                if (elapsed > 0) {
+                    bucket.tokens = Math.min(capacity, bucket.tokens + elapsed * tokensPerNano);
+                    bucket.lastRefillNanos = nowNanos;
+                }
+            }
+
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+        }
+    }
+
+    /**
+     * Drop buckets that have been idle long enough to be full again.
+     */
+    public void evictIdle(long nowNanos) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Bucket> iterator = stripe.values().iterator();
+                while (iterator.hasNext()) {
+                    // access order: the first non-idle bucket ends the scan
+                    if (nowNanos - iterator.next().lastRefillNanos < idleNanos) {
+                        break;
+                    }
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+}
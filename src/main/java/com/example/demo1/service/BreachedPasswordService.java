@@ -0,0 +1,115 @@
+package com.example.demo1.service;
+
+import com.example.demo1.security.BreachedPasswordFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects passwords found in a breach corpus, using the memory-mapped filter built offline by
+ * {@link com.example.demo1.security.BreachedPasswordFilterBuilder}. A probe is one SHA-1 and a
+ * cache line read, so it runs before any bcrypt work.
+ *
+ * <p>The file is checked for replacement every reload interval and swapped in without a restart.
+ * Without a usable file every password passes: registration must not depend on the filter.
+ */
+@Service
+public class BreachedPasswordService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BreachedPasswordService.class);
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Empty disables the check
+     */
+    @Value("${password.breach-filter.path:}")
+    private String filterPath;
+
+    private volatile BreachedPasswordFilter filter;
+    private FileTime loadedModified;
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        reload();
+        if (meterRegistry != null) {
+            Gauge.builder("password.breach-filter.entries", this,
+                    service -> service.filter == null ? 0 : service.filter.getEntryCount()).register(meterRegistry);
+            FunctionCounter.builder("password.breached.rejected", rejected, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        BreachedPasswordFilter current = filter;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public boolean isBreached(String password) {
+        BreachedPasswordFilter current = filter;
+        if (current == null || password == null) {
+            return false;
+        }
+        boolean breached = current.mightContain(password);
+        if (breached) {
+            rejected.increment();
+        }
+        return breached;
+    }
+
+    public boolean isEnabled() {
+        return filter != null;
+    }
+
+    @Scheduled(fixedDelayString = "${password.breach-filter.reload-interval-ms:300000}",
+            initialDelayString = "${password.breach-filter.reload-interval-ms:300000}")
+    public synchronized void reload() {
+        if (filterPath == null || filterPath.isBlank()) {
+            return;
+        }
+        Path path = Paths.get(filterPath);
+        try {
+            if (!Files.exists(path)) {
+                if (loadedModified == null) {
+                    logger.warn("Breached password filter {} not found; passwords are not checked against breaches", path);
+                    loadedModified = FileTime.fromMillis(0);
+                }
+                return;
+            }
+            FileTime modified = Files.getLastModifiedTime(path);
+            if (modified.equals(loadedModified)) {
+                return;
+            }
+            BreachedPasswordFilter fresh = BreachedPasswordFilter.open(path);
+            BreachedPasswordFilter previous = filter;
+            filter = fresh;
+            loadedModified = modified;
+            if (previous != null) {
+                previous.close();
+            }
+            logger.info("Breached password filter loaded: {} entries, {} MB, expected false-positive rate {}",
+                    fresh.getEntryCount(), fresh.getSizeBytes() >> 20, fresh.expectedFalsePositiveRate());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load breached password filter {}, keeping the current one", path, e);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.demo1.service;
 
 
+import com.example.demo1.cache.UserCache;
+import com.example.demo1.cache.UserDirectory;
 import com.example.demo1.model.User;
-import com.example.demo1.repository.UserRepository;
+import com.example.demo1.repository.UserStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,18 +13,64 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.Optional;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    /**
+     * Thrown where UserDetailsService has to throw. Unknown users are what token abuse looks like,
+     * so this is one shared instance with no stack trace and no email in the message.
+     */
+    public static final UsernameNotFoundException USER_NOT_FOUND = new UsernameNotFoundException("User not found") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    @Autowired
+    private UserLookupCoalescer userLookupCoalescer;
+
+    @Autowired
+    private UserStore userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
     @Autowired
-    private UserRepository userRepository;
+    private UserDirectory userDirectory;
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        return findByEmail(email).orElseThrow(() -> USER_NOT_FOUND);
+    }
+
+    /**
+     * For compact tokens, which identify the user by id rather than email
+     */
+    public UserDetails loadUserById(Long id) throws UsernameNotFoundException {
+        return findById(id).orElseThrow(() -> USER_NOT_FOUND);
+    }
+
+    /**
+     * Like loadUserByUsername, but an unknown user is an empty result instead of an exception
+     */
+    public Optional<UserDetails> findByEmail(String email) {
+        Optional<User> found = userDirectory.isLoaded()
+                ? userDirectory.findByEmail(email)
+                : userCache.getByEmail(email, userLookupCoalescer::findByEmail);
+        return found.map(this::toUserDetails);
+    }
+
+    public Optional<UserDetails> findById(Long id) {
+        Optional<User> found = userDirectory.isLoaded()
+                ? userDirectory.findById(id)
+                : userCache.getById(id, userRepository::findById);
+        return found.map(this::toUserDetails);
+    }
 
+    private UserDetails toUserDetails(User user) {
         return new org.springframework.security.core.userdetails.User(
                 user.getEmail(),
                 user.getPassword(),
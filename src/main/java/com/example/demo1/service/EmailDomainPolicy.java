@@ -0,0 +1,96 @@
+package com.example.demo1.service;
+
+import com.example.demo1.security.BlockedDomainSet;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Refuses sign-ups and email changes to disposable or otherwise blocked domains, read from a
+ * file of one domain per line. A replaced file is loaded into a fresh {@link BlockedDomainSet}
+ * and swapped in whole, so lookups never lock and never see a half-built set.
+ * Without a file nothing is blocked.
+ */
+@Service
+public class EmailDomainPolicy {
+
+    public static final String BLOCKED_DOMAIN = "Email addresses from this domain are not accepted";
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDomainPolicy.class);
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Empty disables the check
+     */
+    @Value("${email.domain-blocklist.path:}")
+    private String blocklistPath;
+
+    private volatile BlockedDomainSet blocked = BlockedDomainSet.EMPTY;
+    private FileTime loadedModified;
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        reload();
+        if (meterRegistry != null) {
+            Gauge.builder("email.domain-blocklist.size", this, policy -> policy.blocked.size()).register(meterRegistry);
+            FunctionCounter.builder("email.domain.rejected", rejected, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    public boolean isBlocked(String email) {
+        boolean isBlocked = blocked.isBlocked(email);
+        if (isBlocked) {
+            rejected.increment();
+        }
+        return isBlocked;
+    }
+
+    public int getBlockedDomainCount() {
+        return blocked.size();
+    }
+
+    @Scheduled(fixedDelayString = "${email.domain-blocklist.reload-interval-ms:60000}",
+            initialDelayString = "${email.domain-blocklist.reload-interval-ms:60000}")
+    public synchronized void reload() {
+        if (blocklistPath == null || blocklistPath.isBlank()) {
+            return;
+        }
+        Path path = Paths.get(blocklistPath);
+        try {
+            if (!Files.exists(path)) {
+                if (loadedModified == null) {
+                    logger.warn("Email domain blocklist {} not found; no domains are blocked", path);
+                    loadedModified = FileTime.fromMillis(0);
+                }
+                return;
+            }
+            FileTime modified = Files.getLastModifiedTime(path);
+            if (modified.equals(loadedModified)) {
+                return;
+            }
+            BlockedDomainSet fresh = BlockedDomainSet.load(path);
+            blocked = fresh;
+            loadedModified = modified;
+            logger.info("Email domain blocklist loaded: {} domains", fresh.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load email domain blocklist {}, keeping the current one", path, e);
+        }
+    }
+}
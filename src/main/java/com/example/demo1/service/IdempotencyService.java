@@ -0,0 +1,424 @@
+package com.example.demo1.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Answers requests retried with the same {@code Idempotency-Key} with the first response
+ * instead of running them again.
+ *
+ * <p>Responses are keyed by an HMAC of the endpoint, the client's key and the request
+ * fingerprint, so a key reused with another body is another request. Credentials are removed
+ * from a response before it is kept, so neither store ever holds a usable token: a replayed
+ * registration carries the user but no tokens. An endpoint can pass a replay function that
+ * rebuilds a successful response from the kept one instead, as login does to mint fresh tokens
+ * without hashing the password again. A duplicate arriving while the original still runs waits
+ * for its response, like {@link UserLookupCoalescer} does for lookups.
+ *
+ * <p>Responses are kept for {@code ttl-ms} in a bounded in-memory LRU. With
+ * {@code idempotency.store=jdbc} they also go to the shared {@code idempotency_keys} table
+ * ({@link com.example.demo1.model.IdempotencyKey}),
+ * where a pending row claims the key for the cluster and duplicates on other nodes poll it.
+ * Server errors and throttled requests are not kept: retrying those is the point.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final Set<String> CREDENTIAL_FIELDS = Set.of("token", "refreshToken", "accessToken", "password");
+    // status 0 marks a claim by the node running the original request
+    private static final String CLAIM_SQL = "INSERT INTO idempotency_keys (id, status, expires_at) VALUES (?, 0, ?)";
+    private static final String COMPLETE_SQL = "UPDATE idempotency_keys SET status = ?, body = ?, expires_at = ? WHERE id = ?";
+    private static final String SELECT_SQL = "SELECT status, body FROM idempotency_keys WHERE id = ? AND expires_at > ?";
+    private static final String RELEASE_SQL = "DELETE FROM idempotency_keys WHERE id = ? AND status = 0";
+    private static final String EXPIRE_SQL = "DELETE FROM idempotency_keys WHERE id = ? AND expires_at <= ?";
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE expires_at <= ?";
+    private static final long POLL_INTERVAL_MS = 25;
+
+    record StoredResponse(int status, byte[] body) {
+        boolean pending() {
+            return status == 0;
+        }
+    }
+
+    private record Entry(StoredResponse response, long expiresAt) {
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Key for the entry ids, separate from the token signing key
+     */
+    @Value("${idempotency.hmac-secret:}")
+    private String hmacSecret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${idempotency.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * memory (this node only) or jdbc (shared idempotency_keys table)
+     */
+    @Value("${idempotency.store:memory}")
+    private String store;
+
+    @Value("${idempotency.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private boolean persistent;
+    private SecretKeySpec macKey;
+
+    @PostConstruct
+    void init() {
+        if (enabled && (hmacSecret == null || hmacSecret.isBlank())) {
+            throw new IllegalStateException("idempotency.hmac-secret must be set");
+        }
+        if (enabled && hmacSecret.equals(jwtSecret)) {
+            throw new IllegalStateException("idempotency.hmac-secret must differ from jwt.secret");
+        }
+        if (enabled) {
+            macKey = new SecretKeySpec(hmacSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        }
+        persistent = "jdbc".equalsIgnoreCase(store);
+        if (meterRegistry != null) {
+            FunctionCounter.builder("idempotency.replayed", replayed, LongAdder::sum)
+                    .description("Requests answered with the stored response of an earlier request")
+                    .register(meterRegistry);
+            FunctionCounter.builder("idempotency.executed", executed, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Runs the action once per key and fingerprint; retries within the TTL get its response back.
+     *
+     * @param scope       the endpoint, so one key can be used with several of them
+     * @param key         the Idempotency-Key header; null runs the action as usual
+     * @param fingerprint the request fields that must match for a retry to count as a duplicate
+     */
+    public ResponseEntity<?> execute(String scope, String key, Supplier<ResponseEntity<?>> action, String... fingerprint) {
+        return execute(scope, key, action, null, fingerprint);
+    }
+
+    /**
+     * Like {@link #execute(String, String, Supplier, String...)}, but a kept 200 response is handed
+     * to {@code rebuild} with its stored body instead of being sent back as it is.
+     *
+     * @param rebuild builds the response for a duplicate from the stored, credential-free body
+     */
+    public ResponseEntity<?> execute(String scope, String key, Supplier<ResponseEntity<?>> action,
+                                     Function<byte[], ResponseEntity<?>> rebuild, String... fingerprint) {
+        if (!enabled || key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters")
+            );
+        }
+
+        String id = entryId(scope, key, fingerprint);
+        StoredResponse stored = lookup(id);
+        if (stored != null) {
+            return replay(stored, rebuild);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.putIfAbsent(id, mine);
+        if (existing != null) {
+            return replay(await(existing), rebuild);
+        }
+
+        boolean claimed = false;
+        try {
+            // the original may have finished between the lookup and putIfAbsent
+            stored = lookup(id);
+            if (stored == null && persistent) {
+                claimed = claim(id);
+                if (!claimed) {
+                    stored = awaitRow(id);
+                }
+            }
+            if (stored != null || (persistent && !claimed)) {
+                mine.complete(stored);
+                return replay(stored, rebuild);
+            }
+
+            executed.increment();
+            ResponseEntity<?> response = action.get();
+            stored = new StoredResponse(response.getStatusCode().value(), serialize(response.getBody()));
+            if (keep(stored.status())) {
+                remember(id, stored);
+            } else if (claimed) {
+                release(id);
+            }
+            mine.complete(stored);
+            return response;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            if (claimed) {
+                release(id);
+            }
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        }
+        if (enabled && persistent) {
+            try {
+                jdbcTemplate.update(PURGE_SQL, now);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to purge expired idempotency keys", e);
+            }
+        }
+    }
+
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    private StoredResponse lookup(String id) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    return entry.response();
+                }
+                entries.remove(id);
+            }
+        }
+        if (!persistent) {
+            return null;
+        }
+        StoredResponse stored = select(id, now);
+        if (stored == null || stored.pending()) {
+            return null;
+        }
+        // the row's own expiry is not read back; a local copy for a full TTL is close enough
+        synchronized (entries) {
+            entries.put(id, new Entry(stored, now + ttlMs));
+        }
+        return stored;
+    }
+
+    private void remember(String id, StoredResponse stored) {
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        synchronized (entries) {
+            entries.put(id, new Entry(stored, expiresAt));
+        }
+        if (persistent) {
+            try {
+                jdbcTemplate.update(COMPLETE_SQL, stored.status(), stored.body(), expiresAt, id);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to store idempotent response; other nodes will run retries again", e);
+            }
+        }
+    }
+
+    /**
+     * Claims the key for the cluster with a pending row; false when another node holds it.
+     * A claim outlives its node only for the wait timeout, after which another node may
+     * take the request over. Without the table the request runs unclaimed.
+     */
+    private boolean claim(String id) {
+        long now = System.currentTimeMillis();
+        try {
+            jdbcTemplate.update(EXPIRE_SQL, id, now);
+            jdbcTemplate.update(CLAIM_SQL, id, now + waitTimeoutMs);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        } catch (DataAccessException e) {
+            logger.warn("Failed to claim idempotency key; running the request on this node only", e);
+            return true;
+        }
+    }
+
+    private void release(String id) {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, id);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release idempotency key claim", e);
+        }
+    }
+
+    /**
+     * Waits for the node holding the claim; null when it gave up without a response to keep.
+     */
+    private StoredResponse awaitRow(String id) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            StoredResponse stored = select(id, System.currentTimeMillis());
+            if (stored == null || !stored.pending()) {
+                return stored;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private StoredResponse select(String id, long now) {
+        List<StoredResponse> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new StoredResponse(rs.getInt(1), rs.getBytes(2)), id, now);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> future) {
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // the original failed or is still running; the client retries later
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, Function<byte[], ResponseEntity<?>> rebuild) {
+        if (stored == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                    Map.of("success", false, "message", "A request with this " + HEADER + " is still in progress")
+            );
+        }
+        replayed.increment();
+        if (rebuild != null && stored.status() == HttpStatus.OK.value()) {
+            ResponseEntity<?> rebuilt = rebuild.apply(stored.body());
+            return ResponseEntity.status(rebuilt.getStatusCode())
+                    .headers(rebuilt.getHeaders())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(rebuilt.getBody());
+        }
+        return ResponseEntity.status(stored.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body());
+    }
+
+    private static boolean keep(int status) {
+        return status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    /**
+     * The body as JSON without credential fields, which must not outlive the original response
+     */
+    private byte[] serialize(Object body) {
+        try {
+            JsonNode json = objectMapper.valueToTree(body);
+            if (json instanceof ObjectNode object) {
+                object.remove(CREDENTIAL_FIELDS);
+            }
+            return objectMapper.writeValueAsBytes(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize response", e);
+        }
+    }
+
+    private String entryId(String scope, String key, String... fingerprint) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(macKey);
+            update(mac, scope);
+            update(mac, key);
+            for (String part : fingerprint) {
+                update(mac, part);
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    // length-prefixed, so ("ab", "c") and ("a", "bc") differ
+    private static void update(Mac mac, String part) {
+        if (part == null) {
+            mac.update(ByteBuffer.allocate(4).putInt(-1).array());
+            return;
+        }
+        byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+        mac.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        mac.update(bytes);
+    }
+}
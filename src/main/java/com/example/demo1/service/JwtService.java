@@ -1,15 +1,24 @@
 package com.example.demo1.service;
 
+import com.example.demo1.model.User;
+import com.example.demo1.security.CompactTokenCodec;
+import com.example.demo1.security.SigningKeyRing;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.PublicKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Service
@@ -21,8 +30,59 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private long expiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.compact.enabled:false}")
+    private boolean compactEnabled;
+
+    /**
+     * With ES256 signing, keep accepting HS256 tokens without a kid; on only for the switch-over
+     */
+    @Value("${jwt.accept-legacy-hs256:false}")
+    private boolean acceptLegacyHs256;
+
+    @Autowired
+    private SigningKeyRing signingKeyRing;
+
+    @Autowired
+    private SessionService sessionService;
+
+    private SecretKey hmacKey;
+    private CompactTokenCodec compactTokenCodec;
+    // built once: JwtParser is immutable and thread-safe, building it is not cheap
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        hmacKey = Keys.hmacShaKeyFor(secret.getBytes());
+        compactTokenCodec = new CompactTokenCodec(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveKey(header);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Tokens carrying a kid were signed by the key ring; tokens without one are
+     * HS256 tokens. Once ES256 signs, those are accepted only while
+     * jwt.accept-legacy-hs256 is set, so switching algorithms does not log
+     * everybody out but the shared-secret path does not stay open for good.
+     */
+    private Key resolveKey(JwsHeader<?> header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            if (signingKeyRing.isAsymmetric() && !acceptLegacyHs256) {
+                throw new UnsupportedJwtException("HS256 tokens are no longer accepted");
+            }
+            return hmacKey;
+        }
+        PublicKey publicKey = signingKeyRing.getPublicKey(kid);
+        if (publicKey == null) {
+            throw new UnsupportedJwtException("Unknown signing key " + kid);
+        }
+        return publicKey;
     }
 
     public String extractUsername(String token) {
@@ -38,18 +98,55 @@ public class JwtService {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Parse and verify the token once, for callers that need several claims.
+     * Compact tokens and opaque sessions carry the user id in
+     * {@link CompactTokenCodec#USER_ID_CLAIM} and have no subject.
+     */
+    public Claims parseClaims(String token) {
+        if (SessionService.isOpaque(token)) {
+            return sessionService.resolve(token);
+        }
+        if (CompactTokenCodec.isCompact(token)) {
+            return compactTokenCodec.decode(token);
+        }
+        return extractAllClaims(token);
+    }
+
+    /**
+     * User id of a compact token or session, null for JWTs (which identify the user by email)
+     */
+    public static Long getUserId(Claims claims) {
+        return claims.get(CompactTokenCodec.USER_ID_CLAIM, Long.class);
+    }
+
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     private Boolean isTokenExpired(String token) {
         return extractExpiration(token).before(new Date());
     }
 
+    /**
+     * Token for a stored user: an opaque session, the compact profile or a JWT,
+     * depending on which modes are enabled
+     */
+    public String generateToken(User user) {
+        if (sessionService.isEnabled() && user.getId() != null) {
+            Optional<String> session = sessionService.createSession(user, expiration);
+            if (session.isPresent()) {
+                return session.get();
+            }
+        }
+        if (compactEnabled && user.getId() != null) {
+            long now = System.currentTimeMillis();
+            return compactTokenCodec.encode(user.getId(), user.getRole(), now / 1000,
+                    (now + expiration) / 1000, UUID.randomUUID());
+        }
+        return generateToken(user.getEmail(), user.getRole().name());
+    }
+
     public String generateToken(String username, String role) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("role", role);
@@ -57,17 +154,35 @@ public class JwtService {
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(new Date(System.currentTimeMillis() + expiration));
+
+        if (signingKeyRing.isAsymmetric()) {
+            SigningKeyRing.ActiveKey activeKey = signingKeyRing.getActiveKey();
+            return builder
+                    .setHeaderParam(JwsHeader.KEY_ID, activeKey.kid())
+                    .signWith(activeKey.privateKey(), SignatureAlgorithm.ES256)
+                    .compact();
+        }
+        return builder.signWith(hmacKey, SignatureAlgorithm.HS256).compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         final String username = extractUsername(token);
         return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
     }
-}
\ No newline at end of file
+
+    /**
+     * JWT subjects must match the user; compact tokens were resolved to the user by id.
+     */
+    public boolean validateClaims(Claims claims, UserDetails userDetails) {
+        boolean sameUser = claims.getSubject() != null
+                ? claims.getSubject().equals(userDetails.getUsername())
+                : getUserId(claims) != null;
+        return sameUser && claims.getExpiration().after(new Date());
+    }
+}
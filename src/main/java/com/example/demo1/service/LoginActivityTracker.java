@@ -0,0 +1,165 @@
+package com.example.demo1.service;
+
+import com.example.demo1.shard.ShardedUserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects last-login timestamps and login counts in memory and writes them
+ * with batched UPDATE statements, so repeated logins of the same user between
+ * two flushes cost a single write.
+ */
+@Component
+public class LoginActivityTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginActivityTracker.class);
+
+    private static final String FLUSH_SQL =
+            "UPDATE users SET login_count = login_count + ?, "
+                    + "last_login_at = GREATEST(COALESCE(last_login_at, ?), ?) WHERE id = ?";
+
+    /**
+     * Only mutated inside ConcurrentHashMap.compute, which locks the entry's bin;
+     * once removed from the map an instance is never touched by recorders again.
+     */
+    private static final class PendingLogins {
+        long count;
+        long lastLoginMillis;
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Present with sharding.enabled; the users are then on the shards, not in the primary database
+     */
+    @Autowired(required = false)
+    private ShardedUserRepository shardedUsers;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${login.tracking.max-pending:100000}")
+    private int maxPending;
+
+    @Value("${login.tracking.batch-size:500}")
+    private int batchSize;
+
+    private final ConcurrentHashMap<Long, PendingLogins> pending = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    void registerMetrics() {
+        if (meterRegistry != null) {
+            Gauge.builder("login.tracking.pending", pending, ConcurrentHashMap::size).register(meterRegistry);
+            FunctionCounter.builder("login.tracking.dropped", dropped, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    public void recordLogin(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (pending.size() >= maxPending && !pending.containsKey(userId)) {
+            dropped.increment();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        pending.compute(userId, (id, logins) -> {
+            if (logins == null) {
+                logins = new PendingLogins();
+            }
+            logins.count++;
+            logins.lastLoginMillis = Math.max(logins.lastLoginMillis, now);
+            return logins;
+        });
+    }
+
+    /**
+     * Logins recorded since the last flush, as {count, lastLoginMillis}; null when none.
+     */
+    public long[] pendingFor(Long userId) {
+        long[] snapshot = new long[2];
+        PendingLogins logins = pending.computeIfPresent(userId, (id, current) -> {
+            snapshot[0] = current.count;
+            snapshot[1] = current.lastLoginMillis;
+            return current;
+        });
+        return logins == null ? null : snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${login.tracking.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        List<Long> batchIds = new ArrayList<>(batchSize);
+
+        for (Long userId : pending.keySet()) {
+            PendingLogins logins = pending.remove(userId);
+            if (logins == null) {
+                continue;
+            }
+            Timestamp lastLogin = Timestamp.from(Instant.ofEpochMilli(logins.lastLoginMillis));
+            batch.add(new Object[]{logins.count, lastLogin, lastLogin, userId});
+            batchIds.add(userId);
+
+            if (batch.size() >= batchSize) {
+                writeBatch(batch, batchIds);
+                batch = new ArrayList<>(batchSize);
+                batchIds = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, batchIds);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void writeBatch(List<Object[]> batch, List<Long> batchIds) {
+        try {
+            if (shardedUsers != null) {
+                shardedUsers.recordLogins(batch);
+            } else {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to flush login activity for {} users, will retry", batch.size(), e);
+            for (int i = 0; i < batch.size(); i++) {
+                Object[] row = batch.get(i);
+                requeue(batchIds.get(i), (Long) row[0], ((Timestamp) row[1]).getTime());
+            }
+        }
+    }
+
+    private void requeue(Long userId, long count, long lastLoginMillis) {
+        pending.compute(userId, (id, logins) -> {
+            if (logins == null) {
+                logins = new PendingLogins();
+            }
+            logins.count += count;
+            logins.lastLoginMillis = Math.max(logins.lastLoginMillis, lastLoginMillis);
+            return logins;
+        });
+    }
+}
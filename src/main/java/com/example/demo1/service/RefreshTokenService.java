@@ -0,0 +1,171 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.RefreshToken;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.RefreshTokenRepository;
+import com.example.demo1.repository.UserStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Rotating opaque refresh tokens, so that renewing an access token never
+ * needs the password encoder.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int TOKEN_BYTES = 32;
+
+    public record Rotation(User user, String refreshToken) {}
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserStore userRepository;
+
+    /**
+     * Key for the stored token hashes; kept apart from jwt.secret so a leak of one does not expose the other
+     */
+    @Value("${refresh.hmac-secret:}")
+    private String hmacSecret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${refresh.expiration-ms:2592000000}")
+    private long slidingLifetimeMs;
+
+    @Value("${refresh.max-lifetime-ms:7776000000}")
+    private long maxLifetimeMs;
+
+    @Value("${refresh.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    @PostConstruct
+    void init() {
+        if (hmacSecret == null || hmacSecret.isBlank()) {
+            throw new IllegalStateException("refresh.hmac-secret must be set");
+        }
+        if (hmacSecret.equals(jwtSecret)) {
+            throw new IllegalStateException("refresh.hmac-secret must differ from jwt.secret");
+        }
+    }
+
+    /**
+     * Start a new token family for the user and return the opaque token.
+     */
+    public String issue(User user) {
+        Instant now = Instant.now();
+        Instant familyExpiresAt = now.plusMillis(maxLifetimeMs);
+        return store(user.getId(), UUID.randomUUID().toString(), now, familyExpiresAt);
+    }
+
+    /**
+     * Exchange a refresh token for a new one in the same family.
+     * Empty when the token is unknown, expired or revoked; presenting an
+     * already used token revokes the whole family.
+     */
+    public Optional<Rotation> rotate(String rawToken) {
+        Optional<RefreshToken> found = refreshTokenRepository.findByTokenHash(hash(rawToken));
+        if (found.isEmpty() || found.get().isRevoked()) {
+            return Optional.empty();
+        }
+
+        RefreshToken token = found.get();
+        Instant now = Instant.now();
+        if (token.getExpiresAt().isBefore(now)) {
+            return Optional.empty();
+        }
+        if (token.isUsed() || refreshTokenRepository.markUsed(token.getId()) == 0) {
+            logger.warn("Refresh token reuse detected, revoking family {}", token.getFamilyId());
+            refreshTokenRepository.revokeFamily(token.getFamilyId());
+            return Optional.empty();
+        }
+
+        Optional<User> user = userRepository.findById(token.getUserId());
+        if (user.isEmpty()) {
+            refreshTokenRepository.revokeFamily(token.getFamilyId());
+            return Optional.empty();
+        }
+
+        String next = store(token.getUserId(), token.getFamilyId(), now, token.getFamilyExpiresAt());
+        return Optional.of(new Rotation(user.get(), next));
+    }
+
+    /**
+     * Revoke the family the token belongs to (logout).
+     */
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId()));
+    }
+
+    public void revokeAllForUser(Long userId) {
+        refreshTokenRepository.revokeAllForUser(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${refresh.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = refreshTokenRepository.deleteExpiredBatch(now, purgeBatchSize);
+            purged += deleted;
+        } while (deleted == purgeBatchSize);
+
+        if (purged > 0) {
+            logger.debug("Purged {} expired refresh tokens", purged);
+        }
+    }
+
+    private String store(Long userId, String familyId, Instant now, Instant familyExpiresAt) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Instant expiresAt = now.plusMillis(slidingLifetimeMs);
+        if (expiresAt.isAfter(familyExpiresAt)) {
+            expiresAt = familyExpiresAt;
+        }
+        refreshTokenRepository.save(new RefreshToken(hash(rawToken), familyId, userId, expiresAt, familyExpiresAt));
+        return rawToken;
+    }
+
+    private String hash(String rawToken) {
+        Mac mac = macs.get();
+        return HexFormat.of().formatHex(mac.doFinal(rawToken.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(hmacSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.security.CompactTokenCodec;
+import com.example.demo1.security.MappedSessionStore;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Opaque session tokens ({@code s1.<random>}) resolved from a memory-mapped
+ * session store instead of being parsed. The store is keyed by a SHA-256 digest
+ * of the token, so the file never holds usable tokens.
+ * Resolved sessions are exposed as Claims shaped like compact tokens: the user id
+ * in {@link CompactTokenCodec#USER_ID_CLAIM}, no subject and no jti.
+ *
+ * <p>The store is a local file, so a session only exists on the node that issued it
+ * and a logout only ends it there. With more than one node the load balancer must keep
+ * each client on one node (sticky sessions), or opaque sessions must stay disabled.
+ */
+@Service
+public class SessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionService.class);
+    private static final String PREFIX = "s1.";
+    private static final int TOKEN_BYTES = 16;
+    private static final Role[] ROLES = Role.values();
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${session.opaque.enabled:false}")
+    private boolean enabled;
+
+    @Value("${session.store.path:data/sessions.bin}")
+    private String storePath;
+
+    @Value("${session.store.capacity:1048576}")
+    private int capacity;
+
+    @Value("${session.store.segments:64}")
+    private int segments;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(SessionService::createDigest);
+
+    private MappedSessionStore store;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        store = new MappedSessionStore(Paths.get(storePath), capacity, segments);
+        logger.info("Session store opened with {} live sessions", store.size());
+        if (meterRegistry != null) {
+            Gauge.builder("session.store.live", store, MappedSessionStore::size).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isOpaque(String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    /**
+     * New session for the user; empty when the store has no room left.
+     */
+    public Optional<String> createSession(User user, long lifetimeMs) {
+        byte[] random = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(random);
+        String token = PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+
+        long now = System.currentTimeMillis() / 1000;
+        ByteBuffer key = digest(token);
+        boolean stored = store.put(key.getLong(0), key.getLong(8), user.getId(), user.getRole().ordinal(),
+                now, now + lifetimeMs / 1000, now);
+        if (!stored) {
+            logger.warn("Session store is full, falling back to signed tokens");
+            return Optional.empty();
+        }
+        return Optional.of(token);
+    }
+
+    /**
+     * @throws MalformedJwtException when the session does not exist
+     * @throws ExpiredJwtException   when the session has expired
+     */
+    public Claims resolve(String token) {
+        if (store == null) {
+            throw new MalformedJwtException("Opaque sessions are disabled");
+        }
+        ByteBuffer key = digest(token);
+        MappedSessionStore.Entry entry = store.get(key.getLong(0), key.getLong(8));
+        if (entry == null || entry.roleOrdinal() >= ROLES.length) {
+            throw new MalformedJwtException("Unknown session");
+        }
+
+        Claims claims = Jwts.claims();
+        claims.put(CompactTokenCodec.USER_ID_CLAIM, entry.userId());
+        claims.put("role", ROLES[entry.roleOrdinal()].name());
+        claims.setIssuedAt(new Date(entry.issuedAtSeconds() * 1000));
+        claims.setExpiration(new Date(entry.expiresAtSeconds() * 1000));
+        if (entry.expiresAtSeconds() * 1000 <= System.currentTimeMillis()) {
+            throw new ExpiredJwtException(null, claims, "Session expired");
+        }
+        return claims;
+    }
+
+    /**
+     * End the session (logout); false when it did not exist.
+     */
+    public boolean remove(String token) {
+        if (store == null) {
+            return false;
+        }
+        ByteBuffer key = digest(token);
+        return store.remove(key.getLong(0), key.getLong(8));
+    }
+
+    @Scheduled(fixedDelayString = "${session.store.sweep-interval-ms:60000}")
+    public void sweep() {
+        if (store == null) {
+            return;
+        }
+        int removed = store.sweep(System.currentTimeMillis() / 1000);
+        store.force();
+        if (removed > 0) {
+            logger.debug("Swept {} expired sessions", removed);
+        }
+    }
+
+    private ByteBuffer digest(String token) {
+        return ByteBuffer.wrap(digests.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.IntrospectionResult;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserStore;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch token introspection for gateways.
+ * Signature, expiry and revocation are checked in parallel chunks; the users
+ * behind all valid tokens are then loaded with one IN query (two when the batch
+ * mixes JWTs and compact tokens), however many tokens share a subject.
+ */
+@Service
+public class TokenIntrospectionService {
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private UserStore userRepository;
+
+    @Value("${introspect.parallelism:0}")
+    private int parallelism;
+
+    @Value("${introspect.chunk-size:32}")
+    private int chunkSize;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "introspect-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One result per token, in request order.
+     */
+    public List<IntrospectionResult> introspect(List<String> tokens) {
+        int count = tokens.size();
+        Claims[] claims = new Claims[count];
+        IntrospectionResult[] results = new IntrospectionResult[count];
+
+        if (count <= chunkSize) {
+            verifyRange(tokens, claims, results, 0, count);
+        } else {
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (int from = 0; from < count; from += chunkSize) {
+                int start = from;
+                int end = Math.min(count, from + chunkSize);
+                chunks.add(CompletableFuture.runAsync(() -> verifyRange(tokens, claims, results, start, end), executor));
+            }
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+        }
+
+        Set<String> subjects = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (Claims tokenClaims : claims) {
+            if (tokenClaims == null) {
+                continue;
+            }
+            if (tokenClaims.getSubject() != null) {
+                subjects.add(normalize(tokenClaims.getSubject()));
+            } else {
+                userIds.add(JwtService.getUserId(tokenClaims));
+            }
+        }
+        Map<String, User> usersByEmail = new HashMap<>();
+        if (!subjects.isEmpty()) {
+            for (User user : userRepository.findByEmailIn(subjects)) {
+                usersByEmail.put(normalize(user.getEmail()), user);
+            }
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (User user : userRepository.findAllById(userIds)) {
+                usersById.put(user.getId(), user);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Claims tokenClaims = claims[i];
+            User user;
+            if (tokenClaims.getSubject() != null) {
+                user = usersByEmail.get(normalize(tokenClaims.getSubject()));
+            } else {
+                user = usersById.get(JwtService.getUserId(tokenClaims));
+                // compact tokens only name the user by id, so revocation could not be checked earlier
+                if (user != null && tokenRevocationService.isRevoked(tokenClaims.getId(), user.getEmail(),
+                        tokenClaims.getIssuedAt())) {
+                    results[i] = IntrospectionResult.inactive(IntrospectionResult.REVOKED);
+                    continue;
+                }
+            }
+            results[i] = user == null
+                    ? IntrospectionResult.inactive(IntrospectionResult.UNKNOWN_USER)
+                    // the role comes from the database, not the token, so demotions apply immediately
+                    : IntrospectionResult.active(user.getEmail(), user.getRole().name(),
+                    tokenClaims.getExpiration().getTime() / 1000);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Fills claims[i] for tokens that passed, results[i] for tokens that did not.
+     */
+    private void verifyRange(List<String> tokens, Claims[] claims, IntrospectionResult[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            String token = tokens.get(i);
+            if (token == null || token.isBlank()) {
+                results[i] = IntrospectionResult.inactive(IntrospectionResult.INVALID);
+                continue;
+            }
+            try {
+                Claims tokenClaims = jwtService.parseClaims(token);
+                boolean compact = tokenClaims.getSubject() == null;
+                if (tokenClaims.getExpiration() == null || (compact && JwtService.getUserId(tokenClaims) == null)) {
+                    results[i] = IntrospectionResult.inactive(IntrospectionResult.INVALID);
+                } else if (!compact && tokenRevocationService.isRevoked(tokenClaims.getId(), tokenClaims.getSubject(),
+                        tokenClaims.getIssuedAt())) {
+                    results[i] = IntrospectionResult.inactive(IntrospectionResult.REVOKED);
+                } else {
+                    claims[i] = tokenClaims;
+                }
+            } catch (ExpiredJwtException e) {
+                results[i] = IntrospectionResult.inactive(IntrospectionResult.EXPIRED);
+            } catch (JwtException | IllegalArgumentException e) {
+                results[i] = IntrospectionResult.inactive(IntrospectionResult.INVALID);
+            }
+        }
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.RevokedToken;
+import com.example.demo1.repository.RevokedTokenRepository;
+import com.example.demo1.security.CountingBloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revocation of access tokens before their natural expiry.
+ * Revocations are persisted in revoked_tokens; the request path only probes a
+ * counting Bloom filter and touches the database when the filter reports a hit.
+ * The filter is rebuilt from the table in the background, which is also how
+ * revocations made on other instances become visible here.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+    private static final String TOKEN_PREFIX = "jti:";
+    private static final String SUBJECT_PREFIX = "sub:";
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${jwt.expiration}")
+    private long tokenLifetimeMs;
+
+    @Value("${revocation.expected-entries:100000}")
+    private long expectedEntries;
+
+    @Value("${revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile CountingBloomFilter filter;
+    // subject cut-offs are few (password changes, force logouts) and checked often, so keep them in memory
+    private final Map<String, Instant> subjectCutoffs = new ConcurrentHashMap<>();
+    // keys revoked while a rebuild is running, replayed into the new filter
+    private volatile Set<String> revokedDuringRebuild;
+
+    @PostConstruct
+    void init() {
+        filter = new CountingBloomFilter(expectedEntries, falsePositiveRate);
+        rebuildFilter();
+    }
+
+    /**
+     * Revoke a single token, identified by its jti claim, until it expires.
+     */
+    public void revokeToken(String tokenId, Date tokenExpiration) {
+        Instant now = Instant.now();
+        String key = TOKEN_PREFIX + tokenId;
+        revokedTokenRepository.save(new RevokedToken(key, null, tokenExpiration.toInstant(), now));
+        addToFilter(key);
+    }
+
+    /**
+     * Revoke every token issued to the subject before the current second.
+     * JWT iat has second precision, so a token from the same second cannot be told apart from
+     * one issued just after; those stay valid, or logging in right after a password change would fail.
+     */
+    public void revokeAllForSubject(String subject) {
+        Instant now = Instant.now();
+        Instant notBefore = now.truncatedTo(ChronoUnit.SECONDS);
+        String key = SUBJECT_PREFIX + subject;
+        revokedTokenRepository.save(new RevokedToken(key, notBefore, now.plusMillis(tokenLifetimeMs), now));
+        subjectCutoffs.merge(key, notBefore, (a, b) -> a.isAfter(b) ? a : b);
+        addToFilter(key);
+    }
+
+    public boolean isRevoked(String tokenId, String subject, Date issuedAt) {
+        if (subject != null && issuedAt != null) {
+            String subjectKey = SUBJECT_PREFIX + subject;
+            if (filter.mightContain(subjectKey)) {
+                Instant cutoff = subjectCutoffs.get(subjectKey);
+                if (cutoff != null && issuedAt.toInstant().isBefore(cutoff)) {
+                    return true;
+                }
+            }
+        }
+
+        if (tokenId != null) {
+            String tokenKey = TOKEN_PREFIX + tokenId;
+            return filter.mightContain(tokenKey) && revokedTokenRepository.existsById(tokenKey);
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${revocation.rebuild-interval-ms:30000}", initialDelayString = "${revocation.rebuild-interval-ms:30000}")
+    public void rebuildFilter() {
+        Set<String> replay = ConcurrentHashMap.newKeySet();
+        revokedDuringRebuild = replay;
+        try {
+            List<RevokedToken> active = revokedTokenRepository.findByExpiresAtAfter(Instant.now());
+            CountingBloomFilter fresh = new CountingBloomFilter(
+                    Math.max(expectedEntries, active.size() * 2L), falsePositiveRate);
+            Set<String> activeSubjects = new HashSet<>();
+
+            for (RevokedToken token : active) {
+                fresh.add(token.getTokenKey());
+                if (token.getNotBefore() != null) {
+                    activeSubjects.add(token.getTokenKey());
+                    subjectCutoffs.merge(token.getTokenKey(), token.getNotBefore(), (a, b) -> a.isAfter(b) ? a : b);
+                }
+            }
+
+            filter = fresh;
+            // revocations made while the table was being read only reached the old filter
+            replay.forEach(fresh::add);
+            subjectCutoffs.keySet().removeIf(key -> !activeSubjects.contains(key) && !replay.contains(key));
+        } catch (RuntimeException e) {
+            logger.error("Failed to rebuild token revocation filter", e);
+        } finally {
+            revokedDuringRebuild = null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${revocation.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        List<String> expiredKeys = revokedTokenRepository.findExpiredKeys(now);
+        if (expiredKeys.isEmpty()) {
+            return;
+        }
+        revokedTokenRepository.deleteExpired(now);
+        for (String key : expiredKeys) {
+            subjectCutoffs.remove(key);
+        }
+        // rebuild rather than remove: a rebuild since the keys were added may have left them out
+        // already, and removing a key the filter never counted lowers counters live keys share
+        rebuildFilter();
+        logger.debug("Purged {} expired token revocations", expiredKeys.size());
+    }
+
+    private void addToFilter(String key) {
+        Set<String> replay = revokedDuringRebuild;
+        if (replay != null) {
+            replay.add(key);
+        }
+        filter.add(key);
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.demo1.service;
+
+import com.example.demo1.cache.UserDirectory;
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the users table, and so its email index, down to accounts that are actually used.
+ * Users who have not logged in for user.archive.inactive-days move to users_archive in
+ * batched transactions; the first login afterwards with the right password moves them back.
+ *
+ * <p>The sweep holds each batch's row locks only briefly and then sleeps long enough to use at
+ * most max-duty-cycle of the time, so a large backlog drains without crowding out requests.
+ * A run stops after max-run-ms and the next one picks up where it left off. Users who never
+ * logged in and admins are never archived.
+ */
+@Service
+public class UserArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserArchiveService.class);
+
+    private static final String USER_COLUMNS = "id, name, email, password, role, last_login_at, login_count, version";
+    private static final String SCHEMA = "CREATE TABLE IF NOT EXISTS users_archive ("
+            + "id BIGINT NOT NULL PRIMARY KEY, "
+            + "name VARCHAR(255) NOT NULL, "
+            + "email VARCHAR(255) NOT NULL UNIQUE, "
+            + "password VARCHAR(255) NOT NULL, "
+            + "role VARCHAR(32) NOT NULL, "
+            + "last_login_at TIMESTAMP NULL, "
+            + "login_count BIGINT NOT NULL, "
+            + "version BIGINT NOT NULL, "
+            + "archived_at BIGINT NOT NULL)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserStore userRepository;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private LoginActivityTracker loginActivityTracker;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${user.archive.inactive-days:365}")
+    private int inactiveDays = 365;
+
+    @Value("${user.archive.batch-size:500}")
+    private int batchSize = 500;
+
+    /**
+     * Share of wall-clock time a sweep may spend in batches; it sleeps the rest
+     */
+    @Value("${user.archive.max-duty-cycle:0.1}")
+    private double maxDutyCycle = 0.1;
+
+    @Value("${user.archive.max-run-ms:30000}")
+    private long maxRunMs = 30000;
+
+    private final AtomicLong hotUsers = new AtomicLong();
+    private final AtomicLong archivedUsers = new AtomicLong();
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder rehydrated = new LongAdder();
+    private final LongAdder throttledMillis = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.execute(SCHEMA);
+        refreshSizes();
+        if (meterRegistry != null) {
+            Gauge.builder("user.hot.size", hotUsers, AtomicLong::get)
+                    .description("Users in the users table").register(meterRegistry);
+            Gauge.builder("user.archive.size", archivedUsers, AtomicLong::get)
+                    .description("Users moved to users_archive").register(meterRegistry);
+            FunctionCounter.builder("user.archive.archived", archived, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("user.archive.rehydrated", rehydrated, LongAdder::sum)
+                    .description("Archived users moved back by a login").register(meterRegistry);
+            FunctionCounter.builder("user.archive.throttled.ms", throttledMillis, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the email belongs to an archived user, so it is not free for registration
+     */
+    public boolean isArchived(String email) {
+        if (!enabled || !StringUtils.hasText(email)) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users_archive WHERE email = ?",
+                Integer.class, normalize(email));
+        return count != null && count > 0;
+    }
+
+    /**
+     * The archived user, left in the archive; lets a login check the password before moving them back
+     */
+    public Optional<User> findArchived(String email) {
+        if (!enabled || !StringUtils.hasText(email)) {
+            return Optional.empty();
+        }
+        return jdbcTemplate.query("SELECT id, name, email, password, role FROM users_archive WHERE email = ?",
+                (rs, rowNum) -> {
+                    User user = new User(rs.getString("name"), rs.getString("email"), rs.getString("password"),
+                            Role.valueOf(rs.getString("role")));
+                    user.setId(rs.getLong("id"));
+                    return user;
+                }, normalize(email)).stream().findFirst();
+    }
+
+    /**
+     * Drop an archived user for good; false when the id is not archived.
+     * Joins the caller's transaction, so a rolled back delete keeps the row.
+     */
+    public boolean deleteArchived(long id) {
+        if (!enabled || jdbcTemplate.update("DELETE FROM users_archive WHERE id = ?", id) == 0) {
+            return false;
+        }
+        archivedUsers.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Move an archived user back to the users table and return them, or empty if the email is not archived
+     */
+    public Optional<User> rehydrate(String email) {
+        if (!enabled || !StringUtils.hasText(email)) {
+            return Optional.empty();
+        }
+        String key = normalize(email);
+        int moved;
+        boolean raced = false;
+        try {
+            moved = transactionTemplate.execute(status -> {
+                int copied = jdbcTemplate.update("INSERT INTO users (" + USER_COLUMNS + ") SELECT " + USER_COLUMNS
+                        + " FROM users_archive WHERE email = ?", key);
+                if (copied > 0) {
+                    jdbcTemplate.update("DELETE FROM users_archive WHERE email = ?", key);
+                }
+                return copied;
+            });
+        } catch (DuplicateKeyException e) {
+            // a concurrent login moved the same user back first
+            moved = 0;
+            raced = true;
+        }
+        if (moved == 0 && !raced) {
+            return Optional.empty();
+        }
+
+        Optional<User> user = userRepository.findByEmail(key);
+        if (moved > 0) {
+            rehydrated.increment();
+            hotUsers.incrementAndGet();
+            archivedUsers.decrementAndGet();
+            user.ifPresent(userDirectory::put);
+            logger.debug("Rehydrated archived user {}", key);
+        }
+        return user;
+    }
+
+    @Scheduled(fixedDelayString = "${user.archive.interval-ms:300000}",
+            initialDelayString = "${user.archive.interval-ms:300000}")
+    public void sweep() {
+        if (enabled) {
+            try {
+                archiveInactive();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("User archive sweep failed", e);
+            }
+        }
+    }
+
+    /**
+     * One throttled run over users inactive past the cutoff; returns how many were archived
+     */
+    public long archiveInactive() throws InterruptedException {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(Duration.ofDays(inactiveDays)));
+        long deadline = System.currentTimeMillis() + maxRunMs;
+        long total = 0;
+        long lastId = 0;
+        // logins still buffered would otherwise look inactive here and be lost with the moved row
+        loginActivityTracker.flush();
+        while (System.currentTimeMillis() < deadline) {
+            long started = System.nanoTime();
+            List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM users WHERE last_login_at < ? AND role <> 'ADMIN' "
+                    + "AND id > ? ORDER BY id LIMIT ?", Long.class, cutoff, lastId, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+            List<Long> idle = ids.stream().filter(id -> loginActivityTracker.pendingFor(id) == null).toList();
+            int moved = idle.isEmpty() ? 0 : archiveBatch(idle, cutoff);
+            total += moved;
+            if (ids.size() < batchSize) {
+                break;
+            }
+            throttle(System.nanoTime() - started);
+        }
+        if (total > 0) {
+            refreshSizes();
+            logger.info("Archived {} users inactive since {}", total, cutoff.toInstant());
+        }
+        return total;
+    }
+
+    /**
+     * Copy then delete in one transaction; both statements re-check the cutoff, and a user who
+     * logged in between them keeps the hot row while the stale copy is dropped
+     */
+    private int archiveBatch(List<Long> ids, Timestamp cutoff) {
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        int moved = transactionTemplate.execute(status -> {
+            List<Object> copyArgs = new ArrayList<>(ids.size() + 2);
+            copyArgs.add(System.currentTimeMillis());
+            copyArgs.addAll(ids);
+            copyArgs.add(cutoff);
+            int copied = jdbcTemplate.update("INSERT INTO users_archive (" + USER_COLUMNS + ", archived_at) SELECT "
+                    + USER_COLUMNS + ", ? FROM users WHERE id IN (" + in + ") AND last_login_at < ?", copyArgs.toArray());
+
+            List<Object> deleteArgs = new ArrayList<>(ids);
+            deleteArgs.add(cutoff);
+            int removed = jdbcTemplate.update("DELETE FROM users WHERE id IN (" + in + ") AND last_login_at < ?",
+                    deleteArgs.toArray());
+            if (removed != copied) {
+                List<Object> args = new ArrayList<>(ids);
+                args.addAll(ids);
+                jdbcTemplate.update("DELETE FROM users_archive WHERE id IN (" + in + ") "
+                        + "AND id IN (SELECT id FROM users WHERE id IN (" + in + "))", args.toArray());
+            }
+            return removed;
+        });
+        for (Long id : ids) {
+            userDirectory.remove(id);
+        }
+        archived.add(moved);
+        return moved;
+    }
+
+    private void throttle(long batchNanos) throws InterruptedException {
+        if (maxDutyCycle >= 1) {
+            return;
+        }
+        long sleepMillis = (long) (batchNanos / 1_000_000.0 * (1 - maxDutyCycle) / maxDutyCycle);
+        if (sleepMillis > 0) {
+            throttledMillis.add(sleepMillis);
+            Thread.sleep(sleepMillis);
+        }
+    }
+
+    private void refreshSizes() {
+        hotUsers.set(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class));
+        archivedUsers.set(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users_archive", Long.class));
+    }
+
+    public long getHotUserCount() {
+        return hotUsers.get();
+    }
+
+    public long getArchivedUserCount() {
+        return archivedUsers.get();
+    }
+
+    public long getRehydratedCount() {
+        return rehydrated.sum();
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
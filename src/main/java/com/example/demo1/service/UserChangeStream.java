@@ -0,0 +1,371 @@
+package com.example.demo1.service;
+
+import com.example.demo1.cache.RemoteUserChangedEvent;
+import com.example.demo1.cache.UserChangeType;
+import com.example.demo1.cache.UserChangedEvent;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes user changes to admin dashboards as Server-Sent Events. Changes made through this
+ * node arrive as {@link UserChangedEvent}s; those made on other nodes arrive through the
+ * invalidation bus, which only carries the user id, so they are streamed as {@code updated}
+ * or {@code deleted} with the row as it is now. Without a cache.invalidation.transport a
+ * dashboard only sees the changes of the node it is connected to.
+ *
+ * <p>Every change gets a sequence number, used as the SSE event id, and is kept in
+ * a ring of the last {@code replay-size} events so a reconnecting client resumes
+ * from its Last-Event-ID. When the client is further behind than the ring reaches,
+ * it gets a {@code reset} event and should reload the user list.
+ *
+ * <p>Publishing never writes to a connection: events go into a per-subscriber
+ * queue that keeps only the latest event of each user, and a small pool of
+ * dispatcher threads writes them out. A subscriber with more than
+ * {@code max-pending} users queued is disconnected and resumes on reconnect.
+ */
+@Component
+public class UserChangeStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeStream.class);
+
+    record StreamEvent(long id, long userId, String name, String data) {
+    }
+
+    static final class Subscriber {
+        final SseEmitter emitter;
+        // keyed by user id; a newer change of a user replaces the queued one
+        final LinkedHashMap<Long, StreamEvent> pending = new LinkedHashMap<>();
+        long resetId = -1;
+        boolean ping;
+        boolean scheduled;
+        boolean closed;
+        boolean completed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserStore userRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.stream.replay-size:1024}")
+    private int replaySize;
+
+    @Value("${user.stream.max-pending:256}")
+    private int maxPending;
+
+    @Value("${user.stream.max-subscribers:1000}")
+    private int maxSubscribers;
+
+    @Value("${user.stream.dispatch-threads:2}")
+    private int dispatchThreads;
+
+    /**
+     * How long a connection stays open before the client has to reconnect (0 = never)
+     */
+    @Value("${user.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private StreamEvent[] replay;
+    private long firstId;
+    private long lastId;
+    private ExecutorService dispatcher;
+
+    @PostConstruct
+    void init() {
+        replay = new StreamEvent[replaySize];
+        // ids of an earlier run, or of another node, fall outside the replay range and get a reset
+        lastId = System.currentTimeMillis() * 1000;
+        firstId = lastId + 1;
+        AtomicInteger threads = new AtomicInteger();
+        dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "user-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (meterRegistry != null) {
+            Gauge.builder("user.stream.subscribers", subscribers, List::size).register(meterRegistry);
+            FunctionCounter.builder("user.stream.coalesced", coalesced, LongAdder::sum).register(meterRegistry);
+            FunctionCounter.builder("user.stream.dropped", dropped, LongAdder::sum).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            close(subscriber);
+            schedule(subscriber);
+        }
+        dispatcher.shutdown();
+    }
+
+    /**
+     * @param lastEventId the Last-Event-ID header of a reconnecting client, or null
+     * @return null when the subscriber limit is reached
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        return subscribe(parseId(lastEventId), emitter) ? emitter : null;
+    }
+
+    boolean subscribe(Long lastEventId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        // opens the stream at once rather than with the first change
+        subscriber.ping = true;
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+
+        synchronized (this) {
+            if (subscribers.size() >= maxSubscribers) {
+                return false;
+            }
+            // replay and registration under one lock, so no event is missed or sent twice
+            if (lastEventId != null && lastEventId != lastId) {
+                long oldest = Math.max(firstId, lastId - replay.length + 1);
+                if (lastEventId < oldest - 1 || lastEventId > lastId || lastId - lastEventId > maxPending) {
+                    subscriber.resetId = lastId;
+                } else {
+                    for (long id = lastEventId + 1; id <= lastId; id++) {
+                        StreamEvent event = replay[(int) (id % replay.length)];
+                        subscriber.pending.remove(event.userId());
+                        subscriber.pending.put(event.userId(), event);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        schedule(subscriber);
+        return true;
+    }
+
+    /**
+     * Runs after the surrounding transaction commits, so clients never see a change that rolled back.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.userId() == null) {
+            return;
+        }
+        String data = toJson(event);
+        synchronized (this) {
+            StreamEvent streamEvent = new StreamEvent(++lastId, event.userId(), eventName(event.type()), data);
+            replay[(int) (streamEvent.id() % replay.length)] = streamEvent;
+            for (Subscriber subscriber : subscribers) {
+                enqueue(subscriber, streamEvent);
+            }
+        }
+    }
+
+    /**
+     * A change made on another node; skipped without subscribers, since it costs a read of the row.
+     */
+    @EventListener
+    public void onRemoteUserChanged(RemoteUserChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Optional<User> user = userRepository.findById(event.userId());
+        onUserChanged(user.isPresent()
+                ? UserChangedEvent.updated(user.get(), null, false)
+                : UserChangedEvent.deleted(event.userId()));
+    }
+
+    /**
+     * Comment line to every idle subscriber, so dead connections are noticed and proxies keep live ones open.
+     */
+    @Scheduled(fixedDelayString = "${user.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                subscriber.ping = true;
+            }
+            schedule(subscriber);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void enqueue(Subscriber subscriber, StreamEvent event) {
+        boolean overflow;
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            if (subscriber.pending.remove(event.userId()) != null) {
+                coalesced.increment();
+            }
+            subscriber.pending.put(event.userId(), event);
+            overflow = subscriber.pending.size() > maxPending;
+        }
+        if (overflow) {
+            dropped.increment();
+            logger.debug("Dropping slow user stream subscriber with {} users pending", maxPending);
+            close(subscriber);
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.scheduled) {
+                return;
+            }
+            subscriber.scheduled = true;
+        }
+        try {
+            dispatcher.execute(() -> dispatch(subscriber));
+        } catch (RuntimeException e) {
+            // shutting down
+            synchronized (subscriber) {
+                subscriber.scheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Writes what is queued at the time, then yields the thread to other subscribers.
+     */
+    private void dispatch(Subscriber subscriber) {
+        List<StreamEvent> events;
+        long resetId;
+        boolean ping;
+        boolean closed;
+        synchronized (subscriber) {
+            events = new ArrayList<>(subscriber.pending.values());
+            subscriber.pending.clear();
+            resetId = subscriber.resetId;
+            subscriber.resetId = -1;
+            ping = subscriber.ping;
+            subscriber.ping = false;
+            closed = subscriber.closed;
+        }
+
+        if (!closed) {
+            try {
+                if (resetId >= 0) {
+                    subscriber.emitter.send(SseEmitter.event().id(Long.toString(resetId)).name("reset").data("{}"));
+                }
+                for (StreamEvent event : events) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.id()))
+                            .name(event.name())
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                }
+                if (ping && events.isEmpty() && resetId < 0) {
+                    subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("User stream subscriber went away", e);
+                close(subscriber);
+            }
+        }
+
+        boolean complete;
+        boolean again;
+        synchronized (subscriber) {
+            subscriber.scheduled = false;
+            complete = subscriber.closed && !subscriber.completed;
+            subscriber.completed |= complete;
+            again = !subscriber.closed && (!subscriber.pending.isEmpty() || subscriber.ping);
+        }
+        if (complete) {
+            subscriber.emitter.complete();
+        } else if (again) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Stops queueing for the subscriber; the emitter itself is completed on a dispatcher thread,
+     * never on the thread that published the change.
+     */
+    private void close(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            subscriber.closed = true;
+            subscriber.pending.clear();
+        }
+        subscribers.remove(subscriber);
+    }
+
+    private String toJson(UserChangedEvent event) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", event.userId());
+        User user = event.user();
+        if (user != null) {
+            data.put("name", user.getName());
+            data.put("email", user.getEmail());
+            data.put("role", user.getRole());
+            data.put("version", user.getVersion());
+        }
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize user change", e);
+        }
+    }
+
+    private static String eventName(UserChangeType type) {
+        return switch (type) {
+            case CREATED -> "created";
+            case UPDATED -> "updated";
+            case ROLE_CHANGED -> "role-changed";
+            case DELETED -> "deleted";
+        };
+    }
+
+    private static Long parseId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
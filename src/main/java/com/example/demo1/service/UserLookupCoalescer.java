@@ -0,0 +1,106 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight loader for lookups by email.
+ * Concurrent lookups of the same normalized email share one database query:
+ * the first caller runs it on its own thread, later callers wait for its result
+ * (or its exception) up to the configured timeout. Each waiter gets its own copy of the
+ * user, so one caller's changes to the entity cannot leak into another's.
+ */
+@Component
+public class UserLookupCoalescer {
+
+    @Autowired
+    private UserStore userRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.lookup.coalesce-timeout-ms:2000}")
+    private long timeoutMs = 2000;
+
+    private final ConcurrentMap<String, CompletableFuture<Optional<User>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    @PostConstruct
+    void registerMetrics() {
+        if (meterRegistry != null) {
+            FunctionCounter.builder("user.lookup.coalesced", coalesced, LongAdder::sum)
+                    .description("Email lookups answered by another caller's in-flight query")
+                    .register(meterRegistry);
+        }
+    }
+
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        String key = email.trim().toLowerCase(Locale.ROOT);
+
+        CompletableFuture<Optional<User>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<User>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing == null) {
+            return load(key, mine);
+        }
+
+        coalesced.increment();
+        return await(key, existing).map(User::copyOf);
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private Optional<User> load(String key, CompletableFuture<Optional<User>> future) {
+        try {
+            Optional<User> result = userRepository.findByEmail(key);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Optional<User> await(String key, CompletableFuture<Optional<User>> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("User lookup failed for " + key, cause);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Timed out waiting for in-flight user lookup");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted while waiting for in-flight user lookup");
+        }
+    }
+}
@@ -1,57 +1,132 @@
 package com.example.demo1.service;
 
+import com.example.demo1.audit.AuditEventType;
+import com.example.demo1.audit.AuditLog;
+import com.example.demo1.cache.UserChangedEvent;
+import com.example.demo1.cache.UserDirectory;
+import com.example.demo1.model.OutboxEventType;
 import com.example.demo1.model.Role;
 import com.example.demo1.model.User;
-import com.example.demo1.repository.UserRepository;
+import com.example.demo1.model.ValidationResult;
+import com.example.demo1.model.ValidationResult.FieldError;
+import com.example.demo1.outbox.UserOutbox;
+import com.example.demo1.repository.UserStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
-    private static final int MIN_PASSWORD_LENGTH = 8;
+    private static final String BREACHED_PASSWORD = "This password has appeared in a data breach; please choose another";
 
     @Autowired
-    private UserRepository userRepository;
+    private UserStore userRepository;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserLookupCoalescer userLookupCoalescer;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private UserOutbox userOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BreachedPasswordService breachedPasswordService;
+
+    @Autowired
+    private EmailDomainPolicy emailDomainPolicy;
+
+    @Autowired
+    private UserArchiveService userArchiveService;
+
+    @Value("${user.update.max-attempts:3}")
+    private int maxUpdateAttempts;
+
+    private record UserUpdate(User user, String previousEmail) {}
+
     /**
      * Register a user
-     * ✅ Throws IllegalArgumentException for weak password or duplicate email
+     * ✅ Returns every field error, or the duplicate email, without throwing
      * ✅ Encodes password and assigns USER role
      */
-    public User registerUser(User user) {
-        logger.info("Attempting to register user with email: {}", user.getEmail());
+    @Transactional
+    public ValidationResult<User> register(User user) {
+        if (user == null) {
+            return ValidationResult.invalid(null, "User cannot be null");
+        }
 
-        validateUserRegistration(user);
+        List<FieldError> errors = UserValidator.validateRegistration(user);
+        if (!errors.isEmpty()) {
+            auditLog.record(AuditEventType.REGISTRATION_FAILED, user.getEmail(), "invalid " + errors.get(0).field());
+            return ValidationResult.invalid(errors);
+        }
+
+        if (emailDomainPolicy.isBlocked(user.getEmail())) {
+            auditLog.record(AuditEventType.REGISTRATION_FAILED, user.getEmail(), "blocked domain");
+            return ValidationResult.invalid("email", EmailDomainPolicy.BLOCKED_DOMAIN);
+        }
 
-        if (userRepository.existsByEmail(user.getEmail())) {
-            logger.warn("Registration failed - duplicate email: {}", user.getEmail());
-            throw new IllegalArgumentException("User already exists with email: " + user.getEmail());
+        if (breachedPasswordService.isBreached(user.getPassword())) {
+            auditLog.record(AuditEventType.REGISTRATION_FAILED, user.getEmail(), "breached password");
+            return ValidationResult.invalid("password", BREACHED_PASSWORD);
         }
 
-        if (!isPasswordStrong(user.getPassword())) {
-            logger.warn("Registration failed - weak password for email: {}", user.getEmail());
-            throw new IllegalArgumentException("Password must be at least " + MIN_PASSWORD_LENGTH + " characters long");
+        if (userRepository.existsByEmail(user.getEmail()) || userArchiveService.isArchived(user.getEmail())) {
+            auditLog.record(AuditEventType.REGISTRATION_FAILED, user.getEmail(), "duplicate email");
+            return ValidationResult.invalid("email", "User already exists with email: " + user.getEmail());
         }
 
         // Prepare user for registration
         User userToSave = prepareUserForRegistration(user);
 
         User savedUser = userRepository.save(userToSave);
-        logger.info("User registered successfully with ID: {}", savedUser.getId());
+        userOutbox.append(OutboxEventType.USER_REGISTERED, savedUser);
+        eventPublisher.publishEvent(UserChangedEvent.created(savedUser));
+        auditLog.record(AuditEventType.REGISTRATION_SUCCEEDED, savedUser.getEmail(), "id=" + savedUser.getId());
 
-        return savedUser;
+        return ValidationResult.ok(savedUser);
+    }
+
+    /**
+     * Register a user
+     * ✅ Throws IllegalArgumentException for invalid fields, weak password or duplicate email
+     */
+    @Transactional
+    public User registerUser(User user) {
+        return register(user).orElseThrow();
     }
 
     /**
@@ -61,24 +136,34 @@ public class UserService {
         logger.debug("Authenticating user with email: {}", email);
 
         if (!StringUtils.hasText(email) || !StringUtils.hasText(rawPassword)) {
-            logger.warn("Authentication failed - empty email or password");
+            auditLog.record(AuditEventType.LOGIN_FAILED, email, "empty email or password");
             return false;
         }
 
-        Optional<User> userOptional = userRepository.findByEmail(email.trim());
+        Optional<User> userOptional = userDirectory.isLoaded()
+                ? userDirectory.findByEmail(email)
+                : userRepository.findByEmail(email.trim());
+        boolean archived = false;
+        if (userOptional.isEmpty()) {
+            userOptional = userArchiveService.findArchived(email);
+            archived = userOptional.isPresent();
+        }
 
         if (userOptional.isEmpty()) {
-            logger.warn("Authentication failed - user not found: {}", email);
+            auditLog.record(AuditEventType.LOGIN_FAILED, email, "user not found");
             return false;
         }
 
         User user = userOptional.get();
         boolean isAuthenticated = passwordEncoder.matches(rawPassword, user.getPassword());
+        if (isAuthenticated && archived) {
+            userArchiveService.rehydrate(email);
+        }
 
         if (isAuthenticated) {
-            logger.info("User authenticated successfully: {}", email);
+            auditLog.record(AuditEventType.LOGIN_SUCCEEDED, email, null);
         } else {
-            logger.warn("Authentication failed - invalid password for: {}", email);
+            auditLog.record(AuditEventType.LOGIN_FAILED, email, "invalid password");
         }
 
         return isAuthenticated;
@@ -96,12 +181,43 @@ public class UserService {
 
     /**
      * Find user by email with validation
+     * Served by the user directory once loaded; otherwise concurrent lookups of the same email share one query
      */
     public Optional<User> findByEmail(String email) {
         if (!StringUtils.hasText(email)) {
             return Optional.empty();
         }
-        return userRepository.findByEmail(email.trim());
+        if (userDirectory.isLoaded()) {
+            return userDirectory.findByEmail(email);
+        }
+        return userLookupCoalescer.findByEmail(email);
+    }
+
+    /**
+     * The user whose credentials these are, checked with one password hash. Users archived for
+     * inactivity are checked against the archived row and moved back only when the password matches.
+     * An unknown email fails on the "email" field, a wrong password on "password".
+     */
+    public ValidationResult<User> verifyLogin(String email, String rawPassword) {
+        Optional<User> user = findByEmail(email);
+        boolean archived = false;
+        if (user.isEmpty()) {
+            user = userArchiveService.findArchived(email);
+            archived = user.isPresent();
+        }
+        if (user.isEmpty()) {
+            return ValidationResult.invalid("email", "User doesn't exist");
+        }
+        if (!validatePassword(rawPassword, user.get().getPassword())) {
+            return ValidationResult.invalid("password", "Invalid credentials");
+        }
+        if (archived) {
+            Optional<User> rehydrated = userArchiveService.rehydrate(email);
+            if (rehydrated.isPresent()) {
+                return ValidationResult.ok(rehydrated.get());
+            }
+        }
+        return ValidationResult.ok(user.get());
     }
 
     /**
@@ -110,7 +226,7 @@ public class UserService {
     public List<User> getAllUsers() {
         logger.debug("Fetching all users");
         List<User> users = userRepository.findAll();
-        logger.info("Retrieved {} users from database", users.size());
+        logger.debug("Retrieved {} users from database", users.size());
         return users;
     }
 
@@ -126,26 +242,26 @@ public class UserService {
 
     /**
      * Delete user with validation and logging
+     * Database errors propagate, so the transaction rolls back together with its outbox row
      */
+    @Transactional
     public boolean deleteUser(Long id) {
         if (id == null || id <= 0) {
-            logger.warn("Delete user failed - invalid ID: {}", id);
+            logger.debug("Delete user failed - invalid ID: {}", id);
             return false;
         }
 
-        if (!userRepository.existsById(id)) {
-            logger.warn("Delete user failed - user not found with ID: {}", id);
-            return false;
-        }
-
-        try {
+        if (userRepository.existsById(id)) {
             userRepository.deleteById(id);
-            logger.info("User deleted successfully with ID: {}", id);
-            return true;
-        } catch (Exception e) {
-            logger.error("Error deleting user with ID: {}", id, e);
+        } else if (!userArchiveService.deleteArchived(id)) {
+            logger.debug("Delete user failed - user not found with ID: {}", id);
             return false;
         }
+
+        userOutbox.appendDeleted(id);
+        eventPublisher.publishEvent(UserChangedEvent.deleted(id));
+        auditLog.record(AuditEventType.USER_DELETED, null, "id=" + id);
+        return true;
     }
 
     // ============ NEW REFACTORED METHODS ============
@@ -157,40 +273,117 @@ public class UserService {
         if (!StringUtils.hasText(email)) {
             return false;
         }
-        return userRepository.existsByEmail(email.trim());
+        return userRepository.existsByEmail(email.trim()) || userArchiveService.isArchived(email);
     }
 
     /**
      * 🆕 Validate password strength
+     * Long enough and not in the breached password filter; both checks come before any bcrypt work
      */
     public boolean isPasswordStrong(String password) {
-        if (!StringUtils.hasText(password)) {
-            return false;
+        return UserValidator.isPasswordStrong(password) && !breachedPasswordService.isBreached(password);
+    }
+
+    /**
+     * Everything wrong with a partial update, in one pass and without throwing: field formats,
+     * then whether another user already has the new email. The update re-checks the email
+     * in its transaction, so losing a race to a concurrent registration still fails.
+     */
+    public List<FieldError> validateUpdate(Long id, User updates) {
+        List<FieldError> errors = UserValidator.validateUpdate(updates);
+        if (errors.isEmpty() && StringUtils.hasText(updates.getEmail()) && emailDomainPolicy.isBlocked(updates.getEmail())) {
+            return List.of(new FieldError("email", EmailDomainPolicy.BLOCKED_DOMAIN));
+        }
+        if (errors.isEmpty() && updates.getPassword() != null && breachedPasswordService.isBreached(updates.getPassword())) {
+            return List.of(new FieldError("password", BREACHED_PASSWORD));
+        }
+        if (errors.isEmpty() && StringUtils.hasText(updates.getEmail())) {
+            String email = updates.getEmail().trim();
+            boolean taken = userRepository.findByEmail(email)
+                    .filter(other -> !other.getId().equals(id))
+                    .isPresent() || userArchiveService.isArchived(email);
+            if (taken) {
+                return List.of(new FieldError("email", "Email already taken: " + email));
+            }
         }
-        return password.length() >= MIN_PASSWORD_LENGTH;
+        return errors;
     }
 
     /**
      * 🆕 Update user profile
      */
     public Optional<User> updateUser(Long id, User userUpdates) {
+        return updateUser(id, userUpdates, null);
+    }
+
+    /**
+     * Update user profile, optionally only if the user is still at the version the changes are based on.
+     * Without an expected version, an update that loses the race against a concurrent one is applied
+     * again to the fresh row; setting fields is idempotent, so nothing is lost.
+     *
+     * @throws OptimisticLockingFailureException when the user is no longer at expectedVersion,
+     * or kept changing through every attempt
+     * @throws IllegalArgumentException when the change is rejected; {@link #update} reports it instead
+     */
+    public Optional<User> updateUser(Long id, User userUpdates, Long expectedVersion) {
+        return update(id, userUpdates, expectedVersion).map(ValidationResult::orElseThrow);
+    }
+
+    /**
+     * Like {@link #updateUser(Long, User, Long)}, but a change rejected by the re-check in the update's
+     * transaction, say an email registered since {@link #validateUpdate} ran, comes back as a field error.
+     *
+     * @return empty when there is no such user
+     */
+    public Optional<ValidationResult<User>> update(Long id, User userUpdates, Long expectedVersion) {
         if (id == null || id <= 0 || userUpdates == null) {
             return Optional.empty();
         }
 
-        Optional<User> existingUser = userRepository.findById(id);
-        if (existingUser.isEmpty()) {
-            logger.warn("Update failed - user not found with ID: {}", id);
+        Optional<ValidationResult<UserUpdate>> attempt = withOptimisticRetry(id, expectedVersion == null, () -> {
+            Optional<User> existingUser = userRepository.findById(id);
+            if (existingUser.isEmpty()) {
+                logger.debug("Update failed - user not found with ID: {}", id);
+                return Optional.empty();
+            }
+
+            User user = existingUser.get();
+            checkVersion(user, expectedVersion);
+            // checked before any field is set: the entity is managed, so a change would be flushed anyway
+            FieldError rejected = checkUpdateFields(user, userUpdates);
+            if (rejected != null) {
+                return Optional.of(ValidationResult.invalid(List.of(rejected)));
+            }
+            String previousEmail = user.getEmail();
+            Role previousRole = user.getRole();
+            updateUserFields(user, userUpdates);
+
+            User updatedUser = userRepository.saveAndFlush(user);
+            boolean roleChanged = updatedUser.getRole() != previousRole;
+            if (roleChanged) {
+                userOutbox.append(OutboxEventType.USER_ROLE_CHANGED, updatedUser);
+            }
+            eventPublisher.publishEvent(UserChangedEvent.updated(updatedUser, previousEmail, roleChanged));
+            return Optional.of(ValidationResult.ok(new UserUpdate(updatedUser, previousEmail)));
+        });
+        if (attempt.isEmpty()) {
             return Optional.empty();
         }
+        if (!attempt.get().isValid()) {
+            return Optional.of(ValidationResult.invalid(attempt.get().getErrors()));
+        }
 
-        User user = existingUser.get();
-        updateUserFields(user, userUpdates);
+        UserUpdate update = attempt.get().getValue();
+        User updatedUser = update.user();
+        auditLog.record(AuditEventType.USER_UPDATED, updatedUser.getEmail(), "id=" + id);
 
-        User updatedUser = userRepository.save(user);
-        logger.info("User updated successfully with ID: {}", id);
+        if (StringUtils.hasText(userUpdates.getPassword())) {
+            // tokens issued with the old password must stop working
+            tokenRevocationService.revokeAllForSubject(update.previousEmail());
+            refreshTokenService.revokeAllForUser(id);
+        }
 
-        return Optional.of(updatedUser);
+        return Optional.of(ValidationResult.ok(updatedUser));
     }
 
     /**
@@ -201,44 +394,66 @@ public class UserService {
             return Optional.empty();
         }
 
-        Optional<User> userOptional = userRepository.findById(id);
-        if (userOptional.isEmpty()) {
+        Optional<User> updated = withOptimisticRetry(id, true, () -> {
+            Optional<User> userOptional = userRepository.findById(id);
+            if (userOptional.isEmpty()) {
+                return Optional.empty();
+            }
+
+            User user = userOptional.get();
+            user.setRole(newRole);
+
+            User updatedUser = userRepository.saveAndFlush(user);
+            userOutbox.append(OutboxEventType.USER_ROLE_CHANGED, updatedUser);
+            eventPublisher.publishEvent(UserChangedEvent.roleChanged(updatedUser));
+            return Optional.of(updatedUser);
+        });
+        if (updated.isEmpty()) {
             return Optional.empty();
         }
 
-        User user = userOptional.get();
-        user.setRole(newRole);
-
-        User updatedUser = userRepository.save(user);
-        logger.info("User role changed to {} for ID: {}", newRole, id);
+        User updatedUser = updated.get();
+        auditLog.record(AuditEventType.ROLE_CHANGED, updatedUser.getEmail(), "id=" + id + " role=" + newRole);
 
-        return Optional.of(updatedUser);
+        return updated;
     }
 
-    // ============ PRIVATE HELPER METHODS ============
-
     /**
-     * Validate user registration data
+     * Invalidate every token issued to the user so far (admin function)
      */
-    private void validateUserRegistration(User user) {
-        if (user == null) {
-            throw new IllegalArgumentException("User cannot be null");
-        }
-
-        if (!StringUtils.hasText(user.getName())) {
-            throw new IllegalArgumentException("User name is required");
+    public boolean forceLogout(Long id) {
+        Optional<User> user = getUserById(id);
+        if (user.isEmpty()) {
+            return false;
         }
+        tokenRevocationService.revokeAllForSubject(user.get().getEmail());
+        refreshTokenService.revokeAllForUser(id);
+        return true;
+    }
 
-        if (!StringUtils.hasText(user.getEmail())) {
-            throw new IllegalArgumentException("Email is required");
-        }
+    // ============ PRIVATE HELPER METHODS ============
 
-        if (!isValidEmail(user.getEmail())) {
-            throw new IllegalArgumentException("Invalid email format");
+    /**
+     * Run the read-modify-write in its own transaction, starting over with a fresh read when a
+     * concurrent update committed first (the version check failed on flush).
+     */
+    private <T> T withOptimisticRetry(Long id, boolean retry, Supplier<T> update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> update.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (!retry || attempt >= maxUpdateAttempts) {
+                    throw e;
+                }
+                logger.debug("Concurrent update of user {}, retrying ({}/{})", id, attempt, maxUpdateAttempts);
+            }
         }
+    }
 
-        if (!StringUtils.hasText(user.getPassword())) {
-            throw new IllegalArgumentException("Password is required");
+    private static void checkVersion(User user, Long expectedVersion) {
+        if (expectedVersion != null && user.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException(
+                    "User " + user.getId() + " is at version " + user.getVersion() + ", not " + expectedVersion);
         }
     }
 
@@ -255,26 +470,44 @@ public class UserService {
     }
 
     /**
-     * Update user fields selectively
+     * The first reason the update cannot be applied to the user, or null
+     */
+    private FieldError checkUpdateFields(User existingUser, User updates) {
+        if (StringUtils.hasText(updates.getEmail()) && UserValidator.isValidEmail(updates.getEmail())) {
+            if (emailDomainPolicy.isBlocked(updates.getEmail())) {
+                return new FieldError("email", EmailDomainPolicy.BLOCKED_DOMAIN);
+            }
+            // Check if new email is not already taken by another user
+            if (!existingUser.getEmail().equalsIgnoreCase(updates.getEmail().trim()) &&
+                    (userRepository.existsByEmail(updates.getEmail().trim()) || userArchiveService.isArchived(updates.getEmail()))) {
+                return new FieldError("email", "Email already taken: " + updates.getEmail());
+            }
+        }
+
+        if (StringUtils.hasText(updates.getPassword())) {
+            if (!UserValidator.isPasswordStrong(updates.getPassword())) {
+                return new FieldError("password", "Password must be at least " + UserValidator.MIN_PASSWORD_LENGTH + " characters");
+            }
+            if (breachedPasswordService.isBreached(updates.getPassword())) {
+                return new FieldError("password", BREACHED_PASSWORD);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Update user fields selectively; {@link #checkUpdateFields} has accepted the changes
      */
     private void updateUserFields(User existingUser, User updates) {
         if (StringUtils.hasText(updates.getName())) {
             existingUser.setName(updates.getName().trim());
         }
 
-        if (StringUtils.hasText(updates.getEmail()) && isValidEmail(updates.getEmail())) {
-            // Check if new email is not already taken by another user
-            if (!existingUser.getEmail().equalsIgnoreCase(updates.getEmail().trim()) &&
-                    userRepository.existsByEmail(updates.getEmail().trim())) {
-                throw new IllegalArgumentException("Email already taken: " + updates.getEmail());
-            }
+        if (StringUtils.hasText(updates.getEmail()) && UserValidator.isValidEmail(updates.getEmail())) {
             existingUser.setEmail(updates.getEmail().trim().toLowerCase());
         }
 
         if (StringUtils.hasText(updates.getPassword())) {
-            if (!isPasswordStrong(updates.getPassword())) {
-                throw new IllegalArgumentException("Password must be at least " + MIN_PASSWORD_LENGTH + " characters long");
-            }
             existingUser.setPassword(passwordEncoder.encode(updates.getPassword()));
         }
 
@@ -283,17 +516,6 @@ public class UserService {
         }
     }
 
-    /**
-     * Basic email validation
-     */
-    private boolean isValidEmail(String email) {
-        if (!StringUtils.hasText(email)) {
-            return false;
-        }
-        String emailRegex = "^[A-Za-z0-9+_.-]+@(.+)$";
-        return email.matches(emailRegex);
-    }
-
     /**
      * 🆕 Get user count
      */
@@ -308,6 +530,9 @@ public class UserService {
         if (userId == null || userId <= 0) {
             return false;
         }
+        if (userDirectory.isLoaded()) {
+            return userDirectory.isAdmin(userId);
+        }
         return userRepository.findById(userId)
                 .map(user -> user.getRole() == Role.ADMIN)
                 .orElse(false);
@@ -0,0 +1,113 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.User;
+import com.example.demo1.model.ValidationResult.FieldError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Field checks for the register, login and update paths, matching the constraints declared
+ * on User and UserUpdateRequest. Each check collects every error in one pass and throws
+ * nothing; valid input allocates nothing.
+ */
+public final class UserValidator {
+
+    public static final int MIN_NAME_LENGTH = 2;
+    public static final int MAX_NAME_LENGTH = 50;
+    public static final int MIN_PASSWORD_LENGTH = 8;
+    public static final int MAX_EMAIL_LENGTH = 255;
+
+    // compiled once; String.matches compiles the expression on every call
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@[^@\\s]+$");
+
+    private UserValidator() {
+    }
+
+    public static List<FieldError> validateRegistration(User user) {
+        List<FieldError> errors = List.of();
+        errors = checkName(errors, user.getName(), true);
+        errors = checkEmail(errors, user.getEmail(), true);
+        errors = checkPassword(errors, user.getPassword(), true);
+        return errors;
+    }
+
+    /**
+     * Presence only, plus a cheap shape check that keeps garbage away from the user lookup;
+     * the format rules of registration may have been looser when the account was created.
+     */
+    public static List<FieldError> validateLogin(String email, String password) {
+        List<FieldError> errors = List.of();
+        if (isBlank(email)) {
+            errors = add(errors, "email", "Email is required");
+        } else if (email.length() > MAX_EMAIL_LENGTH || email.indexOf('@') < 0) {
+            errors = add(errors, "email", "Please enter a valid email");
+        }
+        if (isBlank(password)) {
+            errors = add(errors, "password", "Password is required");
+        }
+        return errors;
+    }
+
+    /**
+     * Checks only the fields present in the partial update.
+     */
+    public static List<FieldError> validateUpdate(User updates) {
+        List<FieldError> errors = List.of();
+        errors = checkName(errors, updates.getName(), false);
+        if (!isBlank(updates.getEmail())) {
+            errors = checkEmail(errors, updates.getEmail(), false);
+        }
+        errors = checkPassword(errors, updates.getPassword(), false);
+        return errors;
+    }
+
+    public static boolean isValidEmail(String email) {
+        return email != null && email.length() <= MAX_EMAIL_LENGTH && EMAIL.matcher(email.trim()).matches();
+    }
+
+    public static boolean isPasswordStrong(String password) {
+        return !isBlank(password) && password.length() >= MIN_PASSWORD_LENGTH;
+    }
+
+    private static List<FieldError> checkName(List<FieldError> errors, String name, boolean required) {
+        if (name == null) {
+            return required ? add(errors, "name", "Name is required") : errors;
+        }
+        if (isBlank(name) && required) {
+            return add(errors, "name", "Name is required");
+        }
+        int length = name.trim().length();
+        if (length < MIN_NAME_LENGTH || length > MAX_NAME_LENGTH) {
+            return add(errors, "name", "Name must be between " + MIN_NAME_LENGTH + " and " + MAX_NAME_LENGTH + " characters");
+        }
+        return errors;
+    }
+
+    private static List<FieldError> checkEmail(List<FieldError> errors, String email, boolean required) {
+        if (isBlank(email)) {
+            return required ? add(errors, "email", "Email is required") : errors;
+        }
+        return isValidEmail(email) ? errors : add(errors, "email", "Please enter a valid email");
+    }
+
+    private static List<FieldError> checkPassword(List<FieldError> errors, String password, boolean required) {
+        if (password == null || (required && isBlank(password))) {
+            return required ? add(errors, "password", "Password is required") : errors;
+        }
+        return isPasswordStrong(password)
+                ? errors
+                : add(errors, "password", "Password must be at least " + MIN_PASSWORD_LENGTH + " characters");
+    }
+
+    private static List<FieldError> add(List<FieldError> errors, String field, String message) {
+        List<FieldError> grown = errors.isEmpty() ? new ArrayList<>(3) : errors;
+        grown.add(new FieldError(field, message));
+        return grown;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
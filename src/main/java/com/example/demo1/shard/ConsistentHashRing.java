@@ -0,0 +1,91 @@
+package com.example.demo1.shard;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Maps a normalized email to a shard. Each shard owns many points on a 64-bit ring and a key
+ * belongs to the first point at or after its hash, so going from N to N+1 shards moves only
+ * about 1/(N+1) of the users, all of them onto the new shard.
+ *
+ * <p>Points depend only on the shard number and the virtual node count, so every node, the
+ * resharding tool and future versions compute the same ring.
+ */
+public final class ConsistentHashRing {
+
+    private final long[] points;
+    private final int[] owners;
+    private final int shardCount;
+
+    public ConsistentHashRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || shardCount > ShardedIds.MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + ShardedIds.MAX_SHARDS + ": " + shardCount);
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive: " + virtualNodes);
+        }
+        this.shardCount = shardCount;
+        long[] hashes = new long[shardCount * virtualNodes];
+        int n = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[n++] = hash("shard-" + shard + "#" + v);
+            }
+        }
+        // sort points with their owners by sorting indexes on the hash
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(hashes[a], hashes[b]));
+        this.points = new long[hashes.length];
+        this.owners = new int[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    public int shardFor(String email) {
+        long h = hash(normalize(email));
+        int low = 0;
+        int high = points.length - 1;
+        if (Long.compareUnsigned(h, points[high]) > 0) {
+            return owners[0];
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], h) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low];
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * The form emails are stored and routed in
+     */
+    public static String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // FNV-1a, then a murmur finalizer so nearby keys spread over the whole ring
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.demo1.shard;
+
+import com.example.demo1.model.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves users to the shard the ring now assigns them, after shards were added. Each shard is
+ * scanned in id order, a batch at a time; misplaced rows are copied to their new shard in one
+ * transaction there, then deleted from the old one unless they changed in between. A row that
+ * changed stays put and is picked up by the next run, so the tool can be rerun safely at any point.
+ *
+ * <p>Run it while the application has {@code sharding.previous-shard-count} set to the old
+ * count, so lookups also check where a user used to live; remove the setting once it reports
+ * nothing left to move. From the packaged application:
+ * <pre>
+ * java -cp demo1.jar -Dloader.main=com.example.demo1.shard.Resharder \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --urls jdbc:mysql://db0/users,jdbc:mysql://db1/users,jdbc:mysql://db2/users \
+ *     --user app --password secret --batch-size 500 --pause-ms 20
+ * </pre>
+ */
+public class Resharder {
+
+    public record Result(long scanned, long moved, long skipped) {}
+
+    private final List<JdbcTemplate> shards;
+    private final List<TransactionTemplate> transactions;
+    private final ConsistentHashRing ring;
+
+    public Resharder(List<DataSource> dataSources, ConsistentHashRing ring) {
+        if (dataSources.size() != ring.getShardCount()) {
+            throw new IllegalArgumentException("The ring has " + ring.getShardCount() + " shards but "
+                    + dataSources.size() + " data sources are given");
+        }
+        this.shards = new ArrayList<>(dataSources.size());
+        this.transactions = new ArrayList<>(dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            shards.add(new JdbcTemplate(dataSource));
+            transactions.add(new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        }
+        this.ring = ring;
+    }
+
+    /**
+     * @param pauseMillis sleep between batches, to leave the databases to foreground traffic
+     */
+    public Result run(int batchSize, long pauseMillis) throws InterruptedException {
+        long scanned = 0;
+        long moved = 0;
+        long skipped = 0;
+        for (int source = 0; source < shards.size(); source++) {
+            long lastId = 0;
+            while (true) {
+                List<User> batch = shards.get(source).query(ShardedUserRepository.COLUMNS
+                        + "WHERE id > ? ORDER BY id LIMIT ?", ShardedUserRepository.USER_ROW, lastId, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                scanned += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+
+                Map<Integer, List<User>> byTarget = new HashMap<>();
+                for (User user : batch) {
+                    int target = ring.shardFor(user.getEmail());
+                    if (target != source) {
+                        byTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(user);
+                    }
+                }
+                for (Map.Entry<Integer, List<User>> entry : byTarget.entrySet()) {
+                    int movedNow = moveBatch(source, entry.getKey(), entry.getValue());
+                    moved += movedNow;
+                    skipped += entry.getValue().size() - movedNow;
+                }
+                if (batch.size() < batchSize) {
+                    break;
+                }
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        }
+        return new Result(scanned, moved, skipped);
+    }
+
+    private int moveBatch(int source, int target, List<User> users) {
+        List<Object[]> rows = new ArrayList<>(users.size());
+        List<Object[]> keys = new ArrayList<>(users.size());
+        for (User user : users) {
+            rows.add(new Object[]{user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                    user.getRole().name(), user.getLastLoginAt() == null ? null : Timestamp.from(user.getLastLoginAt()),
+                    user.getLoginCount(), user.getVersion()});
+            keys.add(new Object[]{user.getId(), user.getVersion()});
+        }
+
+        // copies left by an interrupted run are replaced, the source row is still the live one
+        transactions.get(target).executeWithoutResult(status -> {
+            JdbcTemplate jdbc = shards.get(target);
+            jdbc.batchUpdate("DELETE FROM users WHERE id = ?", keys.stream().map(key -> new Object[]{key[0]}).toList());
+            jdbc.batchUpdate(ShardedUserRepository.INSERT, rows);
+        });
+
+        int[] removed = shards.get(source).batchUpdate("DELETE FROM users WHERE id = ? AND version = ?", keys);
+        List<Object[]> changed = new ArrayList<>();
+        for (int i = 0; i < removed.length; i++) {
+            if (removed[i] == 0) {
+                changed.add(keys.get(i));
+            }
+        }
+        if (!changed.isEmpty()) {
+            // updated on the source meanwhile: drop the stale copy, the next run moves the new version
+            shards.get(target).batchUpdate("DELETE FROM users WHERE id = ? AND version = ?", changed);
+        }
+        return users.size() - changed.size();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        List<String> urls = null;
+        String user = null;
+        String password = null;
+        int virtualNodes = 128;
+        int batchSize = 500;
+        long pauseMillis = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--urls" -> urls = List.of(args[++i].split(","));
+                case "--user" -> user = args[++i];
+                case "--password" -> password = args[++i];
+                case "--virtual-nodes" -> virtualNodes = Integer.parseInt(args[++i]);
+                case "--batch-size" -> batchSize = Integer.parseInt(args[++i]);
+                case "--pause-ms" -> pauseMillis = Long.parseLong(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        if (urls == null) {
+            System.err.println("usage: Resharder --urls <jdbc url,...> [--user u] [--password p] "
+                    + "[--virtual-nodes 128] [--batch-size 500] [--pause-ms 10]");
+            System.exit(2);
+        }
+
+        List<DataSource> dataSources = new ArrayList<>();
+        for (String url : urls) {
+            dataSources.add(new DriverManagerDataSource(url.trim(), user, password));
+        }
+        long started = System.nanoTime();
+        Result result = new Resharder(dataSources, new ConsistentHashRing(urls.size(), virtualNodes)).run(batchSize, pauseMillis);
+        System.out.printf("scanned %,d users, moved %,d, left %,d that changed during the move, in %.1f s%n",
+                result.scanned(), result.moved(), result.skipped(), (System.nanoTime() - started) / 1e9);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo1.shard;
+
+/**
+ * Global user ids that carry the shard they were created on: bits 43-52 hold the shard and the
+ * low 43 bits a per-shard sequence. Ids stay below 2^53, so JavaScript clients read them exactly.
+ *
+ * <p>The shard in an id is where the user was created. Resharding moves rows but never
+ * renumbers them, so a lookup by id tries that shard first and then asks the others.
+ */
+public final class ShardedIds {
+
+    public static final int SHARD_BITS = 10;
+    public static final int LOCAL_BITS = 43;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+    public static final long MAX_LOCAL_ID = (1L << LOCAL_BITS) - 1;
+
+    private ShardedIds() {
+    }
+
+    public static long encode(int shard, long localId) {
+        if (shard < 0 || shard >= MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard out of range: " + shard);
+        }
+        if (localId < 1 || localId > MAX_LOCAL_ID) {
+            throw new IllegalArgumentException("Local id out of range: " + localId);
+        }
+        return ((long) shard << LOCAL_BITS) | localId;
+    }
+
+    public static int shardOf(long id) {
+        return (int) (id >>> LOCAL_BITS) & (MAX_SHARDS - 1);
+    }
+
+    public static long localOf(long id) {
+        return id & MAX_LOCAL_ID;
+    }
+}
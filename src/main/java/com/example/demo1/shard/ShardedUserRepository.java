@@ -0,0 +1,484 @@
+package com.example.demo1.shard;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserStore;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * UserStore over N databases, each holding the users whose normalized email hashes to it
+ * on a {@link ConsistentHashRing}. Email lookups go to exactly one shard; findAll and count ask
+ * every shard in parallel and merge. Ids come from {@link ShardedIds}, allocated in blocks from
+ * a sequence row on each shard, so nodes never hand out the same id.
+ *
+ * <p>While rows are being moved by the {@link Resharder}, email lookups also check the shard
+ * the previous ring assigned, so no user goes missing mid-move.
+ *
+ * <p>Each write is a single statement on one shard. Updates check and bump the version like the
+ * JPA entity does; an email change that moves the user copies the row first and removes the old
+ * one under the version check.
+ */
+public class ShardedUserRepository implements UserStore, Closeable {
+
+    static final String SCHEMA = "CREATE TABLE IF NOT EXISTS users ("
+            + "id BIGINT NOT NULL PRIMARY KEY, "
+            + "name VARCHAR(255) NOT NULL, "
+            + "email VARCHAR(255) NOT NULL UNIQUE, "
+            + "password VARCHAR(255) NOT NULL, "
+            + "role VARCHAR(32) NOT NULL, "
+            + "last_login_at TIMESTAMP NULL, "
+            + "login_count BIGINT NOT NULL DEFAULT 0, "
+            + "version BIGINT NOT NULL DEFAULT 0)";
+    static final String SEQUENCE_SCHEMA =
+            "CREATE TABLE IF NOT EXISTS user_id_sequence (id INT NOT NULL PRIMARY KEY, next_value BIGINT NOT NULL)";
+    static final String COLUMNS = "SELECT id, name, email, password, role, last_login_at, login_count, version FROM users ";
+    static final String LOGIN_ACTIVITY = "UPDATE users SET login_count = login_count + ?, "
+            + "last_login_at = GREATEST(COALESCE(last_login_at, ?), ?) WHERE id = ?";
+    static final String INSERT = "INSERT INTO users "
+            + "(id, name, email, password, role, last_login_at, login_count, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final RowMapper<User> USER_ROW = (rs, rowNum) -> {
+        User user = new User(rs.getString("name"), rs.getString("email"), rs.getString("password"),
+                Role.valueOf(rs.getString("role")));
+        user.setId(rs.getLong("id"));
+        Timestamp lastLogin = rs.getTimestamp("last_login_at");
+        user.setLastLoginAt(lastLogin == null ? null : lastLogin.toInstant());
+        user.setLoginCount(rs.getLong("login_count"));
+        user.setVersion(rs.getLong("version"));
+        return user;
+    };
+
+    private final List<DataSource> dataSources;
+    private final List<JdbcTemplate> shards;
+    private final List<TransactionTemplate> transactions;
+    private final ConsistentHashRing ring;
+    private final ConsistentHashRing previousRing;
+    private final int idBlockSize;
+    private final long[] nextIds;
+    private final long[] idLimits;
+    private final ExecutorService fanOut;
+
+    /**
+     * @param previousRing the ring before the shard count changed, while the Resharder runs; otherwise null
+     */
+    public ShardedUserRepository(List<DataSource> dataSources, ConsistentHashRing ring, ConsistentHashRing previousRing,
+                                 int idBlockSize) {
+        if (dataSources.size() != ring.getShardCount()) {
+            throw new IllegalArgumentException("The ring has " + ring.getShardCount() + " shards but "
+                    + dataSources.size() + " data sources are configured");
+        }
+        if (previousRing != null && previousRing.getShardCount() > dataSources.size()) {
+            throw new IllegalArgumentException("Shrinking from " + previousRing.getShardCount() + " shards is not supported");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.shards = new ArrayList<>(dataSources.size());
+        this.transactions = new ArrayList<>(dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            shards.add(new JdbcTemplate(dataSource));
+            transactions.add(new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        }
+        this.ring = ring;
+        this.previousRing = previousRing;
+        this.idBlockSize = Math.max(1, idBlockSize);
+        this.nextIds = new long[dataSources.size()];
+        this.idLimits = new long[dataSources.size()];
+        this.fanOut = Executors.newFixedThreadPool(Math.min(dataSources.size(), 16), runnable -> {
+            Thread thread = new Thread(runnable, "user-shard-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create the tables on every shard if they are missing
+     */
+    public void initializeSchema() {
+        for (JdbcTemplate shard : shards) {
+            shard.execute(SCHEMA);
+            shard.execute(SEQUENCE_SCHEMA);
+            try {
+                shard.update("INSERT INTO user_id_sequence (id, next_value) VALUES (0, 1)");
+            } catch (DuplicateKeyException e) {
+                // already initialized, possibly by another node
+            }
+        }
+    }
+
+    public int shardForEmail(String email) {
+        return ring.shardFor(email);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    List<JdbcTemplate> getShards() {
+        return shards;
+    }
+
+    /**
+     * Add logins to the users on the shards holding them, one batch per home shard.
+     * Rows that missed their home shard, because the Resharder moved the user, are retried where the user is now.
+     *
+     * @param rows {count, last login, last login, id}, the parameters of LoginActivityTracker's batched update
+     */
+    public void recordLogins(List<Object[]> rows) {
+        Map<Integer, List<Object[]>> byShard = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            byShard.computeIfAbsent(homeShard((Long) row[3]), shard -> new ArrayList<>()).add(row);
+        }
+        for (Map.Entry<Integer, List<Object[]>> entry : byShard.entrySet()) {
+            List<Object[]> batch = entry.getValue();
+            int[] updated = shards.get(entry.getKey()).batchUpdate(LOGIN_ACTIVITY, batch);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    int shard = locate((Long) batch.get(i)[3]);
+                    if (shard >= 0) {
+                        shards.get(shard).update(LOGIN_ACTIVITY, batch.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    // --- email routed ---
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String key = ConsistentHashRing.normalize(email);
+        for (int shard : shardsForEmail(key)) {
+            List<User> users = shards.get(shard).query(COLUMNS + "WHERE email = ?", USER_ROW, key);
+            if (!users.isEmpty()) {
+                return Optional.of(users.get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        String key = ConsistentHashRing.normalize(email);
+        for (int shard : shardsForEmail(key)) {
+            Integer found = shards.get(shard).queryForObject("SELECT COUNT(*) FROM users WHERE email = ?", Integer.class, key);
+            if (found != null && found > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<User> findByEmailIn(Collection<String> emails) {
+        Map<Integer, List<String>> byShard = new LinkedHashMap<>();
+        for (String email : emails) {
+            String key = ConsistentHashRing.normalize(email);
+            for (int shard : shardsForEmail(key)) {
+                byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(key);
+            }
+        }
+        List<CompletableFuture<List<User>>> futures = new ArrayList<>(byShard.size());
+        byShard.forEach((shard, batch) -> futures.add(CompletableFuture.supplyAsync(() ->
+                shards.get(shard).query(COLUMNS + "WHERE email IN (" + placeholders(batch.size()) + ")",
+                        USER_ROW, batch.toArray()), fanOut)));
+        return distinctById(join(futures));
+    }
+
+    // --- id routed ---
+
+    @Override
+    public Optional<User> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        for (int shard : shardsForId(id)) {
+            List<User> users = shards.get(shard).query(COLUMNS + "WHERE id = ?", USER_ROW, id);
+            if (!users.isEmpty()) {
+                return Optional.of(users.get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return locate(id) >= 0;
+    }
+
+    @Override
+    public List<User> findAllById(Iterable<Long> ids) {
+        Map<Integer, List<Long>> byHome = new LinkedHashMap<>();
+        Set<Long> wanted = new HashSet<>();
+        for (Long id : ids) {
+            if (id != null && wanted.add(id)) {
+                byHome.computeIfAbsent(homeShard(id), s -> new ArrayList<>()).add(id);
+            }
+        }
+        List<CompletableFuture<List<User>>> futures = new ArrayList<>(byHome.size());
+        byHome.forEach((shard, batch) -> futures.add(CompletableFuture.supplyAsync(() -> shards.get(shard)
+                .query(COLUMNS + "WHERE id IN (" + placeholders(batch.size()) + ")", USER_ROW, batch.toArray()), fanOut)));
+        List<User> found = join(futures);
+
+        // users moved off their home shard by resharding
+        for (User user : found) {
+            wanted.remove(user.getId());
+        }
+        if (!wanted.isEmpty()) {
+            Object[] missing = wanted.toArray();
+            found.addAll(onAllShards(shard -> shard.query(
+                    COLUMNS + "WHERE id IN (" + placeholders(missing.length) + ")", USER_ROW, missing)));
+        }
+        return distinctById(found);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        int shard = locate(id);
+        if (shard >= 0) {
+            shards.get(shard).update("DELETE FROM users WHERE id = ?", id);
+        }
+    }
+
+    // --- fan out ---
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = onAllShards(shard -> shard.query(COLUMNS, USER_ROW));
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    /**
+     * (id, version, login count) of every user in id order, without loading the users
+     */
+    public List<long[]> findAllFingerprints() {
+        List<long[]> rows = onAllShards(shard -> shard.query("SELECT id, version, login_count FROM users",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}));
+        rows.sort(Comparator.comparingLong(row -> row[0]));
+        return rows;
+    }
+
+    @Override
+    public long count() {
+        long total = 0;
+        for (Long count : onAllShards(shard -> List.of(shard.queryForObject("SELECT COUNT(*) FROM users", Long.class)))) {
+            total += count;
+        }
+        return total;
+    }
+
+    // --- writes ---
+
+    @Override
+    public <S extends User> S save(S user) {
+        int target = ring.shardFor(user.getEmail());
+        if (user.getId() == null) {
+            user.setId(nextId(target));
+            user.setVersion(0);
+            insert(shards.get(target), user);
+            return user;
+        }
+
+        int current = locate(user.getId());
+        if (current < 0) {
+            insert(shards.get(target), user);
+            return user;
+        }
+        long expected = user.getVersion();
+        if (current == target) {
+            int updated = shards.get(current).update(
+                    "UPDATE users SET name = ?, email = ?, password = ?, role = ?, version = version + 1 "
+                            + "WHERE id = ? AND version = ?",
+                    user.getName(), user.getEmail(), user.getPassword(), roleName(user), user.getId(), expected);
+            if (updated == 0) {
+                throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+            }
+            user.setVersion(expected + 1);
+            return user;
+        }
+        move(user, current, target, expected);
+        return user;
+    }
+
+    @Override
+    public <S extends User> S saveAndFlush(S user) {
+        return save(user);
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    // shutting down anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * The user's email changed shards: copy the row with the update applied, then remove the
+     * old row only if nobody changed it meanwhile, otherwise take the copy back.
+     */
+    private void move(User user, int from, int to, long expected) {
+        Optional<User> stored = findOn(from, user.getId());
+        if (stored.isEmpty() || stored.get().getVersion() != expected) {
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+        User moved = new User(user.getName(), user.getEmail(), user.getPassword(), user.getRole());
+        moved.setId(user.getId());
+        moved.setLastLoginAt(stored.get().getLastLoginAt());
+        moved.setLoginCount(stored.get().getLoginCount());
+        moved.setVersion(expected + 1);
+        insert(shards.get(to), moved);
+        int removed = shards.get(from).update("DELETE FROM users WHERE id = ? AND version = ?", user.getId(), expected);
+        if (removed == 0) {
+            shards.get(to).update("DELETE FROM users WHERE id = ? AND version = ?", user.getId(), expected + 1);
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+        user.setVersion(expected + 1);
+    }
+
+    private static void insert(JdbcTemplate shard, User user) {
+        shard.update(INSERT, user.getId(), user.getName(), user.getEmail(), user.getPassword(), roleName(user),
+                user.getLastLoginAt() == null ? null : Timestamp.from(user.getLastLoginAt()),
+                user.getLoginCount(), user.getVersion());
+    }
+
+    /**
+     * Hi/lo allocation: one sequence update per block keeps id generation off the write path
+     */
+    private long nextId(int shard) {
+        synchronized (nextIds) {
+            if (nextIds[shard] == 0 || nextIds[shard] >= idLimits[shard]) {
+                long limit = transactions.get(shard).execute(status -> {
+                    JdbcTemplate jdbc = shards.get(shard);
+                    jdbc.update("UPDATE user_id_sequence SET next_value = next_value + ? WHERE id = 0", idBlockSize);
+                    return jdbc.queryForObject("SELECT next_value FROM user_id_sequence WHERE id = 0", Long.class);
+                });
+                nextIds[shard] = limit - idBlockSize;
+                idLimits[shard] = limit;
+            }
+            return ShardedIds.encode(shard, nextIds[shard]++);
+        }
+    }
+
+    private Optional<User> findOn(int shard, Long id) {
+        List<User> users = shards.get(shard).query(COLUMNS + "WHERE id = ?", USER_ROW, id);
+        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+    }
+
+    /**
+     * The shard holding the id, or -1
+     */
+    private int locate(Long id) {
+        if (id == null) {
+            return -1;
+        }
+        for (int shard : shardsForId(id)) {
+            Integer found = shards.get(shard).queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id);
+            if (found != null && found > 0) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+
+    private int[] shardsForEmail(String email) {
+        int owner = ring.shardFor(email);
+        if (previousRing == null) {
+            return new int[]{owner};
+        }
+        int previous = previousRing.shardFor(email);
+        return previous == owner ? new int[]{owner} : new int[]{owner, previous};
+    }
+
+    /**
+     * The home shard first, then the rest
+     */
+    private int[] shardsForId(long id) {
+        int home = homeShard(id);
+        int[] order = new int[shards.size()];
+        order[0] = home;
+        for (int shard = 0, i = 1; shard < shards.size(); shard++) {
+            if (shard != home) {
+                order[i++] = shard;
+            }
+        }
+        return order;
+    }
+
+    private int homeShard(long id) {
+        int shard = ShardedIds.shardOf(id);
+        return shard < shards.size() ? shard : 0;
+    }
+
+    private <T> List<T> onAllShards(Function<JdbcTemplate, List<T>> query) {
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(shards.size());
+        for (JdbcTemplate shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), fanOut));
+        }
+        return join(futures);
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<List<T>>> futures) {
+        List<T> merged = new ArrayList<>();
+        for (CompletableFuture<List<T>> future : futures) {
+            try {
+                merged.addAll(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return merged;
+    }
+
+    // a row copied by an interrupted move can briefly exist on two shards
+    private static List<User> distinctById(List<User> users) {
+        Set<Long> seen = new HashSet<>();
+        List<User> distinct = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (seen.add(user.getId())) {
+                distinct.add(user);
+            }
+        }
+        return distinct;
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static String roleName(User user) {
+        return (user.getRole() != null ? user.getRole() : Role.USER).name();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo1.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes {@link ShardedUserRepository} the application's UserStore in place of the JPA UserRepository when sharding.enabled is set.
+ * The primary datasource keeps every other table. Login tracking and the response cache ETags
+ * go to the shards as well; the user directory and the archive work on the primary users table,
+ * and outbox rows cannot commit with a user written to a shard, so startup refuses any of them.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardingConfig.class);
+
+    /**
+     * @param urls one JDBC url per shard; the order is the shard number and must never change
+     * @param previousShardCount the shard count before shards were added, while the Resharder runs; 0 otherwise
+     */
+    @Bean
+    @Primary
+    public ShardedUserRepository shardedUserRepository(@Value("${sharding.urls}") List<String> urls,
+                                                       @Value("${sharding.username:}") String username,
+                                                       @Value("${sharding.password:}") String password,
+                                                       @Value("${sharding.virtual-nodes:128}") int virtualNodes,
+                                                       @Value("${sharding.previous-shard-count:0}") int previousShardCount,
+                                                       @Value("${sharding.id-block-size:100}") int idBlockSize,
+                                                       @Value("${user.directory.enabled:false}") boolean directoryEnabled,
+                                                       @Value("${user.archive.enabled:false}") boolean archiveEnabled,
+                                                       @Value("${outbox.enabled:false}") boolean outboxEnabled) {
+        if (directoryEnabled || archiveEnabled || outboxEnabled) {
+            throw new IllegalStateException("sharding.enabled=true cannot run with user.directory.enabled, "
+                    + "user.archive.enabled or outbox.enabled");
+        }
+        List<DataSource> dataSources = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            dataSources.add(DataSourceBuilder.create().url(url.trim()).username(username).password(password).build());
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(urls.size(), virtualNodes);
+        ConsistentHashRing previousRing = previousShardCount > 0 && previousShardCount != urls.size()
+                ? new ConsistentHashRing(previousShardCount, virtualNodes)
+                : null;
+        ShardedUserRepository repository = new ShardedUserRepository(dataSources, ring, previousRing, idBlockSize);
+        repository.initializeSchema();
+        logger.info("Users sharded over {} databases{}", urls.size(),
+                previousRing == null ? "" : ", also checking the previous " + previousShardCount + "-shard layout");
+        return repository;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo1.benchmark;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.security.CompactTokenCodec;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse cost and Authorization header size of HS256 JWTs versus compact c1 tokens.
+ * Header sizes are printed once per fork. Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.example.demo1.benchmark.CompactTokenBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactTokenBenchmark {
+
+    private static final byte[] SECRET = "benchmark-secret-benchmark-secret-benchmark-secret".getBytes();
+
+    private JwtParser jwtParser;
+    private CompactTokenCodec compactCodec;
+    private String jwt;
+    private String compact;
+
+    @Setup
+    public void setup() {
+        long now = System.currentTimeMillis();
+        jwtParser = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET)).build();
+        compactCodec = new CompactTokenCodec(SECRET);
+        jwt = Jwts.builder()
+                .claim("role", "USER")
+                .setSubject("firstname.lastname@example.com")
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + 900_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET), SignatureAlgorithm.HS256)
+                .compact();
+        compact = compactCodec.encode(48_213L, Role.USER, now / 1000, (now + 900_000) / 1000, UUID.randomUUID());
+
+        System.out.printf("%nAuthorization header bytes: JWT %d, compact %d%n",
+                ("Bearer " + jwt).length(), ("Bearer " + compact).length());
+    }
+
+    @Benchmark
+    public Claims parseJwt() {
+        return jwtParser.parseClaimsJws(jwt).getBody();
+    }
+
+    @Benchmark
+    public Claims parseCompact() {
+        return compactCodec.decode(compact);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CompactTokenBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo1.benchmark;
+
+import com.example.demo1.model.IntrospectionResult;
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserRepository;
+import com.example.demo1.security.SigningKeyRing;
+import com.example.demo1.service.JwtService;
+import com.example.demo1.service.TokenIntrospectionService;
+import com.example.demo1.service.TokenRevocationService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Batch introspection versus one call per token, at the service level.
+ * The repository is stubbed with a fixed per-query latency standing in for the
+ * database round trip; per-call HTTP overhead comes on top of the single-token
+ * numbers in production. Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.example.demo1.benchmark.IntrospectionBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntrospectionBenchmark {
+
+    @Param({"50", "500"})
+    private int tokens;
+
+    @Param({"20", "40"})
+    private int distinctUsers;
+
+    @Param({"300"})
+    private long queryLatencyMicros;
+
+    private TokenIntrospectionService introspectionService;
+    private List<String> batch;
+
+    @Setup
+    public void setup() {
+        SigningKeyRing signingKeyRing = new SigningKeyRing();
+        ReflectionTestUtils.setField(signingKeyRing, "algorithm", "HS256");
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", "benchmark-secret-benchmark-secret-benchmark-secret");
+        ReflectionTestUtils.setField(jwtService, "expiration", 900_000L);
+        ReflectionTestUtils.setField(jwtService, "signingKeyRing", signingKeyRing);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < distinctUsers; i++) {
+            users.add(new User("User " + i, "user" + i + "@example.com", "x", Role.USER));
+        }
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByEmailIn(anyCollection())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(queryLatencyMicros * 1_000);
+            Collection<?> emails = invocation.getArgument(0);
+            return users.stream().filter(user -> emails.contains(user.getEmail())).toList();
+        });
+        Mockito.when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(queryLatencyMicros * 1_000);
+            String email = invocation.getArgument(0);
+            return users.stream().filter(user -> user.getEmail().equals(email)).findFirst();
+        });
+        TokenRevocationService revocationService = Mockito.mock(TokenRevocationService.class);
+        Mockito.when(revocationService.isRevoked(any(), any(), any())).thenReturn(false);
+
+        introspectionService = new TokenIntrospectionService();
+        ReflectionTestUtils.setField(introspectionService, "jwtService", jwtService);
+        ReflectionTestUtils.setField(introspectionService, "tokenRevocationService", revocationService);
+        ReflectionTestUtils.setField(introspectionService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(introspectionService, "parallelism", 0);
+        ReflectionTestUtils.setField(introspectionService, "chunkSize", 32);
+        ReflectionTestUtils.invokeMethod(introspectionService, "init");
+
+        batch = new ArrayList<>();
+        for (int i = 0; i < tokens; i++) {
+            batch.add(jwtService.generateToken("user" + (i % distinctUsers) + "@example.com", "USER"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(introspectionService, "shutdown");
+    }
+
+    @Benchmark
+    public List<IntrospectionResult> batch() {
+        return introspectionService.introspect(batch);
+    }
+
+    @Benchmark
+    public List<IntrospectionResult> singleTokenCalls() {
+        List<IntrospectionResult> results = new ArrayList<>(batch.size());
+        for (String token : batch) {
+            results.add(introspectionService.introspect(List.of(token)).get(0));
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IntrospectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo1.benchmark;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign and verify cost of HS256 versus ES256 access tokens.
+ * Numbers only mean something on the hardware the service runs on, so run it there:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.example.demo1.benchmark.TokenSigningBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenSigningBenchmark {
+
+    private SecretKey hmacKey;
+    private KeyPair ecKeyPair;
+    private JwtParser hmacParser;
+    private JwtParser ecParser;
+    private String hmacToken;
+    private String ecToken;
+
+    @Setup
+    public void setup() {
+        hmacKey = Keys.hmacShaKeyFor("benchmark-secret-benchmark-secret-benchmark-secret".getBytes());
+        ecKeyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        hmacParser = Jwts.parserBuilder().setSigningKey(hmacKey).build();
+        ecParser = Jwts.parserBuilder().setSigningKey(ecKeyPair.getPublic()).build();
+        hmacToken = signHs256();
+        ecToken = signEs256();
+    }
+
+    @Benchmark
+    public String signHs256() {
+        return claims().signWith(hmacKey, SignatureAlgorithm.HS256).compact();
+    }
+
+    @Benchmark
+    public String signEs256() {
+        return claims()
+                .setHeaderParam("kid", "benchmark")
+                .signWith(ecKeyPair.getPrivate(), SignatureAlgorithm.ES256)
+                .compact();
+    }
+
+    @Benchmark
+    public Object verifyHs256() {
+        return hmacParser.parseClaimsJws(hmacToken).getBody();
+    }
+
+    @Benchmark
+    public Object verifyEs256() {
+        return ecParser.parseClaimsJws(ecToken).getBody();
+    }
+
+    private static io.jsonwebtoken.JwtBuilder claims() {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .claim("role", "USER")
+                .setSubject("user@example.com")
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + 900_000));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenSigningBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
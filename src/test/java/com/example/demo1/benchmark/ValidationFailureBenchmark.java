@@ -0,0 +1,113 @@
+package com.example.demo1.benchmark;
+
+import com.example.demo1.audit.AuditLog;
+import com.example.demo1.cache.UserDirectory;
+import com.example.demo1.model.User;
+import com.example.demo1.model.ValidationResult;
+import com.example.demo1.service.CustomUserDetailsService;
+import com.example.demo1.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting bad input: a validation result versus the exception the old paths threw,
+ * and a fresh UsernameNotFoundException per unknown user versus the shared stackless one.
+ * Stacks here are a few frames deep; behind the servlet and security filter chains they are
+ * over a hundred, and capturing them costs proportionally more. Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.example.demo1.benchmark.ValidationFailureBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationFailureBenchmark {
+
+    private static final String UNKNOWN_EMAIL = "nobody@example.com";
+
+    private UserService userService;
+    private CustomUserDetailsService userDetailsService;
+    private User invalidUser;
+
+    @Setup
+    public void setup() {
+        // plain stand-ins rather than mocks: mock dispatch would dominate the numbers
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "auditLog", new AuditLog()); // never started, records nothing
+
+        UserDirectory userDirectory = new UserDirectory() {
+            @Override
+            public boolean isLoaded() {
+                return true;
+            }
+
+            @Override
+            public Optional<User> findByEmail(String email) {
+                return Optional.empty();
+            }
+        };
+        userDetailsService = new CustomUserDetailsService();
+        ReflectionTestUtils.setField(userDetailsService, "userDirectory", userDirectory);
+
+        invalidUser = new User("J", "not-an-email", "short", null);
+    }
+
+    @Benchmark
+    public int registerResult() {
+        ValidationResult<User> result = userService.register(invalidUser);
+        return result.getErrors().size();
+    }
+
+    @Benchmark
+    public String registerThrowing() {
+        try {
+            return userService.registerUser(invalidUser).getEmail();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public Object unknownUserOptional() {
+        return userDetailsService.findByEmail(UNKNOWN_EMAIL).orElse(null);
+    }
+
+    @Benchmark
+    public String unknownUserSharedException() {
+        try {
+            return userDetailsService.loadUserByUsername(UNKNOWN_EMAIL).getUsername();
+        } catch (UsernameNotFoundException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * What loadUserByUsername threw before: a new exception with the email concatenated in
+     */
+    @Benchmark
+    public String unknownUserFreshException() {
+        try {
+            UserDetails details = userDetailsService.findByEmail(UNKNOWN_EMAIL)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + UNKNOWN_EMAIL));
+            return details.getUsername();
+        } catch (UsernameNotFoundException e) {
+            return e.getMessage();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ValidationFailureBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
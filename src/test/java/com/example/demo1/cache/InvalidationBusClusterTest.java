@@ -0,0 +1,288 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several nodes in one JVM, each with its own user cache and bus, wired over a
+ * real transport. Every round caches a user on all nodes, changes it on one and
+ * measures how long the others take to drop it, while background writers keep
+ * the bus busy with unrelated invalidations.
+ */
+class InvalidationBusClusterTest {
+
+    private static final int NODES = 3;
+    // the first rounds converge slowly while the JIT and the database warm up
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 100;
+    private static final long MAX_CONVERGENCE_MS = 1000;
+    // background changes per node: about 2000 per second
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final byte[] CLUSTER_SECRET = "test-cluster-secret".getBytes(StandardCharsets.UTF_8);
+
+    private final List<InvalidationBus> buses = new ArrayList<>();
+    private final List<UserCache> caches = new ArrayList<>();
+    private final AtomicBoolean loadRunning = new AtomicBoolean();
+    private final List<Thread> loadThreads = new ArrayList<>();
+    private HikariDataSource dataSource;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        loadRunning.set(false);
+        for (Thread thread : loadThreads) {
+            thread.join();
+        }
+        for (InvalidationBus bus : buses) {
+            bus.shutdown();
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void jdbcTransport_convergesUnderWriteLoad() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:invalidations;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (int i = 0; i < NODES; i++) {
+            startNode("jdbc-" + i, new JdbcInvalidationTransport(jdbcTemplate, 10, 600_000));
+        }
+
+        long worstMs = measureConvergence();
+        assertTrue(worstMs < MAX_CONVERGENCE_MS, "slowest convergence took " + worstMs + " ms");
+    }
+
+    @Test
+    void udpTransport_convergesUnderWriteLoad() throws Exception {
+        int[] ports = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            try (DatagramSocket socket = new DatagramSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+        }
+        for (int i = 0; i < NODES; i++) {
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (int j = 0; j < NODES; j++) {
+                if (j != i) {
+                    peers.add(new InetSocketAddress("127.0.0.1", ports[j]));
+                }
+            }
+            startNode("udp-" + i, new UdpInvalidationTransport("127.0.0.1", ports[i], peers, 2, CLUSTER_SECRET));
+        }
+
+        long worstMs = measureConvergence();
+        assertTrue(worstMs < MAX_CONVERGENCE_MS, "slowest convergence took " + worstMs + " ms");
+    }
+
+    @Test
+    void receive_dropsDuplicatesAndOwnMessages() throws IOException {
+        InvalidationBus bus = startNode("node-a", new NoopTransport());
+        UserCache cache = caches.get(0);
+
+        cache.getById(1L, loader());
+        bus.receive(List.of(new InvalidationMessage("node-a", 1, 1L, "user1@example.com")));
+        assertTrue(cache.contains(1L), "a node must ignore its own messages");
+
+        bus.receive(List.of(new InvalidationMessage("node-b", 7, 1L, "user1@example.com")));
+        assertFalse(cache.contains(1L));
+
+        cache.getById(1L, loader());
+        bus.receive(List.of(new InvalidationMessage("node-b", 7, 1L, "user1@example.com")));
+        assertTrue(cache.contains(1L), "a redelivered message must not be applied twice");
+    }
+
+    @Test
+    void udpEncoding_splitsLargeBatchesAndRoundTrips() {
+        List<InvalidationMessage> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new InvalidationMessage("node-a", i, i, i % 10 == 0 ? null : "user" + i + "@example.com"));
+        }
+
+        UdpInvalidationTransport transport = new UdpInvalidationTransport("127.0.0.1", 0, List.of(), 1, CLUSTER_SECRET);
+        List<ByteBuffer> datagrams = transport.encode(batch);
+        assertTrue(datagrams.size() > 1);
+
+        List<InvalidationMessage> decoded = new ArrayList<>();
+        for (ByteBuffer datagram : datagrams) {
+            assertTrue(datagram.remaining() <= UdpInvalidationTransport.MAX_DATAGRAM_BYTES);
+            decoded.addAll(transport.decode(datagram));
+        }
+        assertEquals(batch, decoded);
+        assertNull(transport.decode(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+    }
+
+    @Test
+    void udpDecoding_rejectsTamperedAndForeignDatagrams() {
+        UdpInvalidationTransport transport = new UdpInvalidationTransport("127.0.0.1", 0, List.of(), 1, CLUSTER_SECRET);
+        UdpInvalidationTransport stranger = new UdpInvalidationTransport("127.0.0.1", 0, List.of(), 1,
+                "some-other-secret".getBytes(StandardCharsets.UTF_8));
+        List<InvalidationMessage> batch = List.of(new InvalidationMessage("node-a", 1, 1L, "user1@example.com"));
+
+        ByteBuffer tampered = transport.encode(batch).get(0);
+        tampered.put(20, (byte) (tampered.get(20) ^ 1));
+        assertNull(transport.decode(tampered));
+        assertNull(transport.decode(stranger.encode(batch).get(0)));
+        assertEquals(batch, transport.decode(transport.encode(batch).get(0)));
+    }
+
+    @Test
+    void udpTransport_dropsDatagramsFromUnlistedSenders() throws Exception {
+        int[] ports = new int[3];
+        for (int i = 0; i < ports.length; i++) {
+            try (DatagramSocket socket = new DatagramSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+        }
+        InetSocketAddress receiverAddress = new InetSocketAddress("127.0.0.1", ports[0]);
+        UdpInvalidationTransport receiver = new UdpInvalidationTransport("127.0.0.1", ports[0],
+                List.of(new InetSocketAddress("127.0.0.1", ports[1])), 1, CLUSTER_SECRET);
+        UdpInvalidationTransport peer = new UdpInvalidationTransport("127.0.0.1", ports[1], List.of(receiverAddress), 1, CLUSTER_SECRET);
+        UdpInvalidationTransport outsider = new UdpInvalidationTransport("127.0.0.1", ports[2], List.of(receiverAddress), 1, CLUSTER_SECRET);
+
+        List<InvalidationMessage> received = new CopyOnWriteArrayList<>();
+        receiver.start(received::addAll);
+        peer.start(batch -> { });
+        outsider.start(batch -> { });
+        try {
+            // the outsider knows the secret but is not a listed peer; it sends first so its datagram is seen first
+            outsider.publish(List.of(new InvalidationMessage("outsider", 1, 1L, null)));
+            peer.publish(List.of(new InvalidationMessage("peer", 1, 2L, null)));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(50);
+            assertEquals(List.of(new InvalidationMessage("peer", 1, 2L, null)), received);
+        } finally {
+            receiver.close();
+            peer.close();
+            outsider.close();
+        }
+    }
+
+    @Test
+    void udpTransport_refusesTheWildcardAddress() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UdpInvalidationTransport("0.0.0.0", 0, List.of(), 1, CLUSTER_SECRET));
+    }
+
+    private InvalidationBus startNode(String nodeId, InvalidationTransport transport) throws IOException {
+        UserCache cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMs", TimeUnit.MINUTES.toMillis(10));
+        ReflectionTestUtils.setField(cache, "maxEntries", 100_000);
+
+        InvalidationBus bus = new InvalidationBus();
+        ReflectionTestUtils.setField(bus, "userCache", cache);
+        ReflectionTestUtils.setField(bus, "userDirectory", new UserDirectory());
+        ReflectionTestUtils.setField(bus, "nodeId", nodeId);
+        ReflectionTestUtils.setField(bus, "batchIntervalMs", 5L);
+        ReflectionTestUtils.setField(bus, "maxBatch", 256);
+        ReflectionTestUtils.setField(bus, "dedupWindow", 65536);
+        bus.start(transport);
+
+        caches.add(cache);
+        buses.add(bus);
+        return bus;
+    }
+
+    /**
+     * @return the slowest measured round, in milliseconds
+     */
+    private long measureConvergence() throws InterruptedException {
+        startBackgroundWrites();
+        long[] elapsed = new long[ROUNDS];
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long userId = round + 1;
+            for (UserCache cache : caches) {
+                cache.getById(userId, loader());
+                assertTrue(cache.contains(userId));
+            }
+
+            int writer = round % NODES;
+            long started = System.nanoTime();
+            buses.get(writer).onUserChanged(new UserChangedEvent(userId, "user" + userId + "@example.com"));
+            for (UserCache cache : caches) {
+                while (cache.contains(userId)) {
+                    assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(MAX_CONVERGENCE_MS * 10),
+                            "user " + userId + " never converged");
+                    Thread.sleep(1);
+                }
+            }
+            if (round >= WARMUP_ROUNDS) {
+                elapsed[round - WARMUP_ROUNDS] = System.nanoTime() - started;
+            }
+        }
+
+        Arrays.sort(elapsed);
+        System.out.printf("Converged %d rounds: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", ROUNDS,
+                elapsed[ROUNDS / 2] / 1e6, elapsed[ROUNDS * 99 / 100] / 1e6, elapsed[ROUNDS - 1] / 1e6);
+        return TimeUnit.NANOSECONDS.toMillis(elapsed[ROUNDS - 1]);
+    }
+
+    private void startBackgroundWrites() {
+        loadRunning.set(true);
+        for (InvalidationBus bus : buses) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (loadRunning.get()) {
+                    long userId = 1000 + random.nextInt(10_000);
+                    bus.onUserChanged(new UserChangedEvent(userId, "load" + userId + "@example.com"));
+                    LockSupport.parkNanos(WRITE_INTERVAL_NANOS);
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            loadThreads.add(thread);
+        }
+    }
+
+    private static Function<Long, Optional<User>> loader() {
+        return id -> {
+            User user = new User("User " + id, "user" + id + "@example.com", "password", Role.USER);
+            user.setId(id);
+            return Optional.of(user);
+        };
+    }
+
+    private static final class NoopTransport implements InvalidationTransport {
+        @Override
+        public void start(Consumer<List<InvalidationMessage>> receiver) {
+        }
+
+        @Override
+        public void publish(List<InvalidationMessage> batch) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
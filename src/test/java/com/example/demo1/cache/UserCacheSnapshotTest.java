@@ -0,0 +1,135 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAndRead_roundTripsUsers() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            users.add(user(id, id % 7, id % 50 == 0 ? Role.ADMIN : Role.USER));
+        }
+        Path file = dir.resolve("users.snap");
+
+        assertEquals(5000, UserCacheSnapshot.write(file, users));
+        List<User> read = UserCacheSnapshot.read(file);
+
+        assertEquals(5000, read.size());
+        User sample = read.get(49);
+        assertEquals(50L, sample.getId());
+        assertEquals(50 % 7, sample.getVersion());
+        assertEquals(Role.ADMIN, sample.getRole());
+        assertEquals("user50@example.com", sample.getEmail());
+        assertNull(sample.getPassword(), "password hashes stay out of the snapshot file");
+        assertFalse(Files.exists(dir.resolve("users.snap.tmp")));
+    }
+
+    @Test
+    void read_rejectsCorruptSnapshot() throws IOException {
+        Path file = dir.resolve("users.snap");
+        UserCacheSnapshot.write(file, List.of(user(1, 0, Role.USER), user(2, 0, Role.USER)));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 3);
+            raf.write(raf.read() ^ 0x01);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> UserCacheSnapshot.read(file));
+        assertTrue(error.getMessage().contains("checksum"));
+        assertTrue(UserCacheSnapshot.read(dir.resolve("missing.snap")).isEmpty());
+    }
+
+    @Test
+    void restore_verifiesEntriesLazilyAgainstRowVersions() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:snapshot" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, version BIGINT NOT NULL, password VARCHAR(100))");
+        for (long id = 1; id <= 100; id++) {
+            // user 2 changed after the snapshot was taken, user 3 was deleted
+            if (id != 3) {
+                jdbcTemplate.update("INSERT INTO users (id, version, password) VALUES (?, ?, ?)", id, id == 2 ? 1 : 0, "$2a$10$hash" + id);
+            }
+        }
+
+        UserCache before = cache(null);
+        for (long id = 1; id <= 100; id++) {
+            long userId = id;
+            before.getById(userId, ignored -> Optional.of(user(userId, 0, Role.USER)));
+        }
+        Path file = dir.resolve("users.snap");
+        before.snapshot(file);
+
+        UserCache after = cache(jdbcTemplate);
+        after.restore(file);
+        AtomicInteger loads = new AtomicInteger();
+        Function<Long, Optional<User>> loader = id -> {
+            loads.incrementAndGet();
+            return Optional.of(user(id, 1, Role.USER));
+        };
+
+        // restored longer ago than the TTL: unverified entries are not subject to it
+        ReflectionTestUtils.setField(after, "ttlMs", 0L);
+        User first = after.getById(1L, loader).orElseThrow();
+        ReflectionTestUtils.setField(after, "ttlMs", 60_000L);
+        assertEquals("user1@example.com", first.getEmail());
+        assertEquals("$2a$10$hash1", first.getPassword(), "the hash is filled in when the entry is verified");
+        assertEquals(0, loads.get(), "an unchanged entry is served from the snapshot");
+        // the first hit verified the whole batch: the changed and deleted users are gone already
+        assertFalse(after.contains(2L));
+        assertFalse(after.contains(3L));
+        assertTrue(after.contains(100L));
+
+        assertEquals(1, after.getById(2L, loader).orElseThrow().getVersion());
+        assertEquals(1, loads.get());
+        assertEquals("$2a$10$hash50", after.getByEmail("USER50@example.com", email -> Optional.empty()).orElseThrow().getPassword());
+    }
+
+    @Test
+    void restore_ignoresUnreadableSnapshot() throws IOException {
+        Path file = dir.resolve("users.snap");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        UserCache cache = cache(null);
+        cache.restore(file);
+
+        assertFalse(cache.contains(1L));
+    }
+
+    private static UserCache cache(JdbcTemplate jdbcTemplate) {
+        UserCache cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 10_000);
+        ReflectionTestUtils.setField(cache, "snapshotIntervalMs", 300_000L);
+        return cache;
+    }
+
+    private static User user(long id, long version, Role role) {
+        User user = new User("User " + id, "user" + id + "@example.com", "$2a$10$hash" + id, role);
+        user.setId(id);
+        user.setVersion(version);
+        return user;
+    }
+}
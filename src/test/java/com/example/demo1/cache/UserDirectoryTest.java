@@ -0,0 +1,177 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDirectoryTest {
+
+    private static final int USERS = 2000;
+
+    private JdbcTemplate jdbcTemplate;
+    private UserDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:directory" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(50) NOT NULL, "
+                + "email VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, role VARCHAR(20) NOT NULL, "
+                + "version BIGINT NOT NULL DEFAULT 0)");
+        List<Object[]> rows = new ArrayList<>();
+        for (long id = 1; id <= USERS; id++) {
+            rows.add(new Object[]{id, "User " + id, "user" + id + "@example.com", "$2a$10$hash" + id,
+                    id % 100 == 0 ? "ADMIN" : "USER"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, name, email, password, role) VALUES (?, ?, ?, ?, ?)", rows);
+
+        directory = new UserDirectory();
+        ReflectionTestUtils.setField(directory, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(directory, "enabled", true);
+        ReflectionTestUtils.setField(directory, "loadParallelism", 4);
+        ReflectionTestUtils.setField(directory, "loadRangeSize", 300L);
+    }
+
+    @Test
+    void load_scansEveryRangeAndAnswersLookups() {
+        directory.load();
+
+        assertTrue(directory.isLoaded());
+        assertEquals(USERS, directory.size());
+        assertEquals(1234, directory.findIdByEmail("user1234@example.com"));
+        assertEquals(1234, directory.findIdByEmail("  USER1234@Example.COM "));
+        assertEquals(-1, directory.findIdByEmail("nobody@example.com"));
+        assertTrue(directory.isAdmin(500));
+        assertFalse(directory.isAdmin(501));
+        assertEquals(-1, directory.roleOrdinalOf(USERS + 1));
+
+        User user = directory.findByEmail("user42@example.com").orElseThrow();
+        assertEquals(42L, user.getId());
+        assertEquals("User 42", user.getName());
+        assertEquals("$2a$10$hash42", user.getPassword());
+        assertEquals(Role.USER, user.getRole());
+    }
+
+    @Test
+    void put_replacesRecordAndMovesEmail() {
+        directory.load();
+
+        User changed = new User("Renamed", "New.Address@example.com", "$2a$10$changed", Role.ADMIN);
+        changed.setId(7L);
+        directory.put(changed);
+
+        assertEquals(-1, directory.findIdByEmail("user7@example.com"));
+        assertEquals(7, directory.findIdByEmail("new.address@example.com"));
+        assertTrue(directory.isAdmin(7));
+        assertEquals("Renamed", directory.findById(7).orElseThrow().getName());
+        assertEquals(USERS, directory.size());
+
+        directory.remove(7);
+        assertTrue(directory.findById(7).isEmpty());
+        assertEquals(-1, directory.findIdByEmail("new.address@example.com"));
+        assertEquals(USERS - 1, directory.size());
+    }
+
+    @Test
+    void put_growsTablesPastInitialCapacity() {
+        directory.load();
+
+        for (long id = USERS + 1; id <= USERS * 5; id++) {
+            User user = new User("User " + id, "user" + id + "@example.com", "$2a$10$hash" + id, Role.USER);
+            user.setId(id);
+            directory.put(user);
+        }
+        // rewrite every record a few times to pile up garbage and tombstones
+        for (int pass = 0; pass < 3; pass++) {
+            for (long id = 1; id <= USERS; id++) {
+                User user = new User("Pass " + pass, "user" + id + "@example.com", "$2a$10$hash" + id, Role.USER);
+                user.setId(id);
+                directory.put(user);
+            }
+        }
+
+        assertEquals(USERS * 5, directory.size());
+        for (long id = 1; id <= USERS * 5; id++) {
+            assertEquals(id, directory.findIdByEmail("user" + id + "@example.com"));
+        }
+        assertEquals("Pass 2", directory.findById(1).orElseThrow().getName());
+    }
+
+    @Test
+    void findByEmail_matchesNonAsciiAddresses() {
+        jdbcTemplate.update("INSERT INTO users (id, name, email, password, role) VALUES (?, ?, ?, ?, ?)",
+                USERS + 1, "Jörg", "jörg@exämple.com", "$2a$10$x", "USER");
+        directory.load();
+
+        assertEquals(USERS + 1, directory.findIdByEmail("JÖRG@EXÄMPLE.COM"));
+        assertEquals("Jörg", directory.findByEmail("jörg@exämple.com").orElseThrow().getName());
+    }
+
+    @Test
+    void refresh_reloadsChangedAndDeletedRows() {
+        directory.load();
+
+        jdbcTemplate.update("UPDATE users SET role = 'ADMIN' WHERE id = 5");
+        jdbcTemplate.update("DELETE FROM users WHERE id = 6");
+        directory.refresh(5);
+        directory.refresh(6);
+
+        assertTrue(directory.isAdmin(5));
+        assertTrue(directory.findById(6).isEmpty());
+    }
+
+    @Test
+    void put_olderVersion_KeepsNewerRecord() {
+        directory.load();
+        jdbcTemplate.update("UPDATE users SET role = 'ADMIN', version = 3 WHERE id = 8");
+        directory.refresh(8);
+
+        // a write that read the row before the change arrives last
+        User stale = new User("User 8", "user8@example.com", "$2a$10$hash8", Role.USER);
+        stale.setId(8L);
+        stale.setVersion(2);
+        directory.put(stale);
+
+        assertTrue(directory.isAdmin(8));
+        assertEquals(3, directory.findById(8).orElseThrow().getVersion());
+    }
+
+    @Test
+    void onStarted_WithoutTransport_Refuses() {
+        ReflectionTestUtils.setField(directory, "transportType", "none");
+
+        assertThrows(IllegalStateException.class, directory::onStarted);
+    }
+
+    @Test
+    void primitiveLookups_doNotAllocate() {
+        directory.load();
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long sum = 0;
+        for (int warmup = 0; warmup < 20_000; warmup++) {
+            sum += directory.findIdByEmail("user1234@example.com") + directory.roleOrdinalOf(warmup % USERS);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            sum += directory.findIdByEmail("user1234@example.com");
+            sum += directory.isAdmin(i % USERS) ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(sum > 0);
+        // allow for the measurement itself; one allocation per lookup would be megabytes
+        assertTrue(allocated < 16 * 1024, "lookups allocated " + allocated + " bytes");
+    }
+}
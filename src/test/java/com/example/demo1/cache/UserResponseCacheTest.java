@@ -0,0 +1,152 @@
+package com.example.demo1.cache;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserResponseCacheTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:responses" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, version BIGINT NOT NULL, "
+                + "login_count BIGINT NOT NULL)");
+        for (long id = 1; id <= 10; id++) {
+            jdbcTemplate.update("INSERT INTO users (id, version, login_count) VALUES (?, 0, 0)", id);
+        }
+
+        cache = new UserResponseCache();
+        ReflectionTestUtils.setField(cache, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 4);
+    }
+
+    @Test
+    void userETag_changesWithVersionAndLoginCount() {
+        String initial = cache.userETag(3);
+        assertNotNull(initial);
+        assertTrue(initial.startsWith("\"") && initial.endsWith("\""));
+        assertEquals(initial, cache.userETag(3));
+
+        jdbcTemplate.update("UPDATE users SET login_count = login_count + 1 WHERE id = 3");
+        String afterLogin = cache.userETag(3);
+        assertNotEquals(initial, afterLogin);
+
+        jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE id = 3");
+        assertNotEquals(afterLogin, cache.userETag(3));
+        assertNull(cache.userETag(99));
+    }
+
+    @Test
+    void getUser_servesCachedBytesUntilTheRowChanges() {
+        AtomicInteger loads = new AtomicInteger();
+        long[] version = {0};
+
+        for (int i = 0; i < 5; i++) {
+            String etag = cache.userETag(3);
+            UserResponseCache.Tagged tagged = cache.getUser(3, etag, () -> {
+                loads.incrementAndGet();
+                return Optional.of(user(3, version[0], 0));
+            }).orElseThrow();
+            assertEquals(etag, tagged.etag());
+        }
+        assertEquals(1, loads.get());
+
+        jdbcTemplate.update("UPDATE users SET version = 1 WHERE id = 3");
+        version[0] = 1;
+        String etag = cache.userETag(3);
+        UserResponseCache.Tagged reloaded = cache.getUser(3, etag, () -> {
+            loads.incrementAndGet();
+            return Optional.of(user(3, version[0], 0));
+        }).orElseThrow();
+
+        assertEquals(2, loads.get());
+        assertEquals(etag, reloaded.etag());
+        assertTrue(new String(reloaded.json(), StandardCharsets.UTF_8).contains("\"version\":1"));
+    }
+
+    @Test
+    void getUser_tagsWhatWasLoaded() {
+        String staleTag = cache.userETag(3);
+        // the row moved on between reading the ETag and loading the user
+        UserResponseCache.Tagged tagged = cache.getUser(3, staleTag, () -> Optional.of(user(3, 2, 5))).orElseThrow();
+
+        assertNotEquals(staleTag, tagged.etag());
+        assertSame(tagged, cache.getUser(3, tagged.etag(), () -> fail("served from the cache")).orElseThrow());
+        assertTrue(cache.getUser(4, cache.userETag(4), Optional::empty).isEmpty());
+    }
+
+    @Test
+    void listETag_matchesLoadedListAndChangesWhenMembersChange() {
+        List<User> users = List.of(user(1, 0, 0), user(2, 0, 0), user(3, 0, 0), user(4, 0, 0), user(5, 0, 0),
+                user(6, 0, 0), user(7, 0, 0), user(8, 0, 0), user(9, 0, 0), user(10, 0, 0));
+        String etag = cache.listETag();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(etag, cache.getList(etag, () -> { loads.incrementAndGet(); return users; }).etag());
+        assertEquals(etag, cache.getList(etag, () -> { loads.incrementAndGet(); return users; }).etag());
+        assertEquals(1, loads.get());
+
+        // same row count, same version sum: the new id still changes the tag
+        jdbcTemplate.update("DELETE FROM users WHERE id = 4");
+        jdbcTemplate.update("INSERT INTO users (id, version, login_count) VALUES (11, 0, 0)");
+        assertNotEquals(etag, cache.listETag());
+    }
+
+    @Test
+    void listETag_changesWhenSumsWouldBalance() {
+        jdbcTemplate.update("UPDATE users SET version = 2 WHERE id = 3");
+        String etag = cache.listETag();
+
+        // same count and the same sums of ids, versions and login counts
+        jdbcTemplate.update("UPDATE users SET version = 1 WHERE id IN (3, 4)");
+        assertNotEquals(etag, cache.listETag());
+    }
+
+    @Test
+    void versionFromETag_acceptsOnlyStrongTagsOfTheUser() {
+        assertEquals(7L, UserResponseCache.versionFromETag(3, "\"u3-7-12\""));
+        assertEquals(7L, UserResponseCache.versionFromETag(3, "\"u4-1-0\", \"u3-7-0\""));
+        assertNull(UserResponseCache.versionFromETag(3, "W/\"u3-7-12\""));
+        assertNull(UserResponseCache.versionFromETag(3, "\"u33-7-12\""));
+        assertNull(UserResponseCache.versionFromETag(3, "\"l1-1-1-0\""));
+        assertNull(UserResponseCache.versionFromETag(3, "\"u3-x-1\""));
+    }
+
+    @Test
+    void cache_staysBoundedAndDropsDeletedUsers() {
+        for (long id = 1; id <= 10; id++) {
+            long userId = id;
+            cache.getUser(userId, cache.userETag(userId), () -> Optional.of(user(userId, 0, 0)));
+        }
+        assertEquals(4, cache.size());
+
+        cache.onUserChanged(UserChangedEvent.deleted(10L));
+        assertEquals(3, cache.size());
+    }
+
+    private static User user(long id, long version, long loginCount) {
+        User user = new User("User " + id, "user" + id + "@example.com", "$2a$10$hash" + id, Role.USER);
+        user.setId(id);
+        user.setVersion(version);
+        user.setLoginCount(loginCount);
+        return user;
+    }
+}
@@ -165,4 +165,36 @@ class AuthControllerTest {
 
         System.out.println("✅ GREEN PHASE: JSON request sent successfully!");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Login retried with the same Idempotency-Key - fresh tokens, replayed")
+    void testLoginEndpoint_IdempotentRetry_MintsNewTokens() throws Exception {
+        String uniqueEmail = "retry_" + System.currentTimeMillis() + "@example.com";
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Retry User\",\"email\":\"" + uniqueEmail + "\",\"password\":\"SecurePass123\"}"))
+                .andExpect(status().isOk());
+        String login = "{\"email\":\"" + uniqueEmail + "\",\"password\":\"SecurePass123\"}";
+
+        mockMvc.perform(post("/api/auth/login/user").header("Idempotency-Key", "login-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(login))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        mockMvc.perform(post("/api/auth/login/user").header("Idempotency-Key", "login-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(login))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.token").isNotEmpty())
+                .andExpect(jsonPath("$.refreshToken").isNotEmpty())
+                .andExpect(jsonPath("$.user.email").value(uniqueEmail));
+    }
+
+    @Test
+    @DisplayName("Introspect without an admin token - UNAUTHORIZED")
+    void testIntrospectEndpoint_Anonymous_Unauthorized() throws Exception {
+        mockMvc.perform(post("/api/auth/introspect")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tokens\":[\"a.b.c\"]}"))
+                .andExpect(status().isUnauthorized());
+    }
+}
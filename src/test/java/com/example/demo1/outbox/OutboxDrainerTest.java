@@ -0,0 +1,178 @@
+package com.example.demo1.outbox;
+
+import com.example.demo1.model.OutboxEvent;
+import com.example.demo1.model.OutboxEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxDrainerTest {
+
+    private static final int USERS = 50;
+    private static final int EVENTS = 5000;
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private OutboxDrainer drainer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:outbox" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE user_outbox (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                + "event_type VARCHAR(32) NOT NULL, payload VARCHAR(1000) NOT NULL, created_at TIMESTAMP NOT NULL, "
+                + "delivered_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE outbox_lease (name VARCHAR(32) PRIMARY KEY, owner VARCHAR(64) NOT NULL, "
+                + "expires_at TIMESTAMP NOT NULL)");
+        List<Object[]> rows = new ArrayList<>();
+        Timestamp createdAt = Timestamp.from(Instant.now().minusSeconds(3600));
+        for (int i = 0; i < EVENTS; i++) {
+            long userId = i % USERS + 1;
+            rows.add(new Object[]{userId, OutboxEventType.USER_ROLE_CHANGED.name(), "{\"id\":" + userId + "}", createdAt});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO user_outbox (user_id, event_type, payload, created_at) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        drainer.shutdown();
+    }
+
+    @Test
+    void drain_deliversEveryEventInOrderPerUser() {
+        InMemoryOutboxSink sink = new InMemoryOutboxSink();
+        drainer = drainer(sink);
+
+        assertEquals(EVENTS, drainer.drain());
+
+        List<OutboxEvent> events = sink.getEvents();
+        assertEquals(EVENTS, events.size());
+        assertOrderedPerUser(events);
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_outbox WHERE delivered_at IS NULL", Integer.class));
+        assertEquals(0, drainer.drain());
+    }
+
+    @Test
+    void drain_redeliversLaneAfterSinkFailure() {
+        InMemoryOutboxSink delivered = new InMemoryOutboxSink();
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        drainer = drainer(events -> {
+            if (events.stream().anyMatch(event -> event.getUserId() == 7) && failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("sink unavailable");
+            }
+            delivered.deliver(events);
+        });
+
+        int first = drainer.drain();
+        assertTrue(first > 0 && first < EVENTS, "the failing lane stops the drain");
+        assertTrue(delivered.getEvents().stream().noneMatch(event -> event.getUserId() == 7));
+
+        int total = first;
+        for (int attempt = 0; attempt < 5 && total < EVENTS; attempt++) {
+            total += drainer.drain();
+        }
+
+        assertEquals(EVENTS, total);
+        assertEquals(EVENTS, delivered.getEvents().size());
+        assertOrderedPerUser(delivered.getEvents());
+    }
+
+    @Test
+    void drain_onlyTheLeaseHolderDelivers() throws InterruptedException {
+        InMemoryOutboxSink first = new InMemoryOutboxSink();
+        InMemoryOutboxSink second = new InMemoryOutboxSink();
+        drainer = drainer(first);
+        OutboxDrainer other = drainer(second);
+        try {
+            jdbcTemplate.update("DELETE FROM user_outbox WHERE id > 100");
+            assertEquals(100, drainer.drain());
+
+            jdbcTemplate.update("UPDATE user_outbox SET delivered_at = NULL");
+            assertEquals(0, other.drain(), "the first node still holds the lease");
+
+            jdbcTemplate.update("UPDATE outbox_lease SET expires_at = ?", Timestamp.from(Instant.now().minusSeconds(1)));
+            assertEquals(100, other.drain());
+            assertEquals(0, drainer.drain(), "the lease moved to the second node");
+            assertEquals(100, second.getEvents().size());
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    void purgeDelivered_deletesRangesBelowFirstPendingEvent() {
+        drainer = drainer(new InMemoryOutboxSink());
+        drainer.drain();
+        jdbcTemplate.update("UPDATE user_outbox SET delivered_at = NULL WHERE id = 3001");
+
+        int deleted = drainer.purgeDelivered();
+
+        assertEquals(3000, deleted);
+        assertEquals(3001L, jdbcTemplate.queryForObject("SELECT MIN(id) FROM user_outbox", Long.class));
+        assertEquals(EVENTS - 3000, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_outbox", Integer.class));
+
+        ReflectionTestUtils.setField(drainer, "retentionMs", 24 * 3600_000L);
+        jdbcTemplate.update("UPDATE user_outbox SET delivered_at = CURRENT_TIMESTAMP WHERE id = 3001");
+        assertEquals(0, drainer.purgeDelivered(), "rows inside the retention window are kept");
+    }
+
+    @Test
+    void fileSink_appendsJsonLines() throws Exception {
+        FileOutboxSink sink = new FileOutboxSink(dir.resolve("events/outbox.jsonl"));
+        drainer = drainer(sink);
+        ReflectionTestUtils.setField(drainer, "batchSize", 100);
+        jdbcTemplate.update("DELETE FROM user_outbox WHERE id > 150");
+
+        assertEquals(150, drainer.drain());
+
+        List<String> lines = Files.readAllLines(sink.getFile());
+        assertEquals(150, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("{\"id\":1,\"userId\":1,\"type\":\"USER_ROLE_CHANGED\"")));
+        assertTrue(lines.stream().anyMatch(line -> line.contains("\"userId\":2,") && line.endsWith("\"payload\":{\"id\":2}}")));
+    }
+
+    private OutboxDrainer drainer(OutboxSink sink) {
+        OutboxDrainer drainer = new OutboxDrainer();
+        ReflectionTestUtils.setField(drainer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(drainer, "sink", sink);
+        ReflectionTestUtils.setField(drainer, "enabled", true);
+        ReflectionTestUtils.setField(drainer, "batchSize", 700);
+        ReflectionTestUtils.setField(drainer, "parallelism", 4);
+        ReflectionTestUtils.setField(drainer, "retentionMs", 60_000L);
+        ReflectionTestUtils.setField(drainer, "cleanupChunk", 256L);
+        drainer.init();
+        return drainer;
+    }
+
+    private static void assertOrderedPerUser(List<OutboxEvent> events) {
+        Map<Long, Long> lastIdByUser = new HashMap<>();
+        for (OutboxEvent event : events) {
+            Long previous = lastIdByUser.put(event.getUserId(), event.getId());
+            if (previous != null) {
+                assertTrue(event.getId() > previous, "user " + event.getUserId() + " got " + event.getId()
+                        + " after " + previous);
+            }
+        }
+        assertEquals(USERS, lastIdByUser.size());
+    }
+}
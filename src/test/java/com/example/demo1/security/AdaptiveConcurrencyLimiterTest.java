@@ -0,0 +1,66 @@
+package com.example.demo1.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void tryAcquire_OverLimit_RejectsAndCounts() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, 0.5, 1.0);
+
+        assertTrue(limiter.tryAcquire(false));
+        assertTrue(limiter.tryAcquire(false));
+        assertFalse(limiter.tryAcquire(false));
+
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    void tryAcquire_LowPriority_OnlyGetsShareOfLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10, 2.0, 0.5, 0.5);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(true));
+        }
+        assertFalse(limiter.tryAcquire(true));
+        assertTrue(limiter.tryAcquire(false));
+    }
+
+    @Test
+    void release_SlowSample_ShrinksLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20, 2.0, 0.5, 1.0);
+
+        limiter.tryAcquire(false);
+        limiter.release(1_000_000L, false);
+        limiter.tryAcquire(false);
+        limiter.release(10_000_000L, false);
+
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void release_FastSamplesUnderLoad_GrowLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 20, 2.0, 0.5, 1.0);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(false);
+        }
+        limiter.release(1_000_000L, false);
+
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void release_Failure_ShrinksLimitButNotBelowMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 20, 2.0, 0.5, 1.0);
+
+        limiter.tryAcquire(false);
+        limiter.release(1_000_000L, true);
+
+        assertEquals(2, limiter.getLimit());
+    }
+}
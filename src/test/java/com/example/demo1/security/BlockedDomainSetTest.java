@@ -0,0 +1,87 @@
+package com.example.demo1.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockedDomainSetTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void blocksListedDomainsAndTheirSubdomainsOnly() {
+        BlockedDomainSet set = BlockedDomainSet.of(List.of("mailinator.com", "*.guerrillamail.com", "@Trash-Mail.de", "", "  "));
+
+        assertEquals(3, set.size());
+        assertTrue(set.isBlocked("john@mailinator.com"));
+        assertTrue(set.isBlocked("john@EU.Mailinator.COM "));
+        assertTrue(set.isBlocked("john@x.guerrillamail.com"));
+        assertTrue(set.isBlocked("john@guerrillamail.com"));
+        assertTrue(set.isBlocked("john@trash-mail.de"));
+
+        assertFalse(set.isBlocked("john@notmailinator.com"));
+        assertFalse(set.isBlocked("john@mailinator.com.example.org"));
+        assertFalse(set.isBlocked("mailinator.com@example.com"));
+        assertFalse(set.isBlocked("john@com"));
+        assertFalse(set.isBlocked(""));
+        assertFalse(set.isBlocked(null));
+    }
+
+    @Test
+    void trailingDot_isTheSameDomain() {
+        BlockedDomainSet set = BlockedDomainSet.of(List.of("mailinator.com"));
+
+        assertTrue(set.isBlocked("x@mailinator.com."));
+        assertTrue(set.isBlocked("x@eu.mailinator.com. "));
+        assertFalse(set.isBlocked("x@example.com."));
+        assertFalse(set.isBlocked("x@."));
+    }
+
+    @Test
+    void load_readsOneDomainPerLineWithComments() throws IOException {
+        Path file = dir.resolve("blocked-domains.txt");
+        Files.writeString(file, "# disposable providers\nyopmail.com\n\n10minutemail.com  # and its mirrors\nyopmail.com\n");
+
+        BlockedDomainSet set = BlockedDomainSet.load(file);
+
+        assertEquals(2, set.size());
+        assertTrue(set.isBlocked("a@yopmail.com"));
+        assertTrue(set.isBlocked("a@10minutemail.com"));
+        assertFalse(set.isBlocked("a@gmail.com"));
+    }
+
+    @Test
+    void largeSet_findsEveryEntryWithoutAllocating() {
+        List<String> domains = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            domains.add("throwaway" + i + ".example");
+        }
+        BlockedDomainSet set = BlockedDomainSet.of(domains);
+        for (int i = 0; i < 50_000; i += 7) {
+            assertTrue(set.isBlocked("user@mx.throwaway" + i + ".example"));
+        }
+
+        String allowed = "jane.doe@mail.company.example.org";
+        String blocked = "jane.doe@mx.throwaway49999.example";
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int hits = 0;
+        for (int i = 0; i < 100_000; i++) {
+            hits += set.isBlocked(allowed) ? 1 : 0;
+            hits += set.isBlocked(blocked) ? 1 : 0;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(100_000, hits);
+        assertTrue(allocated < 4096, "allocated " + allocated + " bytes over 200,000 lookups");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo1.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BreachedPasswordFilterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyAddedPasswordIsFoundAfterReopening() throws IOException {
+        Path file = dir.resolve("breached.bin");
+        // small regions, so keys land in many separately mapped regions
+        try (BreachedPasswordFilter filter = BreachedPasswordFilter.create(file, 20_000, 0.01, 4096)) {
+            for (int i = 0; i < 20_000; i++) {
+                filter.add("password" + i);
+            }
+            filter.force();
+        }
+
+        try (BreachedPasswordFilter filter = BreachedPasswordFilter.open(file, 4096)) {
+            assertEquals(20_000, filter.getEntryCount());
+            for (int i = 0; i < 20_000; i++) {
+                assertTrue(filter.mightContain("password" + i));
+            }
+            int falsePositives = 0;
+            for (int i = 0; i < 100_000; i++) {
+                if (filter.mightContain("unrelated-" + i)) {
+                    falsePositives++;
+                }
+            }
+            double rate = falsePositives / 100_000.0;
+            assertTrue(rate < 0.02, "false-positive rate " + rate);
+            assertThrows(IllegalStateException.class, () -> filter.add("read-only"));
+        }
+    }
+
+    @Test
+    void builder_readsPwnedPasswordsFormatAndReportsTheRate() throws IOException {
+        List<String> lines = new ArrayList<>();
+        HexFormat hex = HexFormat.of().withUpperCase();
+        for (int i = 0; i < 5_000; i++) {
+            lines.add(hex.formatHex(BreachedPasswordFilter.sha1("leaked" + i)) + ":" + (i % 3 + 1));
+        }
+        lines.add("not a hash");
+        Path input = dir.resolve("pwned.txt");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        Path output = dir.resolve("breached.bin");
+
+        // entries seen only once are left out
+        BreachedPasswordFilterBuilder.Report report =
+                BreachedPasswordFilterBuilder.build(input, output, 0.001, -1, 2, false, 200_000);
+
+        assertEquals(3_333, report.entries());
+        assertEquals(1_668, report.skipped());
+        assertTrue(report.measuredRate() < 0.003, "measured " + report.measuredRate());
+        try (BreachedPasswordFilter filter = BreachedPasswordFilter.open(output)) {
+            assertTrue(filter.mightContain("leaked1"));
+            assertTrue(filter.mightContain("leaked2"));
+        }
+        assertFalse(Files.exists(dir.resolve("breached.bin.building")));
+    }
+
+    @Test
+    void open_rejectsForeignAndTruncatedFiles() throws IOException {
+        Path foreign = dir.resolve("foreign.bin");
+        Files.write(foreign, new byte[128]);
+        assertThrows(IOException.class, () -> BreachedPasswordFilter.open(foreign));
+
+        Path file = dir.resolve("truncated.bin");
+        BreachedPasswordFilter.create(file, 1_000, 0.01).close();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 64));
+        assertThrows(IOException.class, () -> BreachedPasswordFilter.open(file));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo1.security;
+
+import com.example.demo1.model.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactTokenCodecTest {
+
+    private static final byte[] KEY = "compact-test-secret-compact-test-secret-compact".getBytes();
+
+    private final CompactTokenCodec codec = new CompactTokenCodec(KEY);
+
+    @Test
+    void decode_EncodedToken_RoundTripsClaims() {
+        long now = System.currentTimeMillis() / 1000;
+        UUID tokenId = UUID.randomUUID();
+
+        Claims claims = codec.decode(codec.encode(123_456L, Role.ADMIN, now, now + 900, tokenId));
+
+        assertEquals(123_456L, claims.get(CompactTokenCodec.USER_ID_CLAIM, Long.class));
+        assertEquals("ADMIN", claims.get("role"));
+        assertEquals(now * 1000, claims.getIssuedAt().getTime());
+        assertEquals((now + 900) * 1000, claims.getExpiration().getTime());
+        assertEquals(tokenId.toString(), claims.getId());
+        assertNull(claims.getSubject());
+    }
+
+    @Test
+    void encode_TypicalUser_MuchSmallerThanJwt() {
+        long now = System.currentTimeMillis() / 1000;
+        String compact = codec.encode(4_821L, Role.USER, now, now + 900, UUID.randomUUID());
+        String jwt = Jwts.builder()
+                .claim("role", "USER")
+                .setSubject("someone.with.a.name@example.com")
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date(now * 1000))
+                .setExpiration(new Date((now + 900) * 1000))
+                .signWith(Keys.hmacShaKeyFor(KEY), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertTrue(compact.length() < 100, compact);
+        assertTrue(compact.length() * 2 < jwt.length(), compact.length() + " vs " + jwt.length());
+    }
+
+    @Test
+    void decode_TamperedPayloadOrForeignKey_Rejected() {
+        long now = System.currentTimeMillis() / 1000;
+        String token = codec.encode(7L, Role.USER, now, now + 900, UUID.randomUUID());
+        // flip the role ordinal byte inside the payload
+        char[] chars = token.toCharArray();
+        chars[6] = chars[6] == 'A' ? 'B' : 'A';
+        String tampered = new String(chars);
+        String foreign = new CompactTokenCodec("another-secret-another-secret-another-secret".getBytes())
+                .encode(7L, Role.ADMIN, now, now + 900, UUID.randomUUID());
+
+        assertThrows(SignatureException.class, () -> codec.decode(tampered));
+        assertThrows(SignatureException.class, () -> codec.decode(foreign));
+    }
+
+    @Test
+    void decode_ExpiredOrMalformed_Rejected() {
+        long now = System.currentTimeMillis() / 1000;
+        String expired = codec.encode(7L, Role.USER, now - 1000, now - 100, UUID.randomUUID());
+
+        assertThrows(ExpiredJwtException.class, () -> codec.decode(expired));
+        assertThrows(MalformedJwtException.class, () -> codec.decode("c1.!!!.???"));
+        assertThrows(MalformedJwtException.class, () -> codec.decode("c1."));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo1.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountingBloomFilterTest {
+
+    @Test
+    void mightContain_AddedKeys_AlwaysTrue() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("jti:" + i);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain("jti:" + i));
+        }
+    }
+
+    @Test
+    void mightContain_UnknownKeys_FalsePositiveRateNearTarget() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("jti:" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other:" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void remove_LastOccurrence_KeyNoLongerMatches() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.001);
+
+        filter.add("sub:a@example.com");
+        filter.add("sub:b@example.com");
+        filter.remove("sub:a@example.com");
+
+        assertFalse(filter.mightContain("sub:a@example.com"));
+        assertTrue(filter.mightContain("sub:b@example.com"));
+    }
+}
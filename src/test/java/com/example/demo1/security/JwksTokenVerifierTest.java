@@ -0,0 +1,135 @@
+package com.example.demo1.security;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksTokenVerifierTest {
+
+    private SigningKeyRing keyRing;
+    private HttpServer server;
+    private JwksTokenVerifier verifier;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean failing;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keyRing = new SigningKeyRing();
+        ReflectionTestUtils.setField(keyRing, "algorithm", "ES256");
+        ReflectionTestUtils.setField(keyRing, "keyDirectory", "");
+        ReflectionTestUtils.setField(keyRing, "configuredActiveKid", "");
+        keyRing.init();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/.well-known/jwks.json", exchange -> {
+            requests.incrementAndGet();
+            if (failing) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            String etag = keyRing.getJwksEtag();
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = keyRing.getJwks();
+                fullResponses.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/.well-known/jwks.json");
+        verifier = new JwksTokenVerifier(uri, Duration.ofMinutes(5), Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void verify_TokenFromActiveKey_ReturnsClaims() {
+        Claims claims = verifier.verify(sign(keyRing.getActiveKey()));
+
+        assertEquals("user@example.com", claims.getSubject());
+        assertEquals("USER", claims.get("role"));
+    }
+
+    @Test
+    void verify_KnownKid_UsesCachedKeys() {
+        String token = sign(keyRing.getActiveKey());
+
+        verifier.verify(token);
+        verifier.verify(token);
+        verifier.verify(token);
+
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    void verify_EndpointDown_ServesCachedKeysWithoutRefetchingEachTime() {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/.well-known/jwks.json");
+        JwksTokenVerifier staleVerifier = new JwksTokenVerifier(uri, Duration.ZERO, Duration.ZERO);
+        String token = sign(keyRing.getActiveKey());
+        staleVerifier.verify(token);
+
+        failing = true;
+        for (int i = 0; i < 5; i++) {
+            assertEquals("user@example.com", staleVerifier.verify(token).getSubject());
+        }
+
+        // one failed revalidation, then the backoff holds
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void verify_ForgedKid_Rejected() {
+        SigningKeyRing.ActiveKey forged = new SigningKeyRing.ActiveKey(
+                keyRing.getActiveKey().kid(), Keys.keyPairFor(SignatureAlgorithm.ES256).getPrivate());
+
+        assertThrows(JwtException.class, () -> verifier.verify(sign(forged)));
+    }
+
+    @Test
+    void verify_UnknownKidOrHmacToken_Rejected() {
+        SigningKeyRing.ActiveKey unknown = new SigningKeyRing.ActiveKey(
+                "unknown", Keys.keyPairFor(SignatureAlgorithm.ES256).getPrivate());
+        String hmacToken = Jwts.builder()
+                .setSubject("user@example.com")
+                .signWith(Keys.hmacShaKeyFor(new byte[32]), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(JwtException.class, () -> verifier.verify(sign(unknown)));
+        assertThrows(JwtException.class, () -> verifier.verify(hmacToken));
+    }
+
+    private static String sign(SigningKeyRing.ActiveKey key) {
+        return Jwts.builder()
+                .setHeaderParam("kid", key.kid())
+                .claim("role", "USER")
+                .setSubject("user@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key.privateKey(), SignatureAlgorithm.ES256)
+                .compact();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo1.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSessionStoreTest {
+
+    private static final long NOW = 1_800_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void get_AfterPut_ReturnsEntryUntilRemoved() throws Exception {
+        try (MappedSessionStore store = new MappedSessionStore(directory.resolve("sessions.bin"), 1024, 4)) {
+            assertTrue(store.put(11L, 22L, 42L, 1, NOW, NOW + 900, NOW));
+
+            MappedSessionStore.Entry entry = store.get(11L, 22L);
+            assertEquals(42L, entry.userId());
+            assertEquals(1, entry.roleOrdinal());
+            assertEquals(NOW, entry.issuedAtSeconds());
+            assertEquals(NOW + 900, entry.expiresAtSeconds());
+            assertNull(store.get(11L, 23L));
+
+            assertTrue(store.remove(11L, 22L));
+            assertNull(store.get(11L, 22L));
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void reopen_SameGeometry_SessionsSurvive() throws Exception {
+        Path file = directory.resolve("sessions.bin");
+        try (MappedSessionStore store = new MappedSessionStore(file, 1024, 4)) {
+            for (long i = 0; i < 100; i++) {
+                store.put(i, i * 31, i, 0, NOW, NOW + 900, NOW);
+            }
+        }
+
+        try (MappedSessionStore reopened = new MappedSessionStore(file, 1024, 4)) {
+            assertEquals(100, reopened.size());
+            assertEquals(57L, reopened.get(57L, 57L * 31).userId());
+        }
+        try (MappedSessionStore resized = new MappedSessionStore(file, 4096, 4)) {
+            assertEquals(0, resized.size());
+        }
+    }
+
+    @Test
+    void sweep_ExpiredAndRemoved_SlotsReclaimedAndLiveKept() throws Exception {
+        try (MappedSessionStore store = new MappedSessionStore(directory.resolve("sessions.bin"), 512, 2)) {
+            for (long i = 0; i < 300; i++) {
+                long expiresAt = i % 2 == 0 ? NOW - 1 : NOW + 900;
+                assertTrue(store.put(mix(i), i, i, 0, NOW - 1000, expiresAt, NOW - 1000));
+            }
+            store.remove(mix(1), 1L);
+
+            assertEquals(150, store.sweep(NOW));
+            assertEquals(149, store.size());
+            for (long i = 3; i < 300; i += 2) {
+                assertEquals(i, store.get(mix(i), i).userId());
+            }
+            // the reclaimed room is usable again
+            for (long i = 1000; i < 1150; i++) {
+                assertTrue(store.put(mix(i), i, i, 0, NOW, NOW + 900, NOW));
+            }
+        }
+    }
+
+    @Test
+    void put_SegmentFull_ReturnsFalse() throws Exception {
+        try (MappedSessionStore store = new MappedSessionStore(directory.resolve("sessions.bin"), 16, 1)) {
+            int stored = 0;
+            for (long i = 0; i < 32; i++) {
+                if (store.put(i, i, i, 0, NOW, NOW + 900, NOW)) {
+                    stored++;
+                }
+            }
+            assertTrue(stored < 32);
+            assertEquals(stored, store.size());
+        }
+    }
+
+    @Test
+    void concurrentReadersAndWriters_NoLostOrCorruptEntries() throws Exception {
+        try (MappedSessionStore store = new MappedSessionStore(directory.resolve("sessions.bin"), 1 << 16, 8)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long base = t * 10_000L;
+                futures.add(executor.submit(() -> {
+                    for (long i = base; i < base + 5_000; i++) {
+                        assertTrue(store.put(mix(i), i, i, 1, NOW, NOW + 900, NOW));
+                    }
+                }));
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(base);
+                    for (int i = 0; i < 50_000; i++) {
+                        long key = base + random.nextLong(5_000);
+                        MappedSessionStore.Entry entry = store.get(mix(key), key);
+                        // a reader may miss an entry not yet written, but never sees a mismatched one
+                        assertTrue(entry == null || entry.userId() == key);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertEquals(20_000, store.size());
+            for (long i = 0; i < 4 * 10_000L; i += 10_000) {
+                assertEquals(i + 4_999, store.get(mix(i + 4_999), i + 4_999).userId());
+            }
+        }
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo1.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTableTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void tryConsume_WithinBurst_Allowed() {
+        TokenBucketTable table = new TokenBucketTable(3, 1, 100, 4);
+
+        assertEquals(0, table.tryConsume("a@example.com", 0));
+        assertEquals(0, table.tryConsume("a@example.com", 0));
+        assertEquals(0, table.tryConsume("a@example.com", 0));
+        assertTrue(table.tryConsume("a@example.com", 0) > 0);
+    }
+
+    @Test
+    void tryConsume_AfterRefill_AllowedAgain() {
+        TokenBucketTable table = new TokenBucketTable(1, 1, 100, 4);
+
+        assertEquals(0, table.tryConsume("10.0.0.1", 0));
+        long wait = table.tryConsume("10.0.0.1", 0);
+        assertEquals(SECOND, wait);
+        assertEquals(0, table.tryConsume("10.0.0.1", wait));
+    }
+
+    @Test
+    void tryConsume_KeysAreIndependent() {
+        TokenBucketTable table = new TokenBucketTable(1, 1, 100, 4);
+
+        assertEquals(0, table.tryConsume("a", 0));
+        assertEquals(0, table.tryConsume("b", 0));
+    }
+
+    @Test
+    void tryConsume_ManyDistinctKeys_SizeStaysBounded() {
+        TokenBucketTable table = new TokenBucketTable(5, 1, 64, 4);
+
+        for (int i = 0; i < 10_000; i++) {
+            table.tryConsume("key-" + i, i);
+        }
+
+        assertTrue(table.size() <= 64);
+    }
+
+    @Test
+    void tryConsume_FloodOfNewKeys_DoesNotResetADrainedBucket() {
+        TokenBucketTable table = new TokenBucketTable(1, 1, 4, 1);
+        assertEquals(0, table.tryConsume("victim@example.com", 0));
+
+        for (int i = 0; i < 100; i++) {
+            table.tryConsume("flood-" + i, 0);
+        }
+
+        assertTrue(table.tryConsume("victim@example.com", 0) > 0);
+        assertEquals(TokenBucketTable.UNTRACKED, table.tryConsume("newcomer", 0),
+                "new keys are left untracked rather than throttled together");
+        assertEquals(TokenBucketTable.UNTRACKED, table.tryConsume("another-newcomer", 0));
+        // refilled buckets make room again
+        assertEquals(0, table.tryConsume("newcomer", 2 * SECOND));
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    void evictIdle_RemovesBucketsThatRefilledCompletely() {
+        TokenBucketTable table = new TokenBucketTable(2, 1, 100, 1);
+
+        table.tryConsume("old", 0);
+        table.tryConsume("recent", 5 * SECOND);
+        table.evictIdle(6 * SECOND);
+
+        assertEquals(1, table.size());
+    }
+}
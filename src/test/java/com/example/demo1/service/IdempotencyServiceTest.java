@@ -0,0 +1,208 @@
+package com.example.demo1.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    @Test
+    void retryWithSameKeyAndBody_getsTheFirstResponse() {
+        IdempotencyService service = service("memory", null);
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> first = service.execute("register", "key-1",
+                () -> ResponseEntity.ok(Map.of("id", runs.incrementAndGet())), "a@example.com", "secret");
+        ResponseEntity<?> retry = service.execute("register", "key-1",
+                () -> ResponseEntity.ok(Map.of("id", runs.incrementAndGet())), "a@example.com", "secret");
+
+        assertEquals(1, runs.get());
+        assertEquals(200, retry.getStatusCode().value());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"id\":1}", body(retry));
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+        // another body, scope or key is another request
+        service.execute("register", "key-1", () -> ResponseEntity.ok(Map.of("n", runs.incrementAndGet())), "a@example.com", "other");
+        service.execute("login/user", "key-1", () -> ResponseEntity.ok(Map.of("n", runs.incrementAndGet())), "a@example.com", "secret");
+        service.execute("register", "key-2", () -> ResponseEntity.ok(Map.of("n", runs.incrementAndGet())), "a@example.com", "secret");
+        service.execute("register", null, () -> ResponseEntity.ok(Map.of("n", runs.incrementAndGet())), "a@example.com", "secret");
+        assertEquals(5, runs.get());
+    }
+
+    @Test
+    void storedResponses_keepNoCredentials() {
+        IdempotencyService service = service("memory", null);
+        Map<String, Object> issued = Map.of("success", true, "token", "access", "refreshToken", "refresh");
+
+        ResponseEntity<?> first = service.execute("register", "key", () -> ResponseEntity.ok(issued), "a@example.com");
+        ResponseEntity<?> retry = service.execute("register", "key", () -> fail("already answered"), "a@example.com");
+
+        assertSame(issued, first.getBody());
+        assertEquals("{\"success\":true}", body(retry));
+    }
+
+    @Test
+    void rebuild_answersRetriedSuccessesWithoutRunningAgain() {
+        IdempotencyService service = service("memory", null);
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger minted = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            ResponseEntity<?> response = service.execute("login", "key", () -> {
+                runs.incrementAndGet();
+                return ResponseEntity.ok(Map.of("user", Map.of("id", 7), "token", "first"));
+            }, stored -> ResponseEntity.ok(new String(stored, StandardCharsets.UTF_8) + "/token-" + minted.incrementAndGet()), "a@example.com", "secret");
+            if (i > 0) {
+                assertEquals("{\"user\":{\"id\":7}}/token-" + i, response.getBody());
+                assertEquals("true", response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+            }
+        }
+        ResponseEntity<?> failed = service.execute("login", "key", () -> ResponseEntity.badRequest().body(Map.of("success", false)),
+                stored -> fail("failures are replayed as they are"), "a@example.com", "wrong");
+        ResponseEntity<?> failedAgain = service.execute("login", "key", () -> fail("already answered"),
+                stored -> fail("failures are replayed as they are"), "a@example.com", "wrong");
+
+        assertEquals(1, runs.get());
+        assertEquals(2, minted.get());
+        assertEquals(400, failed.getStatusCode().value());
+        assertEquals("{\"success\":false}", body(failedAgain));
+    }
+
+    @Test
+    void init_RequiresAKeyOfItsOwn() {
+        IdempotencyService service = new IdempotencyService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "hmacSecret", "");
+        assertThrows(IllegalStateException.class, service::init);
+
+        ReflectionTestUtils.setField(service, "hmacSecret", "jwt-test-key");
+        ReflectionTestUtils.setField(service, "jwtSecret", "jwt-test-key");
+        assertThrows(IllegalStateException.class, service::init);
+    }
+
+    @Test
+    void serverErrorsAndThrottledResponses_areNotKept() {
+        IdempotencyService service = service("memory", null);
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            service.execute("login/user", "key", () -> {
+                runs.incrementAndGet();
+                return ResponseEntity.status(500).body(Map.of("success", false));
+            }, "a@example.com");
+            service.execute("login/user", "throttled", () -> {
+                runs.incrementAndGet();
+                return ResponseEntity.status(429).body(Map.of("success", false));
+            }, "a@example.com");
+        }
+        assertEquals(6, runs.get());
+
+        assertEquals(400, service.execute("register", " ", () -> fail("blank keys are rejected")).getStatusCode().value());
+    }
+
+    @Test
+    void concurrentDuplicates_waitForTheOriginal() throws Exception {
+        IdempotencyService service = service("memory", null);
+        assertEquals(8, runConcurrently(List.of(service), 8).size());
+    }
+
+    @Test
+    void sharedTable_letsDuplicatesOnOtherNodesWaitAndReplay() throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:idempotency" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE idempotency_keys (id VARCHAR(64) PRIMARY KEY, status INT NOT NULL, "
+                + "body BLOB, expires_at BIGINT NOT NULL)");
+        IdempotencyService nodeA = service("jdbc", jdbcTemplate);
+        IdempotencyService nodeB = service("jdbc", jdbcTemplate);
+
+        assertEquals(6, runConcurrently(List.of(nodeA, nodeB), 6).size());
+
+        // a node that did not see the original replays it from the table
+        IdempotencyService nodeC = service("jdbc", jdbcTemplate);
+        ResponseEntity<?> replay = nodeC.execute("register", "shared", () -> fail("already answered"), "b@example.com");
+        assertEquals(201, replay.getStatusCode().value());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys WHERE status = 201", Integer.class));
+    }
+
+    /**
+     * Sends duplicates through the given nodes while the original is held up; the action must run once.
+     */
+    private static List<String> runConcurrently(List<IdempotencyService> nodes, int requests) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<ResponseEntity<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                IdempotencyService node = nodes.get(i % nodes.size());
+                futures.add(pool.submit(() -> node.execute("register", "shared", () -> {
+                    runs.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ResponseEntity.status(201).body(Map.of("id", 42));
+                }, "b@example.com")));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            List<String> bodies = new ArrayList<>();
+            for (Future<ResponseEntity<?>> future : futures) {
+                ResponseEntity<?> response = future.get(5, TimeUnit.SECONDS);
+                assertEquals(201, response.getStatusCode().value());
+                bodies.add(body(response));
+            }
+            assertEquals(1, runs.get());
+            assertTrue(bodies.stream().allMatch("{\"id\":42}"::equals), bodies.toString());
+            return bodies;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String body(ResponseEntity<?> response) {
+        Object body = response.getBody();
+        if (body instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        try {
+            return new ObjectMapper().writeValueAsString(body);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static IdempotencyService service(String store, JdbcTemplate jdbcTemplate) {
+        IdempotencyService service = new IdempotencyService();
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "hmacSecret", "test-secret");
+        ReflectionTestUtils.setField(service, "jwtSecret", "jwt-test-key");
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "store", store);
+        ReflectionTestUtils.setField(service, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "waitTimeoutMs", 5_000L);
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo1.service;
+
+import com.example.demo1.security.SigningKeyRing;
+import io.jsonwebtoken.UnsupportedJwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "jwt-service-test-secret-that-is-long-enough-for-hs256";
+
+    @Test
+    void legacyHs256Tokens_acceptedAfterTheSwitchOnlyWhenAllowed() {
+        String legacy = service(keyRing("HS256", "none"), false).generateToken("a@example.com", "USER");
+
+        JwtService es256 = service(keyRing("ES256", "none"), false);
+        assertEquals("a@example.com", es256.extractUsername(es256.generateToken("a@example.com", "USER")));
+        assertThrows(UnsupportedJwtException.class, () -> es256.extractUsername(legacy));
+
+        JwtService migrating = service(keyRing("ES256", "none"), true);
+        assertEquals("a@example.com", migrating.extractUsername(legacy));
+    }
+
+    @Test
+    void es256WithoutKeyDirectory_refusesToStartOnSeveralNodes() {
+        SigningKeyRing clustered = new SigningKeyRing();
+        ReflectionTestUtils.setField(clustered, "algorithm", "ES256");
+        ReflectionTestUtils.setField(clustered, "keyDirectory", "");
+        ReflectionTestUtils.setField(clustered, "transportType", "jdbc");
+
+        assertThrows(IllegalStateException.class, clustered::reload);
+    }
+
+    private static SigningKeyRing keyRing(String algorithm, String transport) {
+        SigningKeyRing keyRing = new SigningKeyRing();
+        ReflectionTestUtils.setField(keyRing, "algorithm", algorithm);
+        ReflectionTestUtils.setField(keyRing, "keyDirectory", "");
+        ReflectionTestUtils.setField(keyRing, "transportType", transport);
+        keyRing.reload();
+        return keyRing;
+    }
+
+    private static JwtService service(SigningKeyRing keyRing, boolean acceptLegacy) {
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "secret", SECRET);
+        ReflectionTestUtils.setField(service, "expiration", 60_000L);
+        ReflectionTestUtils.setField(service, "signingKeyRing", keyRing);
+        ReflectionTestUtils.setField(service, "sessionService", mock(SessionService.class));
+        ReflectionTestUtils.setField(service, "acceptLegacyHs256", acceptLegacy);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo1.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginActivityTrackerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private LoginActivityTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:logins-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        tracker = new LoginActivityTracker();
+        ReflectionTestUtils.setField(tracker, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(tracker, "maxPending", 3);
+        ReflectionTestUtils.setField(tracker, "batchSize", 2);
+    }
+
+    @Test
+    void recordLogin_BuffersUntilFlush_ThenOneUpdatePerUser() {
+        createUsersTable();
+        for (long id = 1; id <= 3; id++) {
+            jdbcTemplate.update("INSERT INTO users (id, login_count) VALUES (?, 0)", id);
+        }
+
+        tracker.recordLogin(1L);
+        tracker.recordLogin(1L);
+        tracker.recordLogin(2L);
+        tracker.recordLogin(3L);
+
+        assertEquals(2, tracker.pendingFor(1L)[0]);
+        assertEquals(0, loginCount(1L), "nothing is written before the flush");
+
+        tracker.flush();
+
+        assertEquals(2, loginCount(1L));
+        assertEquals(1, loginCount(2L));
+        assertEquals(1, loginCount(3L));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT last_login_at FROM users WHERE id = 1", Timestamp.class));
+        assertNull(tracker.pendingFor(1L));
+    }
+
+    @Test
+    void flush_Fails_RequeuesAndAppliesOnNextFlush() {
+        tracker.recordLogin(1L);
+        tracker.recordLogin(1L);
+
+        // no users table yet: the batch fails and goes back into the buffer
+        tracker.flush();
+        assertEquals(2, tracker.pendingFor(1L)[0]);
+
+        tracker.recordLogin(1L);
+        createUsersTable();
+        jdbcTemplate.update("INSERT INTO users (id, login_count) VALUES (1, 0)");
+        tracker.flush();
+
+        assertEquals(3, loginCount(1L));
+        assertNull(tracker.pendingFor(1L));
+    }
+
+    @Test
+    void recordLogin_BufferFull_DropsNewUsersButKeepsCountingKnownOnes() {
+        for (long id = 1; id <= 4; id++) {
+            tracker.recordLogin(id);
+        }
+        tracker.recordLogin(1L);
+
+        assertNull(tracker.pendingFor(4L));
+        assertEquals(2, tracker.pendingFor(1L)[0]);
+    }
+
+    private void createUsersTable() {
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, last_login_at TIMESTAMP NULL, login_count BIGINT NOT NULL)");
+    }
+
+    private long loginCount(long id) {
+        return jdbcTemplate.queryForObject("SELECT login_count FROM users WHERE id = ?", Long.class, id);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.RefreshToken;
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.RefreshTokenRepository;
+import com.example.demo1.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RefreshTokenServiceTest {
+
+    private final Map<Long, RefreshToken> table = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private RefreshTokenService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        // the repository as a map, with the same claim and revoke semantics as its queries
+        RefreshTokenRepository repository = mock(RefreshTokenRepository.class);
+        when(repository.save(any(RefreshToken.class))).thenAnswer(invocation -> {
+            RefreshToken token = invocation.getArgument(0);
+            token.setId(ids.incrementAndGet());
+            table.put(token.getId(), token);
+            return token;
+        });
+        when(repository.findByTokenHash(anyString())).thenAnswer(invocation -> table.values().stream()
+                .filter(token -> token.getTokenHash().equals(invocation.getArgument(0))).findFirst());
+        when(repository.markUsed(anyLong())).thenAnswer(invocation -> {
+            RefreshToken token = table.get(invocation.<Long>getArgument(0));
+            if (token.isUsed() || token.isRevoked()) {
+                return 0;
+            }
+            token.setUsed(true);
+            return 1;
+        });
+        when(repository.revokeFamily(anyString())).thenAnswer(invocation -> {
+            int revoked = 0;
+            for (RefreshToken token : table.values()) {
+                if (token.getFamilyId().equals(invocation.getArgument(0)) && !token.isRevoked()) {
+                    token.setRevoked(true);
+                    revoked++;
+                }
+            }
+            return revoked;
+        });
+
+        user = new User("Test User", "test@example.com", "hash", Role.USER);
+        user.setId(42L);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(42L)).thenReturn(Optional.of(user));
+
+        service = new RefreshTokenService();
+        ReflectionTestUtils.setField(service, "refreshTokenRepository", repository);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "hmacSecret", "refresh-test-key");
+        ReflectionTestUtils.setField(service, "jwtSecret", "jwt-test-key");
+        ReflectionTestUtils.setField(service, "slidingLifetimeMs", 60_000L);
+        ReflectionTestUtils.setField(service, "maxLifetimeMs", 600_000L);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @Test
+    void rotate_IssuesANewTokenAndRetiresTheOldOne() {
+        String first = service.issue(user);
+
+        Optional<RefreshTokenService.Rotation> rotation = service.rotate(first);
+
+        assertTrue(rotation.isPresent());
+        assertSame(user, rotation.get().user());
+        String second = rotation.get().refreshToken();
+        assertNotEquals(first, second);
+        assertTrue(service.rotate(second).isPresent());
+    }
+
+    @Test
+    void rotate_ReusedToken_RevokesTheWholeFamily() {
+        String first = service.issue(user);
+        String second = service.rotate(first).orElseThrow().refreshToken();
+        String other = service.issue(user);
+
+        assertTrue(service.rotate(first).isEmpty());
+
+        // the newest token of the family is dead too, another family is untouched
+        assertTrue(service.rotate(second).isEmpty());
+        assertTrue(service.rotate(other).isPresent());
+    }
+
+    @Test
+    void rotate_UnknownToken_ReturnsEmpty() {
+        assertTrue(service.rotate("not-a-token").isEmpty());
+    }
+
+    @Test
+    void init_RequiresAKeyOfItsOwn() {
+        ReflectionTestUtils.setField(service, "hmacSecret", "");
+        assertThrows(IllegalStateException.class, () -> ReflectionTestUtils.invokeMethod(service, "init"));
+
+        ReflectionTestUtils.setField(service, "hmacSecret", "jwt-test-key");
+        assertThrows(IllegalStateException.class, () -> ReflectionTestUtils.invokeMethod(service, "init"));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.IntrospectionResult;
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserRepository;
+import com.example.demo1.security.SigningKeyRing;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenIntrospectionServiceTest {
+
+    private static final String SECRET = "introspection-test-secret-introspection-test-secret";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    private JwtService jwtService;
+    private TokenIntrospectionService introspectionService;
+
+    @BeforeEach
+    void setUp() {
+        SigningKeyRing signingKeyRing = new SigningKeyRing();
+        ReflectionTestUtils.setField(signingKeyRing, "algorithm", "HS256");
+
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "expiration", 60_000L);
+        ReflectionTestUtils.setField(jwtService, "signingKeyRing", signingKeyRing);
+        ReflectionTestUtils.setField(jwtService, "sessionService", new SessionService());
+        jwtService.init();
+
+        introspectionService = new TokenIntrospectionService();
+        ReflectionTestUtils.setField(introspectionService, "jwtService", jwtService);
+        ReflectionTestUtils.setField(introspectionService, "tokenRevocationService", tokenRevocationService);
+        ReflectionTestUtils.setField(introspectionService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(introspectionService, "parallelism", 4);
+        ReflectionTestUtils.setField(introspectionService, "chunkSize", 8);
+        introspectionService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        introspectionService.shutdown();
+    }
+
+    @Test
+    void introspect_MixedBatch_ResultPerTokenInOrder() {
+        String valid = jwtService.generateToken("alice@example.com", "USER");
+        String revoked = jwtService.generateToken("bob@example.com", "USER");
+        String expired = Jwts.builder()
+                .setSubject("alice@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() - 1_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+        String unknownUser = jwtService.generateToken("ghost@example.com", "USER");
+
+        lenient().when(tokenRevocationService.isRevoked(any(), eq("bob@example.com"), any())).thenReturn(true);
+        when(userRepository.findByEmailIn(anyCollection()))
+                .thenReturn(List.of(new User("Alice", "alice@example.com", "x", Role.ADMIN)));
+
+        List<IntrospectionResult> results = introspectionService.introspect(
+                List.of(valid, revoked, expired, "not-a-token", unknownUser));
+
+        assertTrue(results.get(0).isActive());
+        assertEquals("alice@example.com", results.get(0).getSub());
+        // the current role, not the one in the token
+        assertEquals("ADMIN", results.get(0).getRole());
+        assertEquals(IntrospectionResult.REVOKED, results.get(1).getReason());
+        assertEquals(IntrospectionResult.EXPIRED, results.get(2).getReason());
+        assertEquals(IntrospectionResult.INVALID, results.get(3).getReason());
+        assertEquals(IntrospectionResult.UNKNOWN_USER, results.get(4).getReason());
+    }
+
+    @Test
+    void introspect_CompactToken_ResolvedByUserId() {
+        User carol = new User("Carol", "carol@example.com", "x", Role.USER);
+        carol.setId(42L);
+        ReflectionTestUtils.setField(jwtService, "compactEnabled", true);
+        String compact = jwtService.generateToken(carol);
+        when(userRepository.findAllById(anyCollection())).thenReturn(List.of(carol));
+
+        List<IntrospectionResult> results = introspectionService.introspect(List.of(compact));
+
+        assertTrue(compact.startsWith("c1."));
+        assertTrue(results.get(0).isActive());
+        assertEquals("carol@example.com", results.get(0).getSub());
+        verify(userRepository, never()).findByEmailIn(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void introspect_LargeBatch_OneDeduplicatedUserQuery() {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tokens.add(jwtService.generateToken("user" + (i % 10) + "@example.com", "USER"));
+        }
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            users.add(new User("User " + i, "user" + i + "@example.com", "x", Role.USER));
+        }
+        when(userRepository.findByEmailIn(anyCollection())).thenReturn(users);
+
+        List<IntrospectionResult> results = introspectionService.introspect(tokens);
+
+        ArgumentCaptor<Collection<String>> emails = ArgumentCaptor.forClass(Collection.class);
+        verify(userRepository, times(1)).findByEmailIn(emails.capture());
+        assertEquals(10, emails.getValue().size());
+        assertEquals(100, results.size());
+        assertTrue(results.stream().allMatch(IntrospectionResult::isActive));
+    }
+}
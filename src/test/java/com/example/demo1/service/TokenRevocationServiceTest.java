@@ -0,0 +1,95 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.RevokedToken;
+import com.example.demo1.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationServiceTest {
+
+    private final Map<String, RevokedToken> table = new ConcurrentHashMap<>();
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        // the repository as a map, so purges and rebuilds see what was saved
+        RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+        when(repository.save(any(RevokedToken.class))).thenAnswer(invocation -> {
+            RevokedToken token = invocation.getArgument(0);
+            table.put(token.getTokenKey(), token);
+            return token;
+        });
+        when(repository.existsById(anyString())).thenAnswer(invocation -> table.containsKey(invocation.<String>getArgument(0)));
+        when(repository.findByExpiresAtAfter(any(Instant.class))).thenAnswer(invocation -> table.values().stream()
+                .filter(token -> token.getExpiresAt().isAfter(invocation.getArgument(0))).toList());
+        when(repository.findExpiredKeys(any(Instant.class))).thenAnswer(invocation -> table.values().stream()
+                .filter(token -> !token.getExpiresAt().isAfter(invocation.getArgument(0)))
+                .map(RevokedToken::getTokenKey).toList());
+        when(repository.deleteExpired(any(Instant.class))).thenAnswer(invocation -> {
+            List<String> expired = repository.findExpiredKeys(invocation.getArgument(0));
+            expired.forEach(table::remove);
+            return expired.size();
+        });
+
+        service = new TokenRevocationService();
+        ReflectionTestUtils.setField(service, "revokedTokenRepository", repository);
+        ReflectionTestUtils.setField(service, "tokenLifetimeMs", 900_000L);
+        // a tiny filter, so the expired keys share counters with the live one
+        ReflectionTestUtils.setField(service, "expectedEntries", 4L);
+        ReflectionTestUtils.setField(service, "falsePositiveRate", 0.1);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @Test
+    void purgeExpired_AfterARebuild_KeepsLiveRevocations() {
+        Date future = new Date(System.currentTimeMillis() + 600_000);
+        Date past = new Date(System.currentTimeMillis() - 1_000);
+        service.revokeToken("live", future);
+        for (int i = 0; i < 200; i++) {
+            service.revokeToken("expired-" + i, past);
+        }
+
+        // the scheduled rebuild leaves the expired keys out of the filter before the purge runs
+        service.rebuildFilter();
+        service.purgeExpired();
+
+        assertTrue(service.isRevoked("live", "user@example.com", new Date()));
+        assertFalse(service.isRevoked("expired-1", "user@example.com", new Date()));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void revokeAllForSubject_RejectsOlderTokensOnly() {
+        Date issuedBefore = new Date(System.currentTimeMillis() - 5_000);
+        service.revokeAllForSubject("user@example.com");
+        service.purgeExpired();
+
+        assertTrue(service.isRevoked(null, "user@example.com", issuedBefore));
+        assertFalse(service.isRevoked(null, "user@example.com", new Date(System.currentTimeMillis() + 5_000)));
+        assertFalse(service.isRevoked(null, "other@example.com", issuedBefore));
+    }
+
+    @Test
+    void revokeAllForSubject_KeepsALoginFromTheSameSecond() {
+        service.revokeAllForSubject("user@example.com");
+        // what a JWT issued right now carries as iat
+        Date issuedNow = Date.from(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+
+        assertFalse(service.isRevoked(null, "user@example.com", issuedNow));
+        assertTrue(service.isRevoked(null, "user@example.com", Date.from(issuedNow.toInstant().minusSeconds(2))));
+    }
+}
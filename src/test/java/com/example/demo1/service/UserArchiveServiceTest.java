@@ -0,0 +1,154 @@
+package com.example.demo1.service;
+
+import com.example.demo1.cache.UserDirectory;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserArchiveServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserArchiveService archive;
+    private LoginActivityTracker loginActivityTracker;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:archive-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                + "email VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, role VARCHAR(32) NOT NULL, "
+                + "last_login_at TIMESTAMP NULL, login_count BIGINT NOT NULL DEFAULT 0, version BIGINT NOT NULL DEFAULT 0)");
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> jdbcTemplate.query(
+                "SELECT id, name, email FROM users WHERE email = ?", (rs, rowNum) -> {
+                    User user = new User(rs.getString("name"), rs.getString("email"), null, null);
+                    user.setId(rs.getLong("id"));
+                    return user;
+                }, invocation.<String>getArgument(0)).stream().findFirst());
+
+        archive = new UserArchiveService();
+        ReflectionTestUtils.setField(archive, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(archive, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(archive, "userRepository", userRepository);
+        ReflectionTestUtils.setField(archive, "userDirectory", new UserDirectory()); // disabled, ignores puts
+        loginActivityTracker = mock(LoginActivityTracker.class);
+        ReflectionTestUtils.setField(archive, "loginActivityTracker", loginActivityTracker);
+        ReflectionTestUtils.setField(archive, "enabled", true);
+        ReflectionTestUtils.setField(archive, "batchSize", 7);
+        ReflectionTestUtils.setField(archive, "maxDutyCycle", 0.5);
+        archive.init();
+    }
+
+    @Test
+    void archiveInactive_movesOnlyLongInactiveUsers() throws InterruptedException {
+        Instant old = Instant.now().minus(Duration.ofDays(400));
+        for (int i = 0; i < 20; i++) {
+            insertUser("idle" + i + "@example.com", "USER", old);
+        }
+        insertUser("active@example.com", "USER", Instant.now().minus(Duration.ofDays(3)));
+        insertUser("new@example.com", "USER", null);
+        insertUser("admin@example.com", "ADMIN", old);
+
+        assertEquals(20, archive.archiveInactive());
+
+        assertEquals(3, count("users"));
+        assertEquals(20, count("users_archive"));
+        assertEquals(3, archive.getHotUserCount());
+        assertEquals(20, archive.getArchivedUserCount());
+        assertTrue(archive.isArchived(" Idle4@Example.com"));
+        assertFalse(archive.isArchived("active@example.com"));
+        assertEquals(0, archive.archiveInactive());
+    }
+
+    @Test
+    void rehydrate_bringsAnArchivedUserBackWithTheirData() throws InterruptedException {
+        Instant old = Instant.now().minus(Duration.ofDays(400));
+        long id = insertUser("idle@example.com", "USER", old);
+        jdbcTemplate.update("UPDATE users SET login_count = 12, version = 3 WHERE id = ?", id);
+        archive.archiveInactive();
+
+        Optional<User> user = archive.rehydrate("Idle@example.com ");
+
+        assertTrue(user.isPresent());
+        assertEquals(id, user.get().getId());
+        assertEquals(1, archive.getRehydratedCount());
+        assertEquals(0, count("users_archive"));
+        List<Long> restored = jdbcTemplate.query("SELECT login_count, version FROM users WHERE id = ?",
+                (rs, rowNum) -> rs.getLong(1) * 100 + rs.getLong(2), id);
+        assertEquals(List.of(1203L), restored);
+
+        assertTrue(archive.rehydrate("nobody@example.com").isEmpty());
+        assertEquals(1, archive.getRehydratedCount());
+    }
+
+    @Test
+    void archiveInactive_skipsUsersWithLoginsNotYetFlushed() throws InterruptedException {
+        Instant old = Instant.now().minus(Duration.ofDays(400));
+        long justLoggedIn = insertUser("back@example.com", "USER", old);
+        insertUser("idle@example.com", "USER", old);
+        when(loginActivityTracker.pendingFor(justLoggedIn)).thenReturn(new long[]{1, System.currentTimeMillis()});
+
+        assertEquals(1, archive.archiveInactive());
+
+        verify(loginActivityTracker).flush();
+        assertFalse(archive.isArchived("back@example.com"));
+        assertTrue(archive.isArchived("idle@example.com"));
+    }
+
+    @Test
+    void findArchived_leavesTheUserArchivedAndDeleteArchivedDropsThem() throws InterruptedException {
+        long id = insertUser("idle@example.com", "USER", Instant.now().minus(Duration.ofDays(400)));
+        archive.archiveInactive();
+
+        User user = archive.findArchived(" IDLE@example.com").orElseThrow();
+
+        assertEquals(id, user.getId());
+        assertEquals("hash", user.getPassword());
+        assertTrue(archive.isArchived("idle@example.com"));
+        assertTrue(archive.deleteArchived(id));
+        assertFalse(archive.deleteArchived(id));
+        assertEquals(0, count("users_archive"));
+        assertEquals(0, archive.getArchivedUserCount());
+    }
+
+    @Test
+    void disabled_touchesNothing() {
+        UserArchiveService disabled = new UserArchiveService();
+
+        assertFalse(disabled.isArchived("idle@example.com"));
+        assertTrue(disabled.rehydrate("idle@example.com").isEmpty());
+    }
+
+    private long insertUser(String email, String role, Instant lastLogin) {
+        jdbcTemplate.update("INSERT INTO users (name, email, password, role, last_login_at) VALUES (?, ?, ?, ?, ?)",
+                "Some User", email, "hash", role, lastLogin == null ? null : Timestamp.from(lastLogin));
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.demo1.service;
+
+import com.example.demo1.cache.RemoteUserChangedEvent;
+import com.example.demo1.cache.UserChangedEvent;
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserChangeStreamTest {
+
+    /**
+     * Records the text of every event, except comment lines, instead of writing to a response.
+     */
+    static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+        final CountDownLatch release;
+        volatile boolean completed;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            if (text.charAt(0) == ':') {
+                return;
+            }
+            synchronized (events) {
+                events.add(text.toString());
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        List<String> events() {
+            synchronized (events) {
+                return new ArrayList<>(events);
+            }
+        }
+
+        long lastId() {
+            String last = events().get(events().size() - 1);
+            return Long.parseLong(last.substring(3, last.indexOf('\n')));
+        }
+    }
+
+    private UserChangeStream stream;
+
+    @BeforeEach
+    void setUp() {
+        stream = new UserChangeStream();
+        ReflectionTestUtils.setField(stream, "objectMapper", new ObjectMapper());
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(userRepository.findById(4L)).thenReturn(Optional.of(user(4, Role.USER)));
+        ReflectionTestUtils.setField(stream, "userRepository", userRepository);
+        ReflectionTestUtils.setField(stream, "replaySize", 64);
+        ReflectionTestUtils.setField(stream, "maxPending", 16);
+        ReflectionTestUtils.setField(stream, "maxSubscribers", 100);
+        ReflectionTestUtils.setField(stream, "dispatchThreads", 2);
+        stream.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void onUserChanged_fansOutToEverySubscriberWithoutPasswords() throws InterruptedException {
+        List<RecordingEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+            assertTrue(stream.subscribe(null, emitter));
+            emitters.add(emitter);
+        }
+
+        stream.onUserChanged(UserChangedEvent.created(user(1, Role.USER)));
+        stream.onUserChanged(UserChangedEvent.roleChanged(user(2, Role.ADMIN)));
+        stream.onUserChanged(UserChangedEvent.deleted(3L));
+
+        for (RecordingEmitter emitter : emitters) {
+            awaitEvents(emitter, 3);
+            List<String> events = emitter.events();
+            assertTrue(events.get(0).contains("event:created\n"));
+            assertTrue(events.get(0).contains("\"email\":\"user1@example.com\""));
+            assertFalse(events.get(0).contains("hash"));
+            assertTrue(events.get(1).contains("event:role-changed\n"));
+            assertTrue(events.get(1).contains("\"role\":\"ADMIN\""));
+            assertTrue(events.get(2).contains("event:deleted\ndata:{\"id\":3}"));
+        }
+    }
+
+    @Test
+    void onRemoteUserChanged_streamsTheCurrentRow() throws InterruptedException {
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(null, emitter);
+
+        stream.onRemoteUserChanged(new RemoteUserChangedEvent(4));
+        stream.onRemoteUserChanged(new RemoteUserChangedEvent(5));
+
+        awaitEvents(emitter, 2);
+        List<String> events = emitter.events();
+        assertTrue(events.get(0).contains("event:updated\n"));
+        assertTrue(events.get(0).contains("\"email\":\"user4@example.com\""));
+        assertTrue(events.get(1).contains("event:deleted\ndata:{\"id\":5}"));
+    }
+
+    @Test
+    void subscribe_resumesFromLastEventIdOrResets() throws InterruptedException {
+        RecordingEmitter first = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(null, first);
+        stream.onUserChanged(UserChangedEvent.created(user(1, Role.USER)));
+        awaitEvents(first, 1);
+        long lastSeen = first.lastId();
+
+        for (long id = 2; id <= 6; id++) {
+            stream.onUserChanged(UserChangedEvent.created(user(id, Role.USER)));
+        }
+
+        RecordingEmitter resumed = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(lastSeen, resumed);
+        awaitEvents(resumed, 5);
+        assertEquals(5, resumed.events().size());
+        assertTrue(resumed.events().get(0).contains("\"id\":2,"));
+        assertEquals(lastSeen + 5, resumed.lastId());
+
+        RecordingEmitter stale = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(lastSeen - 1000, stale);
+        awaitEvents(stale, 1);
+        assertTrue(stale.events().get(0).contains("event:reset\n"));
+    }
+
+    @Test
+    void slowSubscriber_isCoalescedThenDroppedWithoutBlockingOthers() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(blocked);
+        RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(null, slow);
+        stream.subscribe(null, fast);
+
+        // the slow subscriber is stuck sending its opening comment; changes queue up, one entry per user
+        Thread.sleep(50);
+        for (int round = 0; round < 50; round++) {
+            for (long id = 1; id <= 10; id++) {
+                stream.onUserChanged(UserChangedEvent.updated(user(id, Role.USER), null, false));
+            }
+        }
+        assertEquals(2, stream.getSubscriberCount(), "changes to ten users fit the pending limit");
+        awaitLastEvent(fast, 10);
+
+        for (long id = 11; id <= 17; id++) {
+            stream.onUserChanged(UserChangedEvent.created(user(id, Role.USER)));
+        }
+        assertEquals(1, stream.getSubscriberCount(), "the slow subscriber is dropped");
+        awaitLastEvent(fast, 17);
+
+        blocked.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!slow.completed && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(slow.completed);
+        assertTrue(slow.events().isEmpty(), "events queued for a dropped subscriber are discarded");
+    }
+
+    private static void awaitEvents(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitter.events().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, emitter.events().size());
+    }
+
+    private static void awaitLastEvent(RecordingEmitter emitter, long userId) throws InterruptedException {
+        String marker = "data:{\"id\":" + userId + ",";
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            List<String> events = emitter.events();
+            if (!events.isEmpty() && events.get(events.size() - 1).contains(marker)) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("no event for user " + userId + " in " + emitter.events());
+    }
+
+    private static User user(long id, Role role) {
+        User user = new User("User " + id, "user" + id + "@example.com", "$2a$10$hash" + id, role);
+        user.setId(id);
+        return user;
+    }
+}
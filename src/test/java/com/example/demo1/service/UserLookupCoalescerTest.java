@@ -0,0 +1,131 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserLookupCoalescerTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private UserLookupCoalescer coalescer;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void findByEmail_ConcurrentIdenticalLookups_RunOneQuery() throws Exception {
+        User user = new User("Shared", "shared@example.com", "hash", Role.USER);
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findByEmail("shared@example.com")).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(user);
+        });
+
+        List<Future<Optional<User>>> results = new ArrayList<>();
+        results.add(executor.submit(() -> coalescer.findByEmail("shared@example.com")));
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 7; i++) {
+            results.add(executor.submit(() -> coalescer.findByEmail(" Shared@Example.com ")));
+        }
+        waitForCoalesced(7);
+        release.countDown();
+
+        assertSame(user, results.get(0).get(5, TimeUnit.SECONDS).orElseThrow());
+        List<User> copies = new ArrayList<>();
+        for (Future<Optional<User>> result : results.subList(1, results.size())) {
+            User copy = result.get(5, TimeUnit.SECONDS).orElseThrow();
+            assertNotSame(user, copy);
+            assertEquals("shared@example.com", copy.getEmail());
+            copies.forEach(other -> assertNotSame(other, copy));
+            copies.add(copy);
+        }
+        verify(userRepository, times(1)).findByEmail("shared@example.com");
+    }
+
+    @Test
+    void findByEmail_QueryFails_ErrorReachesWaiters() throws Exception {
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findByEmail("broken@example.com")).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new DataAccessResourceFailureException("database down");
+        });
+
+        Future<Optional<User>> leader = executor.submit(() -> coalescer.findByEmail("broken@example.com"));
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        Future<Optional<User>> waiter = executor.submit(() -> coalescer.findByEmail("broken@example.com"));
+        waitForCoalesced(1);
+        release.countDown();
+
+        Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception waiterFailure = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataAccessResourceFailureException.class, leaderFailure.getCause());
+        assertInstanceOf(DataAccessResourceFailureException.class, waiterFailure.getCause());
+    }
+
+    @Test
+    void findByEmail_SlowQuery_WaiterTimesOut() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "timeoutMs", 50L);
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findByEmail("slow@example.com")).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        Future<Optional<User>> leader = executor.submit(() -> coalescer.findByEmail("slow@example.com"));
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+
+        assertThrows(QueryTimeoutException.class, () -> coalescer.findByEmail("slow@example.com"));
+        release.countDown();
+        assertTrue(leader.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void findByEmail_Null_ReturnsEmpty() {
+        assertTrue(coalescer.findByEmail(null).isEmpty());
+    }
+
+    private void waitForCoalesced(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalescer.getCoalescedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, coalescer.getCoalescedCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo1.service;
+
+import com.example.demo1.audit.AuditLog;
+import com.example.demo1.cache.UserDirectory;
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import com.example.demo1.model.ValidationResult;
+import com.example.demo1.outbox.UserOutbox;
+import com.example.demo1.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import(UserService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceConcurrencyTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private PasswordEncoder passwordEncoder;
+
+    @MockitoBean
+    private UserLookupCoalescer userLookupCoalescer;
+
+    @MockitoBean
+    private AuditLog auditLog;
+
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+
+    @MockitoBean
+    private RefreshTokenService refreshTokenService;
+
+    @MockitoBean
+    private UserDirectory userDirectory;
+
+    @MockitoBean
+    private UserOutbox userOutbox;
+
+    @MockitoBean
+    private BreachedPasswordService breachedPasswordService;
+
+    @MockitoBean
+    private EmailDomainPolicy emailDomainPolicy;
+
+    @MockitoBean
+    private UserArchiveService userArchiveService;
+
+    @Test
+    void concurrentEditsOfDifferentFields_areAllKept() throws Exception {
+        User user = userRepository.save(new User("Initial", "initial@example.com", "$2a$10$hash", Role.USER));
+        Long id = user.getId();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 30; round++) {
+                CyclicBarrier start = new CyclicBarrier(2);
+                String name = "Name " + round;
+                String email = "round" + round + "@example.com";
+                List<Future<?>> edits = new ArrayList<>();
+                edits.add(pool.submit(() -> {
+                    start.await();
+                    return userService.updateUser(id, new User(name, null, null, null));
+                }));
+                edits.add(pool.submit(() -> {
+                    start.await();
+                    return userService.updateUser(id, new User(null, email, null, null));
+                }));
+                for (Future<?> edit : edits) {
+                    assertTrue(((java.util.Optional<?>) edit.get()).isPresent());
+                }
+
+                User stored = userRepository.findById(id).orElseThrow();
+                assertEquals(name, stored.getName(), "round " + round);
+                assertEquals(email, stored.getEmail(), "round " + round);
+                assertEquals(2L * (round + 1), stored.getVersion());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void emailTakenInTheMeantime_isReportedNotThrown() {
+        User user = userRepository.save(new User("Mover", "mover@example.com", "$2a$10$hash", Role.USER));
+        // registered after validateUpdate passed, so only the re-check in the transaction sees it
+        userRepository.save(new User("Other", "taken@example.com", "$2a$10$hash", Role.USER));
+
+        ValidationResult<User> result = userService.update(user.getId(), new User("Renamed", "taken@example.com", null, null), null)
+                .orElseThrow();
+
+        assertFalse(result.isValid());
+        assertEquals("email", result.getErrors().get(0).field());
+        User stored = userRepository.findById(user.getId()).orElseThrow();
+        assertEquals("Mover", stored.getName());
+        assertEquals("mover@example.com", stored.getEmail());
+    }
+
+    @Test
+    void updateBasedOnStaleVersion_isRejected() {
+        User user = userRepository.save(new User("Initial", "stale@example.com", "$2a$10$hash", Role.USER));
+        long version = user.getVersion();
+        userService.changeUserRole(user.getId(), Role.ADMIN);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> userService.updateUser(user.getId(), new User("Renamed", null, null, null), version));
+        assertEquals("Initial", userRepository.findById(user.getId()).orElseThrow().getName());
+
+        User updated = userService.updateUser(user.getId(), new User("Renamed", null, null, null), version + 1)
+                .orElseThrow();
+        assertEquals("Renamed", updated.getName());
+        assertEquals(version + 2, updated.getVersion());
+        assertEquals(Role.ADMIN, updated.getRole());
+    }
+}
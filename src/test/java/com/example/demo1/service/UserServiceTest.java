@@ -1,7 +1,10 @@
 package com.example.demo1.service;
 
+import com.example.demo1.audit.AuditLog;
+import com.example.demo1.cache.UserDirectory;
 import com.example.demo1.model.Role;
 import com.example.demo1.model.User;
+import com.example.demo1.outbox.UserOutbox;
 import com.example.demo1.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -9,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
@@ -25,6 +29,27 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private AuditLog auditLog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UserDirectory userDirectory;
+
+    @Mock
+    private UserOutbox userOutbox;
+
+    @Mock
+    private BreachedPasswordService breachedPasswordService;
+
+    @Mock
+    private EmailDomainPolicy emailDomainPolicy;
+
+    @Mock
+    private UserArchiveService userArchiveService;
+
     @InjectMocks
     private UserService userService;
 
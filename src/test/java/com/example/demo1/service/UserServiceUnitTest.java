@@ -1,13 +1,18 @@
 package com.example.demo1.service;
 
+import com.example.demo1.audit.AuditLog;
+import com.example.demo1.cache.UserDirectory;
 import com.example.demo1.model.Role;
 import com.example.demo1.model.User;
+import com.example.demo1.model.ValidationResult;
+import com.example.demo1.outbox.UserOutbox;
 import com.example.demo1.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
@@ -15,7 +20,10 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +35,30 @@ class UserServiceUnitTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private AuditLog auditLog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UserDirectory userDirectory;
+
+    @Mock
+    private UserOutbox userOutbox;
+
+    @Mock
+    private BreachedPasswordService breachedPasswordService;
+
+    @Mock
+    private EmailDomainPolicy emailDomainPolicy;
+
+    @Mock
+    private UserArchiveService userArchiveService;
+
+    @Mock
+    private UserLookupCoalescer userLookupCoalescer;
+
     @InjectMocks
     private UserService userService;
 
@@ -89,6 +121,102 @@ class UserServiceUnitTest {
 
 
 
+    // Test 3b: Every invalid field is reported at once, without an exception or a query
+    @Test
+    void register_InvalidFields_ReturnsAllErrors() {
+        ValidationResult<User> result = userService.register(new User("J", "invalid-email", "short", null));
+
+        assertFalse(result.isValid());
+        assertEquals(3, result.getErrors().size());
+        verifyNoInteractions(userRepository, passwordEncoder);
+    }
+
+    // Test 3c: A breached password is refused before any hashing or query
+    @Test
+    void register_BreachedPassword_RejectedBeforeBcrypt() {
+        when(breachedPasswordService.isBreached("Password123")).thenReturn(true);
+
+        ValidationResult<User> result = userService.register(new User("John Doe", "john@example.com", "Password123", null));
+
+        assertFalse(result.isValid());
+        assertEquals("password", result.getErrors().get(0).field());
+        assertFalse(userService.isPasswordStrong("Password123"));
+        verifyNoInteractions(userRepository, passwordEncoder);
+    }
+
+    // Test 3d: A blocked email domain is refused before any hashing or query
+    @Test
+    void register_BlockedDomain_Rejected() {
+        when(emailDomainPolicy.isBlocked("john@mailinator.com")).thenReturn(true);
+
+        ValidationResult<User> result = userService.register(new User("John Doe", "john@mailinator.com", "Password123", null));
+
+        assertFalse(result.isValid());
+        assertEquals(EmailDomainPolicy.BLOCKED_DOMAIN, result.getMessage());
+        verifyNoInteractions(userRepository, passwordEncoder);
+    }
+
+    // Test 3e: An email held by an archived user is not free for registration
+    @Test
+    void register_ArchivedEmail_Rejected() {
+        when(userArchiveService.isArchived("idle@example.com")).thenReturn(true);
+
+        ValidationResult<User> result = userService.register(new User("Idle User", "idle@example.com", "Password123", null));
+
+        assertFalse(result.isValid());
+        assertEquals("email", result.getErrors().get(0).field());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    // Test 3f: An archived user comes back only with the right password
+    @Test
+    void authenticate_ArchivedUser_RehydratedOnlyOnMatch() {
+        User archived = new User("Idle User", "idle@example.com", "encodedPassword", Role.USER);
+        when(userRepository.findByEmail("idle@example.com")).thenReturn(Optional.empty());
+        when(userArchiveService.findArchived("idle@example.com")).thenReturn(Optional.of(archived));
+        when(passwordEncoder.matches("wrong", "encodedPassword")).thenReturn(false);
+        when(passwordEncoder.matches("Password123", "encodedPassword")).thenReturn(true);
+
+        assertFalse(userService.authenticateUser("idle@example.com", "wrong"));
+        verify(userArchiveService, never()).rehydrate(anyString());
+
+        assertTrue(userService.authenticateUser("idle@example.com", "Password123"));
+        verify(userArchiveService).rehydrate("idle@example.com");
+    }
+
+    // Test 3f2: A login checks an archived user's password once, and only a match moves them back
+    @Test
+    void verifyLogin_ArchivedUser_OneHashPerAttempt() {
+        User archived = new User("Idle User", "idle@example.com", "encodedPassword", Role.USER);
+        User rehydrated = new User("Idle User", "idle@example.com", "encodedPassword", Role.USER);
+        when(userLookupCoalescer.findByEmail("idle@example.com")).thenReturn(Optional.empty());
+        when(userArchiveService.findArchived("idle@example.com")).thenReturn(Optional.of(archived));
+        when(passwordEncoder.matches("wrong", "encodedPassword")).thenReturn(false);
+        when(passwordEncoder.matches("Password123", "encodedPassword")).thenReturn(true);
+        when(userArchiveService.rehydrate("idle@example.com")).thenReturn(Optional.of(rehydrated));
+
+        ValidationResult<User> failed = userService.verifyLogin("idle@example.com", "wrong");
+        assertFalse(failed.isValid());
+        assertEquals("password", failed.getErrors().get(0).field());
+        verify(userArchiveService, never()).rehydrate(anyString());
+
+        ValidationResult<User> verified = userService.verifyLogin("idle@example.com", "Password123");
+        assertSame(rehydrated, verified.getValue());
+        verify(passwordEncoder, times(1)).matches("Password123", "encodedPassword");
+        assertEquals("email", userService.verifyLogin("nobody@example.com", "Password123").getErrors().get(0).field());
+    }
+
+    // Test 3g: Deleting an archived user removes the archived row
+    @Test
+    void deleteUser_ArchivedUser_DeletedFromTheArchive() {
+        when(userRepository.existsById(7L)).thenReturn(false);
+        when(userArchiveService.deleteArchived(7L)).thenReturn(true);
+
+        assertTrue(userService.deleteUser(7L));
+        verify(userRepository, never()).deleteById(any());
+        verify(userOutbox).appendDeleted(7L);
+    }
+
     // Test 4: Email validation method works correctly
     @Test
     void userExists_ValidEmail_ReturnsTrue() {
@@ -0,0 +1,62 @@
+package com.example.demo1.service;
+
+import com.example.demo1.model.User;
+import com.example.demo1.model.ValidationResult;
+import com.example.demo1.model.ValidationResult.FieldError;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserValidatorTest {
+
+    @Test
+    void validateRegistration_collectsEveryFieldErrorInOnePass() {
+        List<FieldError> errors = UserValidator.validateRegistration(new User("J", "not-an-email", "short", null));
+
+        assertEquals(List.of("name", "email", "password"), errors.stream().map(FieldError::field).toList());
+        assertTrue(UserValidator.validateRegistration(new User("Jane Doe", "jane@example.com", "Password123", null)).isEmpty());
+        assertEquals(List.of("name", "email", "password"),
+                UserValidator.validateRegistration(new User(null, " ", null, null)).stream().map(FieldError::field).toList());
+        assertFalse(UserValidator.isValidEmail("two@at@example.com"));
+        assertFalse(UserValidator.isValidEmail("space in@example.com"));
+        assertTrue(UserValidator.isValidEmail("first.last+tag@sub.example.co"));
+    }
+
+    @Test
+    void validateUpdate_checksOnlyTheFieldsGiven() {
+        assertTrue(UserValidator.validateUpdate(new User(null, null, null, null)).isEmpty());
+        assertTrue(UserValidator.validateUpdate(new User("New Name", null, null, null)).isEmpty());
+
+        List<FieldError> errors = UserValidator.validateUpdate(new User(null, "bad", "1234", null));
+        assertEquals(List.of("email", "password"), errors.stream().map(FieldError::field).toList());
+    }
+
+    @Test
+    void validateLogin_rejectsMissingFieldsAndObviousGarbage() {
+        assertTrue(UserValidator.validateLogin("jane@example.com", "x").isEmpty());
+        assertEquals(2, UserValidator.validateLogin("", null).size());
+        assertEquals("email", UserValidator.validateLogin("no-at-sign", "secret").get(0).field());
+    }
+
+    @Test
+    void errorBody_namesTheFirstErrorOfEachField() {
+        ValidationResult<User> result = ValidationResult.invalid(List.of(
+                new FieldError("email", "Please enter a valid email"),
+                new FieldError("email", "second"),
+                new FieldError("password", "Password is required")));
+
+        Map<String, Object> body = result.toErrorBody();
+        assertEquals(false, body.get("success"));
+        assertEquals("Please enter a valid email", body.get("message"));
+        assertEquals(Map.of("email", "Please enter a valid email", "password", "Password is required"), body.get("errors"));
+        assertThrows(IllegalArgumentException.class, result::orElseThrow);
+    }
+
+    @Test
+    void sharedUserNotFound_hasNoStackTrace() {
+        assertEquals(0, CustomUserDetailsService.USER_NOT_FOUND.getStackTrace().length);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.demo1.shard;
+
+import com.example.demo1.model.Role;
+import com.example.demo1.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedUserRepositoryTest {
+
+    private final List<ShardedUserRepository> repositories = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(ShardedUserRepository::close);
+    }
+
+    @Test
+    void ring_spreadsEvenlyAndGrowingMovesOnlyToTheNewShard() {
+        ConsistentHashRing three = new ConsistentHashRing(3, 128);
+        ConsistentHashRing four = new ConsistentHashRing(4, 128);
+        int[] counts = new int[3];
+        int moved = 0;
+        for (int i = 0; i < 30_000; i++) {
+            String email = "user" + i + "@example.com";
+            int before = three.shardFor(email);
+            counts[before]++;
+            int after = four.shardFor(email);
+            if (after != before) {
+                assertEquals(3, after);
+                moved++;
+            }
+            assertEquals(before, three.shardFor("  USER" + i + "@Example.com "));
+        }
+        for (int count : counts) {
+            assertTrue(count > 8_000 && count < 12_000, "shard sizes " + java.util.Arrays.toString(counts));
+        }
+        assertTrue(moved > 6_000 && moved < 9_000, "moved " + moved);
+    }
+
+    @Test
+    void ids_carryTheShardAndStayJavaScriptSafe() {
+        long id = ShardedIds.encode(1023, ShardedIds.MAX_LOCAL_ID);
+
+        assertEquals(1023, ShardedIds.shardOf(id));
+        assertEquals(ShardedIds.MAX_LOCAL_ID, ShardedIds.localOf(id));
+        assertTrue(id <= (1L << 53) - 1);
+        assertThrows(IllegalArgumentException.class, () -> ShardedIds.encode(1024, 1));
+    }
+
+    @Test
+    void emailLookupsHitOneShardAndListsFanOut() {
+        List<DataSource> dataSources = databases(3);
+        ShardedUserRepository repository = repository(dataSources, 3, 0);
+
+        List<User> saved = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            saved.add(repository.save(new User("User " + i, "user" + i + "@example.com", "hash", Role.USER)));
+        }
+
+        for (User user : saved) {
+            int shard = repository.shardForEmail(user.getEmail());
+            assertEquals(shard, ShardedIds.shardOf(user.getId()));
+            assertEquals(1, rowsOn(dataSources.get(shard), user.getEmail()));
+            assertEquals(user.getId(), repository.findByEmail(user.getEmail()).orElseThrow().getId());
+            assertTrue(repository.existsByEmail(user.getEmail()));
+            assertEquals(user.getEmail(), repository.findById(user.getId()).orElseThrow().getEmail());
+        }
+        assertFalse(repository.existsByEmail("nobody@example.com"));
+        assertEquals(saved.get(5).getId(), repository.findByEmail(" User5@Example.COM").orElseThrow().getId());
+        assertTrue(repository.existsByEmail("USER6@example.com "));
+        assertEquals(1, repository.findByEmailIn(List.of("User7@Example.com")).size());
+        assertEquals(60, repository.count());
+        assertEquals(60, repository.findAll().size());
+        assertEquals(2, repository.findByEmailIn(List.of("user1@example.com", "user2@example.com", "x@example.com")).size());
+        assertEquals(3, repository.findAllById(List.of(saved.get(0).getId(), saved.get(1).getId(), saved.get(2).getId())).size());
+
+        repository.deleteById(saved.get(0).getId());
+        assertFalse(repository.existsById(saved.get(0).getId()));
+        assertEquals(59, repository.count());
+    }
+
+    @Test
+    void updates_checkTheVersionAndMoveUsersWhoseEmailChangesShard() {
+        List<DataSource> dataSources = databases(3);
+        ShardedUserRepository repository = repository(dataSources, 3, 0);
+        User user = repository.save(new User("Jane Doe", "jane@example.com", "hash", Role.USER));
+        User stale = repository.findById(user.getId()).orElseThrow();
+
+        user.setName("Jane Smith");
+        repository.save(user);
+        assertEquals(1, user.getVersion());
+        stale.setName("Jane Stale");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> repository.save(stale));
+
+        String newEmail = emailOnAnotherShard(repository, user.getEmail());
+        user.setEmail(newEmail);
+        repository.save(user);
+
+        assertEquals(2, user.getVersion());
+        assertEquals(0, rowsOn(dataSources.get(repository.shardForEmail("jane@example.com")), "jane@example.com"));
+        assertEquals(1, rowsOn(dataSources.get(repository.shardForEmail(newEmail)), newEmail));
+        User reloaded = repository.findById(user.getId()).orElseThrow();
+        assertEquals("Jane Smith", reloaded.getName());
+        assertEquals(2, reloaded.getVersion());
+    }
+
+    @Test
+    void logins_reachUsersWhoMovedOffTheirHomeShard() {
+        List<DataSource> dataSources = databases(3);
+        ShardedUserRepository repository = repository(dataSources, 3, 0);
+        User stays = repository.save(new User("Stays", "stays@example.com", "hash", Role.USER));
+        User moves = repository.save(new User("Jane Doe", "jane@example.com", "hash", Role.USER));
+        moves.setEmail(emailOnAnotherShard(repository, moves.getEmail()));
+        repository.save(moves);
+        assertNotEquals(ShardedIds.shardOf(moves.getId()), repository.shardForEmail(moves.getEmail()));
+
+        Timestamp now = Timestamp.from(Instant.now());
+        repository.recordLogins(List.of(new Object[]{2L, now, now, stays.getId()}, new Object[]{3L, now, now, moves.getId()}));
+
+        assertEquals(2, repository.findById(stays.getId()).orElseThrow().getLoginCount());
+        assertEquals(3, repository.findById(moves.getId()).orElseThrow().getLoginCount());
+        List<long[]> fingerprints = repository.findAllFingerprints();
+        assertEquals(2, fingerprints.size());
+        assertTrue(fingerprints.get(0)[0] < fingerprints.get(1)[0]);
+        long[] moved = fingerprints.get(0)[0] == moves.getId() ? fingerprints.get(0) : fingerprints.get(1);
+        assertArrayEquals(new long[]{moves.getId(), 1, 3}, moved);
+    }
+
+    @Test
+    void resharding_movesMisplacedUsersWhileLookupsKeepWorking() throws InterruptedException {
+        List<DataSource> dataSources = databases(3);
+        ShardedUserRepository twoShards = repository(dataSources.subList(0, 2), 2, 0);
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String email = "user" + i + "@example.com";
+            emails.add(email);
+            twoShards.save(new User("User " + i, email, "hash", Role.USER));
+        }
+
+        // the third shard is added; lookups also check the two-shard layout until the move is done
+        ShardedUserRepository migrating = repository(dataSources, 3, 2);
+        for (String email : emails) {
+            assertTrue(migrating.existsByEmail(email), email);
+        }
+
+        Resharder.Result result = new Resharder(dataSources, new ConsistentHashRing(3, 128)).run(7, 0);
+
+        assertTrue(result.moved() > 30, "moved " + result.moved());
+        // moved users land on the new shard, which is scanned last
+        assertEquals(200 + result.moved(), result.scanned());
+        assertEquals(0, result.skipped());
+        ShardedUserRepository threeShards = repository(dataSources, 3, 0);
+        for (String email : emails) {
+            assertEquals(1, rowsOn(dataSources.get(threeShards.shardForEmail(email)), email));
+            assertTrue(threeShards.findByEmail(email).isPresent(), email);
+        }
+        assertEquals(200, threeShards.count());
+        assertEquals(0, new Resharder(dataSources, new ConsistentHashRing(3, 128)).run(50, 0).moved());
+    }
+
+    private ShardedUserRepository repository(List<DataSource> dataSources, int shards, int previousShards) {
+        ShardedUserRepository repository = new ShardedUserRepository(dataSources, new ConsistentHashRing(shards, 128),
+                previousShards > 0 ? new ConsistentHashRing(previousShards, 128) : null, 10);
+        repository.initializeSchema();
+        repositories.add(repository);
+        return repository;
+    }
+
+    private static List<DataSource> databases(int count) {
+        String run = UUID.randomUUID().toString();
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    "jdbc:h2:mem:shard" + i + "-" + run + ";DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+            dataSource.setDriverClassName("org.h2.Driver");
+            dataSources.add(dataSource);
+        }
+        return dataSources;
+    }
+
+    private static int rowsOn(DataSource shard, String email) {
+        return new JdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM users WHERE email = ?", Integer.class, email);
+    }
+
+    private static String emailOnAnotherShard(ShardedUserRepository repository, String email) {
+        int shard = repository.shardForEmail(email);
+        for (int i = 0; ; i++) {
+            String candidate = "jane" + i + "@example.org";
+            if (repository.shardForEmail(candidate) != shard) {
+                return candidate;
+            }
+        }
+    }
+}